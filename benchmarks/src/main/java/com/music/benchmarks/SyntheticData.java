@@ -0,0 +1,125 @@
+package com.music.benchmarks;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+// Reproducible synthetic datasets for the benchmarks. The same seed and size always give byte-identical files,
+// so results from different runs and machines are comparable.
+// Libraries mimic real exports: playlists of PLAYLIST_SIZE items, tracks repeated across playlists,
+// and a few local files and podcast episodes mixed in.
+public final class SyntheticData {
+    public static final long SEED = 20240917L;
+    public static final int PLAYLIST_SIZE = 250;
+    private static final char[] BASE62 = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz".toCharArray();
+
+    private SyntheticData() {
+    }
+
+    // Spotify-style id: 22 base62 characters
+    public static String spotifyId(Random random) {
+        char[] id = new char[22];
+        for (int i = 0; i < id.length; i++) {
+            id[i] = BASE62[random.nextInt(BASE62.length)];
+        }
+        return new String(id);
+    }
+
+    // A pool of distinct track ids, half the library size, so that about half of the items are repeats
+    public static String[] trackIds(int trackCount, Random random) {
+        String[] ids = new String[Math.max(1, trackCount / 2)];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = spotifyId(random);
+        }
+        return ids;
+    }
+
+    // Writes a "Your Library" JSON export with trackCount items spread over playlists of PLAYLIST_SIZE
+    public static Path writeJsonExport(Path dir, int trackCount) throws IOException {
+        Path file = dir.resolve("library_" + trackCount + ".json");
+        Random random = new Random(SEED);
+        String[] ids = trackIds(trackCount, random);
+        try (JsonGenerator json = new JsonFactory().createGenerator(file.toFile(), JsonEncoding.UTF8)) {
+            json.writeStartObject();
+            json.writeArrayFieldStart("playlists");
+            for (int written = 0, playlist = 0; written < trackCount; playlist++) {
+                json.writeStartObject();
+                json.writeStringField("name", "Playlist " + playlist);
+                json.writeStringField("lastModifiedDate", "2024-05-01");
+                json.writeStringField("description", playlist % 3 == 0 ? null : "Synthetic playlist " + playlist);
+                json.writeArrayFieldStart("items");
+                int size = Math.min(PLAYLIST_SIZE, trackCount - written);
+                for (int i = 0; i < size; i++, written++) {
+                    json.writeStartObject();
+                    int kind = random.nextInt(100);
+                    if (kind < 3) {
+                        json.writeNullField("track");
+                        json.writeNullField("episode");
+                        json.writeObjectFieldStart("localTrack");
+                        json.writeStringField("uri", "spotify:local:Artist:Album:Local+Song+" + i + ":215");
+                        json.writeEndObject();
+                    } else if (kind < 6) {
+                        json.writeNullField("track");
+                        json.writeObjectFieldStart("episode");
+                        json.writeStringField("episodeName", "Episode " + i);
+                        json.writeStringField("showName", "Show");
+                        json.writeStringField("episodeUri", "spotify:episode:" + spotifyId(random));
+                        json.writeEndObject();
+                        json.writeNullField("localTrack");
+                    } else {
+                        json.writeObjectFieldStart("track");
+                        json.writeStringField("trackName", "Song " + i);
+                        json.writeStringField("artistName", "Artist " + random.nextInt(5000));
+                        json.writeStringField("albumName", "Album " + random.nextInt(20000));
+                        json.writeStringField("trackUri", "spotify:track:" + ids[random.nextInt(ids.length)]);
+                        json.writeEndObject();
+                        json.writeNullField("episode");
+                        json.writeNullField("localTrack");
+                    }
+                    json.writeStringField("addedDate", "2024-04-30");
+                    json.writeEndObject();
+                }
+                json.writeEndArray();
+                json.writeNumberField("numberOfFollowers", random.nextInt(100));
+                json.writeEndObject();
+            }
+            json.writeEndArray();
+            json.writeEndObject();
+        }
+        return file;
+    }
+
+    // Writes an Exportify-style CSV export of one playlist with trackCount rows, including quoted fields
+    public static Path writeCsvExport(Path dir, int trackCount) throws IOException {
+        Path file = dir.resolve("Synthetic_Playlist_" + trackCount + ".csv");
+        Random random = new Random(SEED);
+        String[] ids = trackIds(trackCount, random);
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write("Track URI,Track Name,Artist URI(s),Artist Name(s),Album Name,Duration (ms),Added At\n");
+            for (int i = 0; i < trackCount; i++) {
+                out.write("spotify:track:");
+                out.write(ids[random.nextInt(ids.length)]);
+                out.write(",\"Song ");
+                out.write(Integer.toString(i));
+                out.write(i % 10 == 0 ? " (feat. \"\"Guest\"\", Band)\"," : "\",");
+                out.write("spotify:artist:");
+                out.write(spotifyId(random));
+                out.write(",\"Artist ");
+                out.write(Integer.toString(random.nextInt(5000)));
+                out.write(", The\",Album ");
+                out.write(Integer.toString(random.nextInt(20000)));
+                out.write(',');
+                out.write(Integer.toString(120_000 + random.nextInt(240_000)));
+                out.write(",2024-04-30T12:00:00Z\n");
+            }
+        }
+        return file;
+    }
+}
@@ -0,0 +1,300 @@
+package com.music.loadtest;
+
+import com.music.Main;
+import com.music.metrics.LatencyHistogram;
+import com.music.spotify.SpotifyStub;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Load-test driver: simulates many concurrent browser sessions against the Javalin app, with Spotify replaced by
+// SpotifyStub from the service's test jar, and reports p50/p90/p99 latency and throughput per route. Runs offline on
+// one machine.
+//
+// By default the stub and the app are both started in this JVM (the app on port 5000, with its state store in a
+// temporary directory). With --app <url> the app is expected to be running already, started with
+// -Dspotify.accountsUri and -Dspotify.apiUri pointing at the stub on --stub-port.
+//
+// Every session logs in through the full OAuth redirect flow, then loops until the end of the run over a mix of
+// /playlists (sending back its ETag), /playlists?refresh=true, /spotify/auth/status and /liked-songs.
+public class LoadTest {
+    private static final String USAGE = """
+            Usage: java -cp benchmarks/target/benchmarks.jar com.music.loadtest.LoadTest [options]
+              --users N              concurrent sessions (default 2000)
+              --duration S           seconds to run after the sessions have started (default 30)
+              --ramp-up S            seconds over which sessions are started (default 10)
+              --think-ms N           mean pause between a session's requests (default 100)
+              --playlists N          playlists per user in the stub (default 60)
+              --playlist-tracks N    items per playlist in the stub (default 100)
+              --saved-tracks N       liked songs per user in the stub (default 500)
+              --latency-ms N         stub response time (default 20)
+              --jitter-ms N          extra random stub response time, up to N (default 10)
+              --rate-limited P       share of stub Web API calls answered with 429, 0..1 (default 0)
+              --retry-after S        Retry-After of those 429s (default 1)
+              --token-lifetime S     expires_in of stub access tokens (default 3600)
+              --stub-port N          stub port, 0 for any free port (default 0)
+              --app URL              test an already running app instead of starting one
+            """;
+    private static final int APP_PORT = 5000;
+
+    private final HttpClient http;
+    private final String appUrl;
+    private final Map<String, RouteStats> routes = new ConcurrentHashMap<>();
+    private final LongAdder failedLogins = new LongAdder();
+
+    private static final class RouteStats {
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder errors = new LongAdder();
+    }
+
+    // Cookies of one simulated browser; the session cookie is Secure, so HttpClient's cookie handler would not send it over http
+    private static final class Browser {
+        private final Map<String, String> cookies = new HashMap<>();
+        private String playlistsEtag;
+
+        private String cookieHeader() {
+            StringBuilder header = new StringBuilder();
+            cookies.forEach((name, value) -> header.append(header.isEmpty() ? "" : "; ").append(name).append('=').append(value));
+            return header.toString();
+        }
+
+        private void store(HttpResponse<?> response) {
+            for (String setCookie : response.headers().allValues("Set-Cookie")) {
+                String pair = setCookie.split(";", 2)[0];
+                int equals = pair.indexOf('=');
+                if (equals > 0) {
+                    cookies.put(pair.substring(0, equals).trim(), pair.substring(equals + 1).trim());
+                }
+            }
+        }
+    }
+
+    private LoadTest(HttpClient http, String appUrl) {
+        this.http = http;
+        this.appUrl = appUrl;
+    }
+
+    public static void main(String[] args) throws Exception {
+        // Keep the per-request logging of the stub and the in-process app out of the way of the report
+        System.setProperty("org.slf4j.simpleLogger.defaultLogLevel", System.getProperty("org.slf4j.simpleLogger.defaultLogLevel", "warn"));
+        Map<String, String> options = parseOptions(args);
+        if (options == null) {
+            System.err.print(USAGE);
+            System.exit(2);
+        }
+        int users = intOption(options, "users", 2000);
+        int durationSeconds = intOption(options, "duration", 30);
+        int rampUpSeconds = intOption(options, "ramp-up", 10);
+        int thinkMillis = intOption(options, "think-ms", 100);
+        SpotifyStub.Config stubConfig = new SpotifyStub.Config(
+                intOption(options, "playlists", 60),
+                intOption(options, "playlist-tracks", 100),
+                intOption(options, "saved-tracks", 500),
+                intOption(options, "latency-ms", 20),
+                intOption(options, "jitter-ms", 10),
+                Double.parseDouble(options.getOrDefault("rate-limited", "0")),
+                intOption(options, "retry-after", 1),
+                intOption(options, "token-lifetime", 3600));
+
+        try (SpotifyStub stub = new SpotifyStub(stubConfig)) {
+            String stubUrl = stub.start(intOption(options, "stub-port", 0));
+            String appUrl = options.get("app");
+            if (appUrl == null) {
+                appUrl = startApp(stubUrl);
+            }
+            System.out.printf("Stub on %s, app on %s: %d sessions for %ds (ramp-up %ds, think time %dms)%n",
+                    stubUrl, appUrl, users, durationSeconds, rampUpSeconds, thinkMillis);
+
+            HttpClient http = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .followRedirects(HttpClient.Redirect.NEVER)
+                    .connectTimeout(Duration.ofSeconds(10))
+                    .executor(Executors.newVirtualThreadPerTaskExecutor())
+                    .build();
+            // One virtual thread per session
+            try (ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor()) {
+                LoadTest test = new LoadTest(http, appUrl);
+                test.waitForApp();
+                long start = System.nanoTime();
+                long end = start + TimeUnit.SECONDS.toNanos(rampUpSeconds + durationSeconds);
+                for (int i = 0; i < users; i++) {
+                    long startDelayNanos = users == 1 ? 0 : TimeUnit.SECONDS.toNanos(rampUpSeconds) * i / users;
+                    threads.execute(() -> test.runSession(start + startDelayNanos, end, thinkMillis));
+                }
+                threads.shutdown();
+                threads.awaitTermination(rampUpSeconds + durationSeconds + 120L, TimeUnit.SECONDS);
+                test.report((System.nanoTime() - start) / 1e9, users, stub);
+            }
+        }
+        System.exit(0);  // the in-process app has non-daemon server threads
+    }
+
+    // Starts the app in this JVM against the stub; the app's own rate limiter is opened up unless set explicitly
+    private static String startApp(String stubUrl) throws IOException {
+        System.setProperty("spotify.accountsUri", stubUrl);
+        System.setProperty("spotify.apiUri", stubUrl);
+        System.setProperty("store.dir", System.getProperty("store.dir", Files.createTempDirectory("loadtest-store").toString()));
+        System.setProperty("spotify.requestsPerSecond", System.getProperty("spotify.requestsPerSecond", "5000"));
+        System.setProperty("spotify.requestBurst", System.getProperty("spotify.requestBurst", "500"));
+        System.setProperty("spotify.maxInFlight", System.getProperty("spotify.maxInFlight", "256"));
+        Main.main(new String[]{"app", "loadtest-client-id", "loadtest-client-secret"});
+        return "http://localhost:" + APP_PORT;
+    }
+
+    private void waitForApp() throws InterruptedException {
+        for (int attempt = 0; attempt < 100; attempt++) {
+            try {
+                http.send(HttpRequest.newBuilder(URI.create(appUrl + "/spotify/auth/status")).build(), HttpResponse.BodyHandlers.discarding());
+                return;
+            } catch (IOException e) {
+                Thread.sleep(100);
+            }
+        }
+        throw new IllegalStateException("App at " + appUrl + " is not answering");
+    }
+
+    private void runSession(long startNanos, long endNanos, int thinkMillis) {
+        try {
+            sleepUntil(startNanos);
+            Browser browser = new Browser();
+            if (!login(browser)) {
+                failedLogins.increment();
+                return;
+            }
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            while (System.nanoTime() < endNanos) {
+                int action = random.nextInt(100);
+                if (action < 70) {
+                    playlists(browser, false);
+                } else if (action < 80) {
+                    playlists(browser, true);
+                } else if (action < 95) {
+                    get(browser, "GET /spotify/auth/status", appUrl + "/spotify/auth/status", null);
+                } else {
+                    get(browser, "GET /liked-songs", appUrl + "/liked-songs", null);
+                }
+                if (thinkMillis > 0) {
+                    Thread.sleep(random.nextLong(thinkMillis * 2L + 1));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // /login/spotify -> stub /authorize -> /login/spotify/callback, as a browser would follow them
+    private boolean login(Browser browser) {
+        HttpResponse<Void> login = get(browser, "GET /login/spotify", appUrl + "/login/spotify", null);
+        String authorizeUrl = login == null ? null : login.headers().firstValue("Location").orElse(null);
+        if (authorizeUrl == null) {
+            return false;
+        }
+        HttpResponse<Void> authorize = get(new Browser(), "GET stub /authorize", authorizeUrl, null);
+        String callbackUrl = authorize == null ? null : authorize.headers().firstValue("Location").orElse(null);
+        if (callbackUrl == null) {
+            return false;
+        }
+        HttpResponse<Void> callback = get(browser, "GET /login/spotify/callback", callbackUrl, null);
+        return callback != null && callback.statusCode() == 302;
+    }
+
+    private void playlists(Browser browser, boolean refresh) {
+        HttpResponse<Void> response = get(browser, refresh ? "GET /playlists?refresh=true" : "GET /playlists",
+                appUrl + "/playlists" + (refresh ? "?refresh=true" : ""), browser.playlistsEtag);
+        if (response != null) {
+            response.headers().firstValue("ETag").ifPresent(etag -> browser.playlistsEtag = etag);
+        }
+    }
+
+    // Sends one request, reading the whole body, and records its latency under route; null if it failed
+    private HttpResponse<Void> get(Browser browser, String route, String url, String ifNoneMatch) {
+        RouteStats stats = routes.computeIfAbsent(route, key -> new RouteStats());
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(url)).timeout(Duration.ofSeconds(60));
+        if (!browser.cookies.isEmpty()) {
+            request.header("Cookie", browser.cookieHeader());
+        }
+        if (ifNoneMatch != null) {
+            request.header("If-None-Match", ifNoneMatch);
+        }
+        long start = System.nanoTime();
+        try {
+            HttpResponse<Void> response = http.send(request.build(), HttpResponse.BodyHandlers.discarding());
+            stats.latency.recordNanos(System.nanoTime() - start);
+            browser.store(response);
+            if (response.statusCode() >= 400) {
+                stats.errors.increment();
+            }
+            return response;
+        } catch (IOException e) {
+            stats.latency.recordNanos(System.nanoTime() - start);
+            stats.errors.increment();
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private void report(double elapsedSeconds, int users, SpotifyStub stub) {
+        System.out.printf("%n%-32s %10s %10s %9s %9s %9s %9s %8s%n", "route", "requests", "req/s", "p50 ms", "p90 ms", "p99 ms", "max ms", "errors");
+        long total = 0;
+        long errors = 0;
+        List<String> names = new ArrayList<>(routes.keySet());
+        names.sort(null);
+        for (String route : names) {
+            RouteStats stats = routes.get(route);
+            LatencyHistogram.Snapshot snapshot = stats.latency.snapshot();
+            System.out.printf("%-32s %10d %10.1f %9.1f %9.1f %9.1f %9.1f %8d%n", route, snapshot.getCount(),
+                    snapshot.getCount() / elapsedSeconds, millis(snapshot, 0.5), millis(snapshot, 0.9), millis(snapshot, 0.99),
+                    millis(snapshot, 1.0), stats.errors.sum());
+            total += snapshot.getCount();
+            errors += stats.errors.sum();
+        }
+        System.out.printf("%nTotal: %d requests in %.1fs (%.1f req/s), %d errors, %d of %d sessions failed to log in%n",
+                total, elapsedSeconds, total / elapsedSeconds, errors, failedLogins.sum(), users);
+        System.out.printf("Stub: %d calls, %d answered with 429%n", stub.getCalls(), stub.getRateLimited());
+    }
+
+    // Latencies are bucketed; the upper bound of the bucket is reported, at most 1/8 above the true value
+    private static double millis(LatencyHistogram.Snapshot snapshot, double quantile) {
+        return snapshot.valueAtQuantile(quantile) / 1000.0;
+    }
+
+    private static void sleepUntil(long nanoTime) throws InterruptedException {
+        long remaining = nanoTime - System.nanoTime();
+        if (remaining > 0) {
+            TimeUnit.NANOSECONDS.sleep(remaining);
+        }
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i += 2) {
+            if (!args[i].startsWith("--") || i + 1 >= args.length) {
+                return null;
+            }
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        return options;
+    }
+
+    private static int intOption(Map<String, String> options, String name, int defaultValue) {
+        String value = options.get(name);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+}
@@ -0,0 +1,89 @@
+package com.music.search;
+
+import com.music.benchmarks.SyntheticData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Queries against one user's index of a large synthetic import, as /search runs them: a one or two letter prefix
+// (term range scan), a word fragment (trigram lookup), and two words, each for the first page of 20 hits.
+// Titles and artists are drawn from a fixed vocabulary, so common words match a large share of the index.
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class SearchIndexBenchmark {
+    private static final int VOCABULARY = 20_000;
+    private static final int PAGE_SIZE = 20;
+
+    @Param({"1000", "100000", "1000000"})
+    public int tracks;
+
+    private SearchIndex index;
+    private String[] words;
+
+    @Setup(Level.Trial)
+    public void buildIndex() {
+        Random random = new Random(SyntheticData.SEED);
+        words = new String[VOCABULARY];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = word(random);
+        }
+        List<SearchIndex.ImportedPlaylist> playlists = new ArrayList<>();
+        for (int i = 0; i < tracks / SyntheticData.PLAYLIST_SIZE; i++) {
+            playlists.add(new SearchIndex.ImportedPlaylist(common(random) + " " + common(random), "Synthetic playlist " + i));
+        }
+        List<SearchIndex.ImportedTrack> imported = new ArrayList<>(tracks);
+        for (int i = 0; i < tracks; i++) {
+            String title = common(random) + " " + words[random.nextInt(words.length)];
+            imported.add(new SearchIndex.ImportedTrack("spotify:track:" + SyntheticData.spotifyId(random), title,
+                    List.of(words[random.nextInt(words.length)]), null));
+        }
+        index = new SearchIndex();
+        index.replaceImport(playlists, imported);
+    }
+
+    @Benchmark
+    public SearchIndex.Page shortPrefix() {
+        return index.search(words[0].substring(0, 2), null, 0, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public SearchIndex.Page infix() {
+        return index.search(words[1].substring(1, 5), null, 0, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public SearchIndex.Page twoWords() {
+        return index.search(words[0] + " " + words[2].substring(0, 3), null, 0, PAGE_SIZE);
+    }
+
+    // The first hundred words make up half of all title words, as a few words do in real libraries
+    private String common(Random random) {
+        return random.nextBoolean() ? words[random.nextInt(100)] : words[random.nextInt(words.length)];
+    }
+
+    private static String word(Random random) {
+        char[] word = new char[5 + random.nextInt(6)];
+        for (int i = 0; i < word.length; i++) {
+            word[i] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(word);
+    }
+}
@@ -0,0 +1,101 @@
+package com.music.spotify;
+
+import com.music.benchmarks.SyntheticData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import se.michaelthelin.spotify.model_objects.specification.Paging;
+import se.michaelthelin.spotify.model_objects.specification.PlaylistSimplified;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+// Accumulation of paged playlists as done by SpotifyService.retrievePlaylistsWithPagination: PaginatedFetcher
+// merges the pages into one list of summaries, which CachedPlaylists then turns into the cached /playlists entry.
+// Pages are prebuilt and returned as completed futures, so only the merge itself is measured, not the network.
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class PlaylistPagingBenchmark {
+    private static final double CHANGED_SHARE = 0.01;  // playlists whose snapshot changed between two fetches
+
+    @Param({"1000", "100000", "1000000"})
+    public int items;
+
+    private final PaginatedFetcher fetcher = new PaginatedFetcher();
+    private List<Paging<PlaylistSimplified>> pages;
+    private List<CachedPlaylists.Summary> fetched;
+    private CachedPlaylists previous;
+
+    @Setup(Level.Trial)
+    public void buildPages() {
+        Random random = new Random(SyntheticData.SEED);
+        int pageSize = PaginatedFetcher.MAX_PAGE_SIZE;
+        int pageCount = (items + pageSize - 1) / pageSize;
+        pages = new ArrayList<>(pageCount);
+        List<CachedPlaylists.Summary> stale = new ArrayList<>(items);
+        for (int page = 0; page < pageCount; page++) {
+            int offset = page * pageSize;
+            PlaylistSimplified[] playlists = new PlaylistSimplified[Math.min(pageSize, items - offset)];
+            for (int i = 0; i < playlists.length; i++) {
+                String id = SyntheticData.spotifyId(random);
+                String snapshotId = SyntheticData.spotifyId(random);
+                playlists[i] = new PlaylistSimplified.Builder()
+                        .setId(id)
+                        .setName("Playlist " + (offset + i))
+                        .setSnapshotId(snapshotId)
+                        .build();
+                boolean changed = random.nextDouble() < CHANGED_SHARE;
+                stale.add(new CachedPlaylists.Summary(id, "Playlist " + (offset + i), changed ? "stale" : snapshotId));
+            }
+            pages.add(new Paging.Builder<PlaylistSimplified>()
+                    .setItems(playlists)
+                    .setOffset(offset)
+                    .setLimit(pageSize)
+                    .setTotal(items)
+                    .build());
+        }
+        previous = CachedPlaylists.revalidate(null, stale);
+        fetched = mergePages();
+    }
+
+    private List<CachedPlaylists.Summary> mergePages() {
+        return fetcher.<PlaylistSimplified, CachedPlaylists.Summary>fetchAll(
+                (offset, limit) -> CompletableFuture.completedFuture(pages.get(offset / PaginatedFetcher.MAX_PAGE_SIZE)),
+                playlist -> new CachedPlaylists.Summary(playlist.getId(), playlist.getName(), playlist.getSnapshotId()))
+                .join();
+    }
+
+    // Merge of all pages into the summary list
+    @Benchmark
+    public List<CachedPlaylists.Summary> mergeAllPages() {
+        return mergePages();
+    }
+
+    // First fetch of a user: merge and build the cache entry from scratch
+    @Benchmark
+    public CachedPlaylists mergeAndBuildCache() {
+        return CachedPlaylists.revalidate(null, mergePages());
+    }
+
+    // Revalidation against the previous entry, where most snapshots are unchanged
+    @Benchmark
+    public CachedPlaylists revalidateCache() {
+        return CachedPlaylists.revalidate(previous, fetched);
+    }
+}
@@ -0,0 +1,52 @@
+package com.music.spotify;
+
+import com.music.benchmarks.SyntheticData;
+import io.javalin.json.JavalinJackson;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Serialization of the /playlists response body with the mapper Javalin's ctx.json uses by default
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class PlaylistsSerializationBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    public int items;
+
+    private final JavalinJackson jsonMapper = new JavalinJackson();
+    private Map<String, Object> response;
+
+    @Setup(Level.Trial)
+    public void buildResponse() {
+        Random random = new Random(SyntheticData.SEED);
+        List<CachedPlaylists.Summary> fetched = new ArrayList<>(items);
+        for (int i = 0; i < items; i++) {
+            fetched.add(new CachedPlaylists.Summary(SyntheticData.spotifyId(random), "Playlist " + i, SyntheticData.spotifyId(random)));
+        }
+        response = Map.of("playlists", CachedPlaylists.revalidate(null, fetched).getPlaylists());
+    }
+
+    @Benchmark
+    public String serializePlaylists() {
+        return jsonMapper.toJsonString(response, Map.class);
+    }
+}
@@ -0,0 +1,73 @@
+package fileProcessor;
+
+import com.music.benchmarks.SyntheticData;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Import of a migration directory through {@link BulkFileProcessor#processDirectory(String)} at different
+ * parallelism levels, to see where adding workers stops paying off on the machine at hand.
+ * Every subdirectory holds one JSON and one CSV export; they are generated once per trial and read from the
+ * page cache in every iteration.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class BulkImportBenchmark {
+    @Param({"1", "2", "4", "8"})
+    public int parallelism;
+
+    @Param({"32"})
+    public int directories;
+
+    @Param({"10000"})
+    public int tracksPerFile;
+
+    private Path dir;
+    private BulkFileProcessor processor;
+
+    @Setup(Level.Trial)
+    public void writeExports() throws IOException {
+        dir = Files.createTempDirectory("bulk-import-benchmark");
+        for (int i = 0; i < directories; i++) {
+            Path export = Files.createDirectory(dir.resolve("export" + i));
+            SyntheticData.writeJsonExport(export, tracksPerFile);
+            SyntheticData.writeCsvExport(export, tracksPerFile);
+        }
+        processor = new BulkFileProcessor(parallelism);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteExports() throws IOException {
+        FileUtils.deleteDirectory(dir.toFile());
+    }
+
+    @Benchmark
+    public BulkFileProcessor.Result importDirectory() throws IOException {
+        BulkFileProcessor.Result result = processor.processDirectory(dir.toString());
+        if (!result.getErrors().isEmpty()) {
+            throw new IllegalStateException("Import failed: " + result.getErrors());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,72 @@
+package fileProcessor;
+
+import com.music.benchmarks.SyntheticData;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Import of library exports through {@link FileProcessor#readFile(String)}, which collects the playlists
+ * {@link FileProcessor#forEachPlaylist} streams, and through {@link FileProcessor#readCompact(String)}, which feeds
+ * them straight into a {@link CompactLibrary}. Lives in the fileProcessor package to reach the package-private
+ * entry point.
+ * The export files are generated once per trial and read from the page cache in every iteration.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class FileImportBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    public int tracks;
+
+    private Path dir;
+    private String jsonExport;
+    private String csvExport;
+
+    @Setup(Level.Trial)
+    public void writeExports() throws IOException {
+        dir = Files.createTempDirectory("import-benchmark");
+        jsonExport = SyntheticData.writeJsonExport(dir, tracks).toString();
+        csvExport = SyntheticData.writeCsvExport(dir, tracks).toString();
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteExports() throws IOException {
+        FileUtils.deleteDirectory(dir.toFile());
+    }
+
+    @Benchmark
+    public List<List<String>> importJson() throws IOException {
+        return FileProcessor.readFile(jsonExport);
+    }
+
+    @Benchmark
+    public List<List<String>> importCsv() throws IOException {
+        return FileProcessor.readFile(csvExport);
+    }
+
+    @Benchmark
+    public CompactLibrary importJsonCompact() throws IOException {
+        return FileProcessor.readCompact(jsonExport);
+    }
+}
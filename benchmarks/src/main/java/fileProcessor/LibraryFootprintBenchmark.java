@@ -0,0 +1,89 @@
+package fileProcessor;
+
+import com.music.benchmarks.SyntheticData;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Heap retained by an imported library held as {@code List<List<String>>} ({@link FileProcessor#readFile(String)})
+ * versus a {@link CompactLibrary} ({@link FileProcessor#readCompact(String)}).
+ * Each iteration imports the export once and reports the growth of the live heap, measured after a full GC
+ * before and after the import, as the {@code retainedBytes} secondary result. JMH sums such counters over
+ * measurement iterations and forks, hence a single measured iteration in a single fork: keep {@code -i 1 -f 1}
+ * when overriding the options. The time of a single shot includes those collections and is not meant to be
+ * compared; {@link FileImportBenchmark} covers speed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g", "-XX:+UseParallelGC"})
+public class LibraryFootprintBenchmark {
+    @Param({"100000", "1000000"})
+    public int tracks;
+
+    private Path dir;
+    private String jsonExport;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+        public long retainedBytes;
+    }
+
+    @Setup(Level.Trial)
+    public void writeExport() throws IOException {
+        dir = Files.createTempDirectory("footprint-benchmark");
+        jsonExport = SyntheticData.writeJsonExport(dir, tracks).toString();
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteExport() throws IOException {
+        FileUtils.deleteDirectory(dir.toFile());
+    }
+
+    @Benchmark
+    public List<List<String>> legacy(Footprint footprint) throws IOException {
+        long before = liveHeap();
+        List<List<String>> data = FileProcessor.readFile(jsonExport);
+        footprint.retainedBytes = liveHeap() - before;
+        return data;
+    }
+
+    @Benchmark
+    public CompactLibrary compact(Footprint footprint) throws IOException {
+        long before = liveHeap();
+        CompactLibrary library = FileProcessor.readCompact(jsonExport);
+        footprint.retainedBytes = liveHeap() - before;
+        return library;
+    }
+
+    private static long liveHeap() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        memory.gc();
+        memory.gc();
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
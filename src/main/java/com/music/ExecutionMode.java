@@ -0,0 +1,58 @@
+package com.music;
+
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// How request handling and Spotify completion stages are run, selected with -Dserver.threads=platform|virtual.
+// PLATFORM keeps Jetty's pooled threads and runs completion stages on a fixed pool of named platform threads.
+// VIRTUAL runs every Jetty request and every completion stage on its own virtual thread, so work that blocks
+// (e.g. streaming liked songs to a slow client) costs a virtual thread rather than a platform one.
+public enum ExecutionMode {
+    PLATFORM,
+    VIRTUAL;
+
+    private static final String CALLBACK_THREAD_PREFIX = "spotify-callback-";
+    private static final String STREAM_THREAD_PREFIX = "response-stream-";
+
+    public static ExecutionMode fromSystemProperty() {
+        String value = System.getProperty("server.threads", PLATFORM.name());
+        return ExecutionMode.valueOf(value.trim().toUpperCase(Locale.ROOT));
+    }
+
+    public boolean useVirtualThreads() {
+        return this == VIRTUAL;
+    }
+
+    // Executor the Spotify request scheduler completes its futures on, so application callbacks never run on
+    // the Spotify client's internal HTTP threads
+    public ExecutorService newCallbackExecutor() {
+        if (this == VIRTUAL) {
+            return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(CALLBACK_THREAD_PREFIX, 0).factory());
+        }
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, CALLBACK_THREAD_PREFIX + counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+        return Executors.newFixedThreadPool(Math.max(4, Runtime.getRuntime().availableProcessors() * 2), threadFactory);
+    }
+
+    // Executor for handlers that write a long response and block while the client reads it, one thread per response.
+    // The request thread is released through ctx.future either way; the modes differ in what a slow client holds.
+    // The number of responses, and so of threads, is bounded by the handlers (see SpotifyController's maxStreams).
+    public ExecutorService newStreamExecutor() {
+        if (this == VIRTUAL) {
+            return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(STREAM_THREAD_PREFIX, 0).factory());
+        }
+        AtomicInteger counter = new AtomicInteger();
+        return Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, STREAM_THREAD_PREFIX + counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
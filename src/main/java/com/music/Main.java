@@ -1,14 +1,35 @@
 package com.music;
 
+import com.music.http.StaticAssets;
+import com.music.metrics.MetricsController;
+import com.music.metrics.MetricsRegistry;
+import com.music.search.SearchController;
+import com.music.search.SearchService;
+import com.music.spotify.PaginatedFetcher;
 import com.music.spotify.SpotifyController;
-import com.music.spotify.SpotifyService;
+import com.music.spotify.SpotifyHosts;
+import com.music.spotify.SpotifyRequestScheduler;
+import com.music.spotify.SpotifyServiceFactory;
+import com.music.spotify.SpotifySessionStore;
+import com.music.spotify.SpotifyStateStore;
+import com.music.store.TokenCipher;
+import com.music.sync.SyncController;
+import com.music.sync.SyncEngine;
+import com.music.transfer.FileTrackSink;
+import com.music.transfer.TrackSink;
+import com.music.transfer.TransferController;
+import com.music.transfer.TransferJobEngine;
 import io.javalin.Javalin;
 import io.javalin.http.staticfiles.Location;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import se.michaelthelin.spotify.SpotifyHttpManager;
 
+import java.io.IOException;
 import java.net.URI;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
 
 public class Main {
 
@@ -23,17 +44,90 @@ public class Main {
         String clientId = args[1];
         String clientSecret = args[2];
         URI redirectUri = SpotifyHttpManager.makeUri("http://localhost:5000/login/spotify/callback");
+        int pageConcurrency = Integer.getInteger("spotify.pageConcurrency", PaginatedFetcher.DEFAULT_MAX_CONCURRENCY);
+
+        // -Dserver.threads=virtual handles requests and Spotify callbacks on virtual threads
+        ExecutionMode executionMode = ExecutionMode.fromSystemProperty();
+        ExecutorService callbackExecutor = executionMode.newCallbackExecutor();
+
+        // Prometheus metrics on /metrics; every request is timed by its route
+        MetricsRegistry metrics = MetricsRegistry.getDefault();
+        MetricsController metricsController = new MetricsController(metrics);
+
+        // Static files precompressed by the build; without the build step Javalin serves them as they are
+        StaticAssets staticAssets = StaticAssets.load("/public");
 
         // initialise javalin
-        Javalin app = Javalin.create(config -> config.staticFiles.add("/public", Location.CLASSPATH)).start(5000);
-        logger.info("Javalin server started on port 5000");
+        Javalin app = Javalin.create(config -> {
+            config.useVirtualThreads = executionMode.useVirtualThreads();
+            config.http.brotliAndGzipCompression();  // dynamic responses, negotiated per request
+            config.http.maxRequestSize = Long.getLong("server.maxRequestBytes", 16L << 20);  // /sync takes whole exports
+            if (staticAssets == null) {
+                config.staticFiles.add("/public", Location.CLASSPATH);
+            }
+            config.requestLogger.http(metricsController::recordRequest);
+        }).start(5000);
+        metricsController.registerRoutes(app);
+        if (staticAssets != null) {
+            staticAssets.registerRoutes(app);
+        }
+        logger.info("Javalin server started on port 5000 with {} threads", executionMode.name().toLowerCase());
+
+        // Create a Spotify service per user session
+        int maxSessions = Integer.getInteger("spotify.maxSessions", SpotifySessionStore.DEFAULT_MAX_SESSIONS);
+        Duration sessionIdleTimeout = Duration.ofMinutes(Long.getLong("spotify.sessionIdleMinutes", SpotifySessionStore.DEFAULT_IDLE_TIMEOUT.toMinutes()));
+        SpotifyRequestScheduler requestScheduler = new SpotifyRequestScheduler(
+                Double.parseDouble(System.getProperty("spotify.requestsPerSecond", String.valueOf(SpotifyRequestScheduler.DEFAULT_PERMITS_PER_SECOND))),
+                Integer.getInteger("spotify.requestBurst", SpotifyRequestScheduler.DEFAULT_BURST),
+                Integer.getInteger("spotify.maxInFlight", SpotifyRequestScheduler.DEFAULT_MAX_IN_FLIGHT),
+                callbackExecutor);
 
-        // Create Spotify service
-        SpotifyService spotifyService = new SpotifyService(clientId, clientSecret, redirectUri);
+        // Sessions and fetched metadata survive restarts; the store opens in the background while requests are served
+        String storeKey = System.getProperty("store.key", System.getenv("SPTFY_STORE_KEY"));
+        SpotifyStateStore stateStore = SpotifyStateStore.open(Path.of(System.getProperty("store.dir", "store")),
+                storeKey == null || storeKey.isBlank() ? null : TokenCipher.fromBase64(storeKey), callbackExecutor);
+        // -Dspotify.accountsUri / -Dspotify.apiUri point the service at a local stub for load tests
+        SpotifyServiceFactory serviceFactory = new SpotifyServiceFactory(clientId, clientSecret, redirectUri, pageConcurrency,
+                requestScheduler, stateStore, SpotifyHosts.fromSystemProperties());
+        SpotifySessionStore sessions = new SpotifySessionStore(serviceFactory, maxSessions, sessionIdleTimeout);
+        // Per-user search indexes, updated as playlists are revalidated and imports resolved
+        SearchService searchService = new SearchService();
+        serviceFactory.addLibraryListener(searchService);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            sessions.close();
+            stateStore.close();
+        }, "state-store-shutdown"));
+        metrics.gauge("spotify_scheduler_queued_requests", "Spotify calls waiting for the rate limiter", requestScheduler::getQueuedCount);
+        metrics.gauge("spotify_scheduler_in_flight_requests", "Spotify calls currently in flight", requestScheduler::getInFlightCount);
+        metrics.gauge("spotify_sessions", "Active user sessions", sessions::size);
 
-        SpotifyController spotifyController = new SpotifyController(spotifyService);
+        SpotifyController spotifyController = new SpotifyController(sessions, serviceFactory, executionMode.newStreamExecutor(),
+                Integer.getInteger("server.maxStreams", SpotifyController.DEFAULT_MAX_STREAMS));
         spotifyController.registerRoutes(app);
+        metrics.gauge("liked_songs_streams", "Liked songs responses being streamed", spotifyController::getActiveStreamCount);
         logger.info("Spotify routes registered successfully");
 
+        // Background playlist transfers, written to a local directory until the YouTube service is wired in
+        TrackSink transferSink;
+        try {
+            transferSink = new FileTrackSink(Path.of(System.getProperty("transfer.outputDir", "transfers")));
+        } catch (IOException e) {
+            logger.error("Could not create transfer output directory", e);
+            return;
+        }
+        TransferJobEngine transferJobEngine = new TransferJobEngine(transferSink,
+                Integer.getInteger("transfer.maxConcurrentPlaylists", TransferJobEngine.DEFAULT_MAX_CONCURRENT_PLAYLISTS),
+                Integer.getInteger("transfer.maxPlaylistsPerJob", TransferJobEngine.DEFAULT_MAX_PLAYLISTS_PER_JOB));
+        new TransferController(sessions, transferJobEngine).registerRoutes(app);
+        logger.info("Transfer routes registered successfully");
+
+        // Plans the changes that bring live playlists in line with an imported export
+        SyncEngine syncEngine = new SyncEngine(Integer.getInteger("sync.maxConcurrentPlaylists", SyncEngine.DEFAULT_MAX_CONCURRENT_PLAYLISTS));
+        new SyncController(sessions, syncEngine).registerRoutes(app);
+        logger.info("Sync routes registered successfully");
+
+        new SearchController(sessions, searchService).registerRoutes(app);
+        logger.info("Search routes registered successfully");
+
     }
 }
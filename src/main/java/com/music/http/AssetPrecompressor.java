@@ -0,0 +1,143 @@
+package com.music.http;
+
+import com.aayushatharva.brotli4j.Brotli4jLoader;
+import com.aayushatharva.brotli4j.encoder.Encoder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+// Build step, run by Maven after the resources are copied: prepares the static files in target/classes/public
+// for StaticAssets. Every file gets .br and .gz siblings at maximum compression (kept only if smaller), local
+// css/js references in HTML pages get a ?v=<content hash> suffix so they can be cached for a year, and
+// asset-manifest.tsv lists each file with its ETag and the encodings available.
+public class AssetPrecompressor {
+    static final String MANIFEST = "asset-manifest.tsv";
+    private static final List<String> COMPRESSIBLE = List.of(".html", ".css", ".js", ".json", ".svg", ".txt", ".map");
+    private static final Pattern LOCAL_REFERENCE = Pattern.compile("(href|src)=\"(/?)([^\":?#]+\\.(?:css|js))(?:\\?v=[0-9a-f]+)?\"");
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            throw new IllegalArgumentException("Usage: AssetPrecompressor <static files directory>");
+        }
+        Path root = Path.of(args[0]);
+        if (!Files.isDirectory(root)) {
+            throw new IllegalArgumentException("Not a directory: " + root);
+        }
+        Brotli4jLoader.ensureAvailability();
+
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(root)) {
+            files = walk.filter(Files::isRegularFile)
+                    .filter(file -> !isGenerated(file))
+                    .sorted()
+                    .toList();
+        }
+
+        // Pages reference the other files by hash, so hash those first and rewrite the pages before hashing them
+        Map<String, String> hashes = new TreeMap<>();
+        List<Path> pages = new ArrayList<>();
+        for (Path file : files) {
+            if (file.toString().endsWith(".html")) {
+                pages.add(file);
+            } else {
+                hashes.put(relativePath(root, file), contentHash(Files.readAllBytes(file)));
+            }
+        }
+        for (Path page : pages) {
+            Path dir = root.relativize(page.getParent());
+            String html = Files.readString(page, StandardCharsets.UTF_8);
+            Files.writeString(page, versionReferences(html, dir, hashes), StandardCharsets.UTF_8);
+            hashes.put(relativePath(root, page), contentHash(Files.readAllBytes(page)));
+        }
+
+        StringBuilder manifest = new StringBuilder();
+        for (Path file : files) {
+            String path = relativePath(root, file);
+            List<String> encodings = new ArrayList<>();
+            if (COMPRESSIBLE.stream().anyMatch(path::endsWith)) {
+                byte[] content = Files.readAllBytes(file);
+                if (writeIfSmaller(file, ".br", content, brotli(content))) {
+                    encodings.add("br");
+                }
+                if (writeIfSmaller(file, ".gz", content, gzip(content))) {
+                    encodings.add("gzip");
+                }
+            }
+            manifest.append(path).append('\t').append(hashes.get(path)).append('\t').append(String.join(",", encodings)).append('\n');
+        }
+        Files.writeString(root.resolve(MANIFEST), manifest, StandardCharsets.UTF_8);
+        System.out.println("Precompressed " + files.size() + " static files in " + root);
+    }
+
+    // Appends ?v=<hash> (replacing an earlier one) to css and js references that resolve to a file in the static directory
+    static String versionReferences(String html, Path pageDir, Map<String, String> hashes) {
+        Matcher matcher = LOCAL_REFERENCE.matcher(html);
+        StringBuilder rewritten = new StringBuilder();
+        while (matcher.find()) {
+            String reference = matcher.group(3);
+            String path = matcher.group(2).isEmpty()
+                    ? pageDir.resolve(reference).normalize().toString().replace('\\', '/')
+                    : reference;
+            String hash = hashes.get(path);
+            String replacement = hash == null ? matcher.group()
+                    : matcher.group(1) + "=\"" + matcher.group(2) + reference + "?v=" + hash.substring(0, 12) + "\"";
+            matcher.appendReplacement(rewritten, Matcher.quoteReplacement(replacement));
+        }
+        return matcher.appendTail(rewritten).toString();
+    }
+
+    private static boolean isGenerated(Path file) {
+        String name = file.getFileName().toString();
+        return name.endsWith(".br") || name.endsWith(".gz") || name.equals(MANIFEST);
+    }
+
+    private static String relativePath(Path root, Path file) {
+        return root.relativize(file).toString().replace('\\', '/');
+    }
+
+    private static String contentHash(byte[] content) {
+        return HexFormat.of().formatHex(HttpCaching.sha256().digest(content));
+    }
+
+    private static boolean writeIfSmaller(Path file, String suffix, byte[] original, byte[] compressed) throws IOException {
+        Path target = file.resolveSibling(file.getFileName() + suffix);
+        if (compressed.length >= original.length) {
+            Files.deleteIfExists(target);
+            return false;
+        }
+        Files.write(target, compressed);
+        return true;
+    }
+
+    private static byte[] brotli(byte[] content) throws IOException {
+        return Encoder.compress(content, new Encoder.Parameters().setQuality(11));
+    }
+
+    private static byte[] gzip(byte[] content) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(content.length / 2 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            gzip.write(content);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+}
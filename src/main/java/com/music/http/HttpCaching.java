@@ -0,0 +1,99 @@
+package com.music.http;
+
+import io.javalin.http.ContentType;
+import io.javalin.http.Context;
+import io.javalin.http.Header;
+import io.javalin.http.HttpStatus;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+
+// ETag helpers for conditional GETs. A client that sends back the ETag of its copy in If-None-Match gets an
+// empty 304 instead of the body when the content has not changed.
+public final class HttpCaching {
+    // API responses may be stored by the browser but must be revalidated before every use
+    public static final String REVALIDATE = "private, no-cache";
+
+    private HttpCaching() {
+    }
+
+    // Strong ETag: the first 128 bits of the SHA-256 of the content, base64url encoded and quoted
+    public static String strongEtag(byte[] content) {
+        MessageDigest sha256 = sha256();
+        sha256.update(content);
+        return strongEtag(sha256);
+    }
+
+    // Same as strongEtag(byte[]) for content that was fed to a sha256() digest piece by piece
+    public static String strongEtag(MessageDigest digest) {
+        return "\"" + Base64.getUrlEncoder().withoutPadding().encodeToString(truncate(digest.digest())) + "\"";
+    }
+
+    // The same validator marked as weak: equivalent content, but not necessarily the same bytes
+    public static String weakEtag(String etag) {
+        return etag.startsWith("W/") ? etag : "W/" + etag;
+    }
+
+    public static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static byte[] truncate(byte[] digest) {
+        byte[] truncated = new byte[16];
+        System.arraycopy(digest, 0, truncated, 0, truncated.length);
+        return truncated;
+    }
+
+    // Sets the ETag header and answers 304 if the client's copy is current; the caller must then not send a body
+    public static boolean notModified(Context ctx, String etag) {
+        ctx.header(Header.ETAG, etag);
+        if (matches(ctx.header(Header.IF_NONE_MATCH), etag)) {
+            ctx.status(HttpStatus.NOT_MODIFIED);
+            return true;
+        }
+        return false;
+    }
+
+    // Serializes body once, then answers either 304 or 200 with the JSON and its ETag
+    public static void json(Context ctx, Object body) {
+        byte[] json = ctx.jsonMapper().toJsonString(body, body.getClass()).getBytes(StandardCharsets.UTF_8);
+        json(ctx, json, strongEtag(json));
+    }
+
+    // Sends already serialized JSON whose ETag is known, skipping the body entirely on a match.
+    // Javalin compresses the body per request, so the identity, br and gzip bytes share the ETag, which therefore
+    // is sent as weak, and caches are told that the body depends on Accept-Encoding.
+    public static void json(Context ctx, byte[] json, String etag) {
+        ctx.header(Header.CACHE_CONTROL, REVALIDATE);
+        ctx.header(Header.VARY, Header.ACCEPT_ENCODING);
+        if (notModified(ctx, weakEtag(etag))) {
+            return;
+        }
+        ctx.contentType(ContentType.APPLICATION_JSON).result(json);
+    }
+
+    // If-None-Match uses the weak comparison: W/ prefixes are ignored, and "*" matches any current representation
+    static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+            return false;
+        }
+        String opaqueTag = stripWeakPrefix(etag);
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*") || stripWeakPrefix(tag).equals(opaqueTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String stripWeakPrefix(String tag) {
+        return tag.startsWith("W/") ? tag.substring(2) : tag;
+    }
+}
@@ -0,0 +1,150 @@
+package com.music.http;
+
+import io.javalin.Javalin;
+import io.javalin.http.ContentType;
+import io.javalin.http.Context;
+import io.javalin.http.Header;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+// Serves the static files prepared at build time by AssetPrecompressor, all held in memory.
+// The precompressed .br or .gz copy is sent when the client accepts it, so no CPU is spent compressing at request
+// time. HTML pages must be revalidated (by ETag) on every load; everything else is referenced from the pages with
+// a content-hash version and is cached by the browser for a year.
+public class StaticAssets {
+    private static final Logger logger = LoggerFactory.getLogger(StaticAssets.class);
+    private static final String LONG_LIVED = "public, max-age=31536000, immutable";
+
+    private final List<Asset> assets;
+
+    // One representation of a file: its bytes, the Content-Encoding (null for identity) and its strong ETag
+    private record Variant(byte[] content, String encoding, String etag) {
+    }
+
+    private record Asset(String path, String contentType, String cacheControl, List<Variant> variants) {
+    }
+
+    private StaticAssets(List<Asset> assets) {
+        this.assets = assets;
+    }
+
+    // Loads the files listed in the build-time manifest, or returns null if the build step has not run
+    public static StaticAssets load(String classpathDirectory) {
+        InputStream manifest = StaticAssets.class.getResourceAsStream(classpathDirectory + "/" + AssetPrecompressor.MANIFEST);
+        if (manifest == null) {
+            return null;
+        }
+        List<Asset> assets = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(manifest, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isBlank()) {
+                    assets.add(loadAsset(classpathDirectory, line.split("\t", -1)));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read the static asset manifest", e);
+        }
+        logger.info("Loaded {} precompressed static files", assets.size());
+        return new StaticAssets(assets);
+    }
+
+    private static Asset loadAsset(String classpathDirectory, String[] entry) throws IOException {
+        String path = entry[0];
+        String tag = entry[1].substring(0, 22);
+        List<Variant> variants = new ArrayList<>();
+        // Preferred encodings first; identity is always last
+        for (String encoding : entry[2].isEmpty() ? new String[0] : entry[2].split(",")) {
+            String suffix = encoding.equals("br") ? ".br" : ".gz";
+            variants.add(new Variant(read(classpathDirectory + "/" + path + suffix), encoding, "\"" + tag + "-" + encoding + "\""));
+        }
+        variants.add(new Variant(read(classpathDirectory + "/" + path), null, "\"" + tag + "\""));
+
+        String extension = path.substring(path.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+        String contentType = ContentType.getMimeTypeByExtension(extension);
+        return new Asset(path,
+                contentType == null ? ContentType.OCTET_STREAM : contentType + (contentType.startsWith("text/") ? "; charset=utf-8" : ""),
+                extension.equals("html") ? "no-cache" : LONG_LIVED,
+                variants);
+    }
+
+    private static byte[] read(String resource) throws IOException {
+        try (InputStream in = StaticAssets.class.getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IOException("Missing static file " + resource);
+            }
+            return in.readAllBytes();
+        }
+    }
+
+    public void registerRoutes(Javalin app) {
+        for (Asset asset : assets) {
+            app.get("/" + asset.path(), ctx -> serve(ctx, asset));
+            if (asset.path().equals("index.html")) {
+                app.get("/", ctx -> serve(ctx, asset));
+            }
+        }
+    }
+
+    private static void serve(Context ctx, Asset asset) {
+        Variant variant = negotiate(asset, ctx.header(Header.ACCEPT_ENCODING));
+        ctx.header(Header.VARY, Header.ACCEPT_ENCODING);
+        ctx.header(Header.CACHE_CONTROL, asset.cacheControl());
+        if (HttpCaching.notModified(ctx, variant.etag())) {
+            return;
+        }
+        if (variant.encoding() != null) {
+            ctx.header(Header.CONTENT_ENCODING, variant.encoding());  // Javalin does not compress a response that already has one
+        }
+        ctx.contentType(asset.contentType()).result(variant.content());
+    }
+
+    private static Variant negotiate(Asset asset, String acceptEncoding) {
+        List<Variant> variants = asset.variants();
+        if (acceptEncoding != null) {
+            for (Variant variant : variants) {
+                if (variant.encoding() != null && accepts(acceptEncoding, variant.encoding())) {
+                    return variant;
+                }
+            }
+        }
+        return variants.get(variants.size() - 1);
+    }
+
+    // True if the Accept-Encoding header lists the coding (or *) without q=0
+    static boolean accepts(String acceptEncoding, String encoding) {
+        for (String part : acceptEncoding.split(",")) {
+            String[] codingAndParams = part.trim().split(";");
+            String coding = codingAndParams[0].trim();
+            if (!coding.equalsIgnoreCase(encoding) && !coding.equals("*")) {
+                continue;
+            }
+            for (int i = 1; i < codingAndParams.length; i++) {
+                String param = codingAndParams[i].trim().replace(" ", "");
+                if (param.startsWith("q=") && isZero(param.substring(2))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private static boolean isZero(String quality) {
+        try {
+            return Double.parseDouble(quality) == 0;
+        } catch (NumberFormatException e) {
+            return false;  // ignore a malformed weight rather than refusing the coding
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.music.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// Monotonic counter backed by a LongAdder, so concurrent increments do not contend on one memory location
+public final class Counter {
+    private final LongAdder value = new LongAdder();
+
+    public void increment() {
+        value.increment();
+    }
+
+    public void add(long amount) {
+        value.add(amount);
+    }
+
+    public long get() {
+        return value.sum();
+    }
+}
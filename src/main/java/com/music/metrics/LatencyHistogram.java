@@ -0,0 +1,117 @@
+package com.music.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Lock-free latency histogram with log-linear buckets, in the style of HdrHistogram.
+// Values are recorded in microseconds. Every power of two is split into SUB_BUCKETS equal buckets, so a bucket is
+// at most 1/8 of its lower bound wide, whatever the magnitude; values below 8us get a bucket each. Recording is a
+// few shifts and one atomic increment, with no allocation, so it can stay on for every request.
+public final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 31;  // values from 2^31us (about 36 minutes) on share the last bucket
+    private static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    // Bucket boundaries exported to Prometheus: every power of two from 64us to about 33s, in microseconds
+    static final int FIRST_EXPORTED_EXPONENT = 6;
+    static final int LAST_EXPORTED_EXPONENT = 25;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder sumMicros = new LongAdder();
+
+    public void record(long duration, TimeUnit unit) {
+        recordMicros(unit.toMicros(duration));
+    }
+
+    public void recordNanos(long nanos) {
+        recordMicros(nanos / 1000);
+    }
+
+    public void recordMicros(long micros) {
+        long value = Math.max(0, micros);
+        buckets.incrementAndGet(bucketIndex(value));
+        sumMicros.add(value);
+    }
+
+    static int bucketIndex(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKET_COUNT - 1;
+        }
+        int subBucket = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    // Exclusive upper bound of a bucket in microseconds
+    static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index + 1;
+        }
+        int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int subBucket = index % SUB_BUCKETS;
+        return (long) (SUB_BUCKETS + subBucket + 1) << (exponent - SUB_BUCKET_BITS);
+    }
+
+    // Point-in-time copy used for export; counts are cumulative at each exported boundary like a Prometheus histogram
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = buckets.get(i);
+        }
+        return new Snapshot(counts, sumMicros.sum());
+    }
+
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long sumMicros;
+
+        private Snapshot(long[] counts, long sumMicros) {
+            this.counts = counts;
+            this.sumMicros = sumMicros;
+        }
+
+        public long getCount() {
+            long count = 0;
+            for (long bucket : counts) {
+                count += bucket;
+            }
+            return count;
+        }
+
+        public double getSumSeconds() {
+            return sumMicros / 1_000_000.0;
+        }
+
+        // Number of recorded values below 2^exponent microseconds; exact, as powers of two are bucket boundaries
+        long countBelow(int exponent) {
+            long limit = 1L << exponent;
+            long count = 0;
+            for (int i = 0; i < counts.length && bucketUpperBound(i) <= limit; i++) {
+                count += counts[i];
+            }
+            return count;
+        }
+
+        // Value at the given quantile (0..1) in microseconds, as the upper bound of the bucket it falls into
+        public long valueAtQuantile(double quantile) {
+            long total = getCount();
+            if (total == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(quantile * total);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= Math.max(rank, 1)) {
+                    return bucketUpperBound(i);
+                }
+            }
+            return bucketUpperBound(counts.length - 1);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.music.metrics;
+
+import io.javalin.Javalin;
+import io.javalin.http.Context;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Serves /metrics and records the latency and status of every HTTP request.
+// Requests are labelled with the route template (e.g. /transfer-playlists/{jobId}) rather than the path, so the
+// number of series stays bounded; requests that matched no route share the "unmatched" label.
+public class MetricsController {
+    private static final String UNMATCHED_ROUTE = "unmatched";
+    private final MetricsRegistry registry;
+    private final Map<String, RouteMetrics> routes = new ConcurrentHashMap<>();
+
+    private record RouteMetrics(LatencyHistogram latency, Counter[] statusClasses) {
+    }
+
+    public MetricsController(MetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    public void registerRoutes(Javalin app) {
+        app.get("/metrics", this::metrics);
+    }
+
+    public void metrics(Context ctx) {
+        ctx.contentType("text/plain; version=0.0.4; charset=utf-8");
+        ctx.header("Cache-Control", "no-store");
+        ctx.result(registry.scrape());
+    }
+
+    // Javalin request logger: called once the response is complete, including for async (ctx.future) handlers
+    public void recordRequest(Context ctx, Float executionTimeMs) {
+        String route = routeOf(ctx);
+        String method = ctx.method().name();
+        RouteMetrics metrics = routes.computeIfAbsent(method + ' ' + route, key -> newRouteMetrics(method, route));
+        metrics.latency().recordMicros((long) (executionTimeMs * 1000));
+        int statusClass = Math.min(Math.max(ctx.statusCode() / 100, 1), 5);
+        Counter requests = metrics.statusClasses()[statusClass - 1];
+        if (requests == null) {
+            // Racing threads get the same counter back from the registry, so the unsynchronized write is harmless
+            requests = registry.counter("http_server_requests_total", "HTTP requests handled, by route and status class",
+                    "method", method, "route", route, "status", statusClass + "xx");
+            metrics.statusClasses()[statusClass - 1] = requests;
+        }
+        requests.increment();
+    }
+
+    private RouteMetrics newRouteMetrics(String method, String route) {
+        LatencyHistogram latency = registry.histogram("http_server_request_duration_seconds",
+                "Time to handle an HTTP request, by route", "method", method, "route", route);
+        return new RouteMetrics(latency, new Counter[5]);  // status class counters are created on first use
+    }
+
+    private static String routeOf(Context ctx) {
+        try {
+            String route = ctx.endpointHandlerPath();
+            return route.isEmpty() || "*".equals(route) ? UNMATCHED_ROUTE : route;
+        } catch (IllegalStateException e) {
+            return UNMATCHED_ROUTE;  // no endpoint matched, e.g. a static file or a 404
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.music.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.DoubleSupplier;
+import java.util.function.Supplier;
+
+// Named counters, latency histograms and gauges of the process, rendered in the Prometheus text exposition format.
+// Metrics are created once and then held by the code that records them, so the hot path never touches the
+// registry's maps. A metric is identified by its name and label pairs; asking again returns the same instance.
+public final class MetricsRegistry {
+    private static final MetricsRegistry DEFAULT = new MetricsRegistry();
+
+    private final Map<String, Family> families = new ConcurrentHashMap<>();
+
+    private enum Type {
+        COUNTER("counter"),
+        GAUGE("gauge"),
+        HISTOGRAM("histogram");
+
+        private final String prometheusName;
+
+        Type(String prometheusName) {
+            this.prometheusName = prometheusName;
+        }
+    }
+
+    // All metrics sharing a name; keyed by their rendered label set, e.g. {route="/playlists",method="GET"}
+    private record Family(String name, String help, Type type, Map<String, Object> series) {
+    }
+
+    // Registry shared by the whole application and served on /metrics
+    public static MetricsRegistry getDefault() {
+        return DEFAULT;
+    }
+
+    // labels are alternating names and values, e.g. counter("x_total", "help", "route", "/playlists")
+    public Counter counter(String name, String help, String... labels) {
+        return (Counter) series(name, help, Type.COUNTER, labels, Counter::new);
+    }
+
+    public LatencyHistogram histogram(String name, String help, String... labels) {
+        return (LatencyHistogram) series(name, help, Type.HISTOGRAM, labels, LatencyHistogram::new);
+    }
+
+    // Gauges are sampled when /metrics is scraped; registering the same series again replaces the supplier
+    public void gauge(String name, String help, DoubleSupplier value, String... labels) {
+        Family family = family(name, help, Type.GAUGE);
+        family.series().put(renderLabels(labels), value);
+    }
+
+    private Object series(String name, String help, Type type, String[] labels, Supplier<Object> factory) {
+        Family family = family(name, help, type);
+        return family.series().computeIfAbsent(renderLabels(labels), key -> factory.get());
+    }
+
+    private Family family(String name, String help, Type type) {
+        Family family = families.computeIfAbsent(name, key -> new Family(name, help, type, new ConcurrentHashMap<>()));
+        if (family.type() != type) {
+            throw new IllegalArgumentException("Metric " + name + " is already registered as a " + family.type().prometheusName);
+        }
+        return family;
+    }
+
+    private static String renderLabels(String[] labels) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Labels must be name/value pairs");
+        }
+        if (labels.length == 0) {
+            return "";
+        }
+        StringBuilder rendered = new StringBuilder("{");
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0) {
+                rendered.append(',');
+            }
+            rendered.append(labels[i]).append("=\"").append(escapeLabelValue(labels[i + 1])).append('"');
+        }
+        return rendered.append('}').toString();
+    }
+
+    private static String escapeLabelValue(String value) {
+        return String.valueOf(value).replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    // Renders every metric in the Prometheus text format (version 0.0.4), families and series in name order
+    public String scrape() {
+        StringBuilder out = new StringBuilder(4096);
+        for (Family family : new TreeMap<>(families).values()) {
+            out.append("# HELP ").append(family.name()).append(' ').append(family.help()).append('\n');
+            out.append("# TYPE ").append(family.name()).append(' ').append(family.type().prometheusName).append('\n');
+            for (Map.Entry<String, Object> series : new TreeMap<>(family.series()).entrySet()) {
+                switch (family.type()) {
+                    case COUNTER -> sample(out, family.name(), series.getKey(), ((Counter) series.getValue()).get());
+                    case GAUGE -> sample(out, family.name(), series.getKey(), ((DoubleSupplier) series.getValue()).getAsDouble());
+                    case HISTOGRAM -> histogram(out, family.name(), series.getKey(), ((LatencyHistogram) series.getValue()).snapshot());
+                }
+            }
+        }
+        return out.toString();
+    }
+
+    private static void histogram(StringBuilder out, String name, String labels, LatencyHistogram.Snapshot snapshot) {
+        for (int exponent = LatencyHistogram.FIRST_EXPORTED_EXPONENT; exponent <= LatencyHistogram.LAST_EXPORTED_EXPONENT; exponent++) {
+            String le = formatDouble((1L << exponent) / 1_000_000.0);
+            sample(out, name + "_bucket", withLabel(labels, "le", le), snapshot.countBelow(exponent));
+        }
+        long count = snapshot.getCount();
+        sample(out, name + "_bucket", withLabel(labels, "le", "+Inf"), count);
+        sample(out, name + "_sum", labels, snapshot.getSumSeconds());
+        sample(out, name + "_count", labels, count);
+    }
+
+    private static String withLabel(String labels, String name, String value) {
+        String label = name + "=\"" + value + '"';
+        return labels.isEmpty() ? "{" + label + "}" : labels.substring(0, labels.length() - 1) + "," + label + "}";
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, long value) {
+        out.append(name).append(labels).append(' ').append(value).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, double value) {
+        out.append(name).append(labels).append(' ').append(formatDouble(value)).append('\n');
+    }
+
+    private static String formatDouble(double value) {
+        if (Double.isNaN(value)) {
+            return "NaN";
+        }
+        if (Double.isInfinite(value)) {
+            return value > 0 ? "+Inf" : "-Inf";
+        }
+        return Double.toString(value);
+    }
+}
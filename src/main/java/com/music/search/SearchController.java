@@ -0,0 +1,64 @@
+package com.music.search;
+
+import com.music.spotify.SpotifyService;
+import com.music.spotify.SpotifySessionStore;
+import io.javalin.Javalin;
+import io.javalin.http.Context;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Locale;
+import java.util.Map;
+
+public class SearchController {
+    private static final Logger logger = LoggerFactory.getLogger(SearchController.class);
+    private static final int DEFAULT_LIMIT = 20;
+    private static final int MAX_LIMIT = 100;
+    private static final int MAX_QUERY_LENGTH = 200;
+    private final SpotifySessionStore sessions;
+    private final SearchService searchService;
+
+    public SearchController(SpotifySessionStore sessions, SearchService searchService) {
+        this.sessions = sessions;
+        this.searchService = searchService;
+    }
+
+    public void registerRoutes(Javalin app) {
+        app.get("/search", this::search);
+    }
+
+    // GET /search?q=...&offset=0&limit=20&kind=playlist|track
+    public void search(Context ctx) {
+        SpotifyService spotifyService = sessions.find(ctx);
+        if (spotifyService == null || !spotifyService.isLoggedIn()) {
+            ctx.status(401).json(Map.of("error", "Not logged in"));
+            return;
+        }
+        String query = ctx.queryParam("q");
+        if (query == null || query.isBlank() || query.length() > MAX_QUERY_LENGTH) {
+            ctx.status(400).json(Map.of("error", "Expected a query of 1 to " + MAX_QUERY_LENGTH + " characters in q"));
+            return;
+        }
+        int offset;
+        int limit;
+        SearchIndex.Kind kind;
+        try {
+            offset = Math.max(0, ctx.queryParamAsClass("offset", Integer.class).getOrDefault(0));
+            limit = Math.min(MAX_LIMIT, Math.max(1, ctx.queryParamAsClass("limit", Integer.class).getOrDefault(DEFAULT_LIMIT)));
+            String kindParam = ctx.queryParam("kind");
+            kind = kindParam == null || kindParam.isBlank() ? null : SearchIndex.Kind.valueOf(kindParam.toUpperCase(Locale.ROOT));
+        } catch (RuntimeException e) {
+            ctx.status(400).json(Map.of("error", "offset and limit must be numbers and kind playlist or track"));
+            return;
+        }
+
+        ctx.header("Cache-Control", "no-store");
+        ctx.future(() -> searchService.search(spotifyService, query, kind, offset, limit)
+                .thenAccept(ctx::json)
+                .exceptionally(e -> {
+                    logger.error("Search failed: {}", e.getMessage(), e);
+                    ctx.status(500).json(Map.of("error", "Search failed"));
+                    return null;
+                }));
+    }
+}
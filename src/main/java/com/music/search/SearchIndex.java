@@ -0,0 +1,457 @@
+package com.music.search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// In-memory inverted index over one user's playlists and tracks.
+// Text is lower-cased, stripped of accents and split into words of letters and digits. Every distinct word is a term with two
+// posting lists of document numbers, one for titles and one for other text (descriptions, artists). Postings are
+// int arrays, and are appended in document order, so they stay sorted without any merging. A second map from
+// trigrams to the terms containing them answers infix queries: "ight" finds "nights" without scanning the terms.
+// Documents are added and replaced one at a time. A replaced or removed document is only marked dead; once dead
+// documents outnumber live ones the index is rebuilt from the live ones, so the cost of removal stays amortized.
+// A query matches documents that contain every query word as a word prefix or infix, ranked by how many words
+// matched at the start of a title word, playlists before tracks, then in the order they were indexed.
+public class SearchIndex {
+    public static final int MAX_QUERY_WORDS = 8;
+    private static final int MIN_DEAD_TO_COMPACT = 1024;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final List<Document> documents = new ArrayList<>();  // by document number, null once dead
+    private final Map<String, Integer> numbers = new HashMap<>();  // document key -> number
+    private final Set<String> spotifyPlaylistIds = new HashSet<>();
+    private Set<String> importKeys = new HashSet<>();  // documents of the latest import
+    private long[] alive = new long[16];
+    private int dead;
+    private boolean playlistsSeeded;
+    private final TreeMap<String, Term> terms = new TreeMap<>();
+    private final List<Term> termsById = new ArrayList<>();
+    private final Map<Long, IntList> trigramTerms = new HashMap<>();
+
+    public enum Kind {
+        PLAYLIST,
+        TRACK
+    }
+
+    // id is the Spotify playlist id or the track/episode URI; imported playlists have no id. source is "spotify" or "import"
+    public record Hit(Kind kind, String id, String title, String subtitle, String source) {
+    }
+
+    public record Page(String query, int total, int offset, int limit, List<Hit> results) {
+    }
+
+    public record ImportedPlaylist(String name, String description) {
+    }
+
+    // A resolved track or episode of an import; artists are searchable alongside the title
+    public record ImportedTrack(String uri, String title, List<String> artists, String album) {
+    }
+
+    // other is indexed alongside the title but ranks lower
+    private record Document(String key, Hit hit, String other) {
+    }
+
+    private static final class Term {
+        private final String text;
+        private final IntList titleDocuments = new IntList();
+        private final IntList otherDocuments = new IntList();
+
+        private Term(String text) {
+            this.text = text;
+        }
+    }
+
+    // Growable int array
+    private static final class IntList {
+        private int[] values = new int[4];
+        private int size;
+
+        private void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        // Documents are indexed one at a time, so a repeated word of one document is always the last entry
+        private void addIfNotLast(int value) {
+            if (size == 0 || values[size - 1] != value) {
+                add(value);
+            }
+        }
+    }
+
+    // Brings the Spotify playlists in line with the user's current list. Only the playlists in changedIds are
+    // re-indexed, or all of them if changedIds is null; playlists no longer in the list are removed.
+    public void updateSpotifyPlaylists(Map<String, String> namesById, Collection<String> changedIds) {
+        write(() -> {
+            for (String playlistId : List.copyOf(spotifyPlaylistIds)) {
+                if (!namesById.containsKey(playlistId)) {
+                    spotifyPlaylistIds.remove(playlistId);
+                    remove("spotify:" + playlistId);
+                }
+            }
+            for (String playlistId : changedIds == null ? namesById.keySet() : changedIds) {
+                if (namesById.containsKey(playlistId)) {
+                    spotifyPlaylistIds.add(playlistId);
+                    put("spotify:" + playlistId, new Hit(Kind.PLAYLIST, playlistId, namesById.get(playlistId), null, "spotify"), null);
+                }
+            }
+            playlistsSeeded = true;
+        });
+    }
+
+    // Whether the Spotify playlists have been indexed at least once
+    public boolean hasSpotifyPlaylists() {
+        lock.readLock().lock();
+        try {
+            return playlistsSeeded;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Replaces the imported playlists and tracks with those of the user's latest import: documents that were only
+    // in an earlier import are removed, unchanged ones are kept as they are. Imported playlists of the same name are
+    // told apart by their occurrence.
+    public void replaceImport(List<ImportedPlaylist> playlists, List<ImportedTrack> tracks) {
+        write(() -> {
+            Set<String> keys = new HashSet<>();
+            Map<String, Integer> occurrences = new HashMap<>();
+            for (ImportedPlaylist playlist : playlists) {
+                String name = playlist.name() == null ? "" : playlist.name();
+                String key = "import:" + occurrences.merge(name, 1, Integer::sum) + ":" + name;
+                keys.add(key);
+                put(key, new Hit(Kind.PLAYLIST, null, name, playlist.description(), "import"), playlist.description());
+            }
+            for (ImportedTrack track : tracks) {
+                String artistText = track.artists() == null || track.artists().isEmpty() ? null : String.join(", ", track.artists());
+                String subtitle = artistText == null ? track.album() : track.album() == null ? artistText : artistText + " - " + track.album();
+                String key = "track:" + track.uri();
+                keys.add(key);
+                put(key, new Hit(Kind.TRACK, track.uri(), track.title(), subtitle, "import"), artistText);
+            }
+            for (String key : importKeys) {
+                if (!keys.contains(key)) {
+                    remove(key);
+                }
+            }
+            importKeys = keys;
+        });
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return numbers.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Document numbers in use, dead ones included; equal to size() right after a compaction
+    int documentNumbers() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // kind may be null for both kinds
+    public Page search(String query, Kind kind, int offset, int limit) {
+        List<String> words = words(query);
+        if (words.size() > MAX_QUERY_WORDS) {
+            words = words.subList(0, MAX_QUERY_WORDS);
+        }
+        if (words.isEmpty()) {
+            return new Page(query, 0, offset, limit, List.of());
+        }
+        lock.readLock().lock();
+        try {
+            return search(query, words, kind, offset, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Page search(String query, List<String> words, Kind kind, int offset, int limit) {
+        int wordCount = words.size();
+        long[] matched = Arrays.copyOf(alive, alive.length);
+        long[][] titlePrefixHits = new long[wordCount][];
+        for (int w = 0; w < wordCount && !isEmpty(matched); w++) {
+            long[] strong = new long[alive.length];
+            long[] weak = new long[alive.length];
+            collect(words.get(w), strong, weak);
+            for (int i = 0; i < matched.length; i++) {
+                matched[i] &= strong[i] | weak[i];
+            }
+            titlePrefixHits[w] = strong;
+        }
+
+        // Rank buckets: more words matching the start of a title word first, then playlists before tracks.
+        // A counting sort over the buckets keeps document order within each, in one pass over the matches.
+        int bucketCount = (wordCount + 1) * 2;
+        int[] bucketStarts = new int[bucketCount + 1];
+        int[] hits = new int[Math.max(16, bitCount(matched))];
+        byte[] buckets = new byte[hits.length];
+        int total = 0;
+        for (int number = nextSetBit(matched, 0); number >= 0; number = nextSetBit(matched, number + 1)) {
+            Hit hit = documents.get(number).hit();
+            if (kind != null && hit.kind() != kind) {
+                continue;
+            }
+            int bucket = bucket(titlePrefixHits, number, hit, wordCount);
+            hits[total] = number;
+            buckets[total++] = (byte) bucket;
+            bucketStarts[bucket + 1]++;
+        }
+        for (int b = 0; b < bucketCount; b++) {
+            bucketStarts[b + 1] += bucketStarts[b];
+        }
+
+        int end = (int) Math.min(total, (long) offset + limit);
+        Hit[] page = new Hit[Math.max(0, end - offset)];
+        for (int i = 0; i < total; i++) {
+            int rank = bucketStarts[buckets[i]]++;
+            if (rank >= offset && rank < end) {
+                page[rank - offset] = documents.get(hits[i]).hit();
+            }
+        }
+        List<Hit> results = Arrays.asList(page);
+        return new Page(query, total, offset, limit, results);
+    }
+
+    private static int bucket(long[][] titlePrefixHits, int number, Hit hit, int wordCount) {
+        int strong = 0;
+        for (long[] hits : titlePrefixHits) {
+            if (hits != null && (hits[number >>> 6] & (1L << number)) != 0) {
+                strong++;
+            }
+        }
+        return (wordCount - strong) * 2 + (hit.kind() == Kind.PLAYLIST ? 0 : 1);
+    }
+
+    // Sets the documents matching one query word: in strong those where it starts a title word, in weak the rest
+    private void collect(String word, long[] strong, long[] weak) {
+        if (word.length() < 3) {
+            for (Term term : terms.subMap(word, true, word + Character.MAX_VALUE, false).values()) {
+                or(strong, term.titleDocuments);
+                or(weak, term.otherDocuments);
+            }
+            return;
+        }
+        for (Term term : termsContaining(word)) {
+            if (term.text.startsWith(word)) {
+                or(strong, term.titleDocuments);
+            } else {
+                or(weak, term.titleDocuments);
+            }
+            or(weak, term.otherDocuments);
+        }
+    }
+
+    // Terms that have every trigram of word, confirmed by a substring check
+    private List<Term> termsContaining(String word) {
+        List<IntList> lists = new ArrayList<>(word.length() - 2);
+        for (int i = 0; i + 3 <= word.length(); i++) {
+            IntList list = trigramTerms.get(trigram(word, i));
+            if (list == null) {
+                return List.of();
+            }
+            lists.add(list);
+        }
+        lists.sort((a, b) -> Integer.compare(a.size, b.size));
+        IntList smallest = lists.get(0);
+        List<Term> found = new ArrayList<>();
+        for (int i = 0; i < smallest.size; i++) {
+            int termId = smallest.values[i];
+            boolean inAll = true;
+            for (int l = 1; l < lists.size() && inAll; l++) {
+                IntList other = lists.get(l);
+                inAll = Arrays.binarySearch(other.values, 0, other.size, termId) >= 0;
+            }
+            Term term = termsById.get(termId);
+            if (inAll && term.text.contains(word)) {
+                found.add(term);
+            }
+        }
+        return found;
+    }
+
+    private void write(Runnable change) {
+        lock.writeLock().lock();
+        try {
+            change.run();
+            if (dead >= MIN_DEAD_TO_COMPACT && dead > numbers.size()) {
+                compact();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Indexes a document under key unless the same content is already indexed there
+    private void put(String key, Hit hit, String other) {
+        Integer existing = numbers.get(key);
+        if (existing != null) {
+            Document current = documents.get(existing);
+            if (current.hit().equals(hit) && Objects.equals(current.other(), other)) {
+                return;
+            }
+            kill(existing);
+        }
+        add(new Document(key, hit, other));
+    }
+
+    private void remove(String key) {
+        Integer existing = numbers.remove(key);
+        if (existing != null) {
+            kill(existing);
+        }
+    }
+
+    private void kill(int number) {
+        documents.set(number, null);
+        alive[number >>> 6] &= ~(1L << number);
+        dead++;
+    }
+
+    private void add(Document document) {
+        int number = documents.size();
+        documents.add(document);
+        numbers.put(document.key(), number);
+        if (number >>> 6 >= alive.length) {
+            alive = Arrays.copyOf(alive, alive.length * 2);
+        }
+        alive[number >>> 6] |= 1L << number;
+        for (String word : words(document.hit().title())) {
+            term(word).titleDocuments.addIfNotLast(number);
+        }
+        for (String word : words(document.other())) {
+            term(word).otherDocuments.addIfNotLast(number);
+        }
+    }
+
+    private Term term(String word) {
+        Term term = terms.get(word);
+        if (term == null) {
+            term = new Term(word);
+            int termId = termsById.size();
+            terms.put(word, term);
+            termsById.add(term);
+            for (int i = 0; i + 3 <= word.length(); i++) {
+                IntList list = trigramTerms.computeIfAbsent(trigram(word, i), key -> new IntList());
+                list.addIfNotLast(termId);
+            }
+        }
+        return term;
+    }
+
+    // Renumbers the live documents from scratch and drops terms only dead documents used
+    private void compact() {
+        List<Document> live = new ArrayList<>(numbers.size());
+        for (Document document : documents) {
+            if (document != null) {
+                live.add(document);
+            }
+        }
+        documents.clear();
+        numbers.clear();
+        terms.clear();
+        termsById.clear();
+        trigramTerms.clear();
+        alive = new long[Math.max(16, (live.size() >>> 6) + 1)];
+        dead = 0;
+        for (Document document : live) {
+            add(document);
+        }
+    }
+
+    // Lower-case words of letters and digits, with accents removed
+    static List<String> words(String text) {
+        if (text == null || text.isEmpty()) {
+            return List.of();
+        }
+        String source = text;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) >= 0x80) {
+                source = Normalizer.normalize(text, Normalizer.Form.NFD);  // splits accents off their letters
+                break;
+            }
+        }
+        List<String> words = new ArrayList<>();
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i <= source.length(); i++) {
+            char c = i < source.length() ? source.charAt(i) : ' ';
+            if (Character.getType(c) == Character.NON_SPACING_MARK) {
+                continue;
+            }
+            if (Character.isLetterOrDigit(c)) {
+                word.append(Character.toLowerCase(c));
+            } else if (!word.isEmpty()) {
+                words.add(word.toString());
+                word.setLength(0);
+            }
+        }
+        return words;
+    }
+
+    private static long trigram(String word, int start) {
+        return (long) word.charAt(start) << 32 | (long) word.charAt(start + 1) << 16 | word.charAt(start + 2);
+    }
+
+    private static void or(long[] bits, IntList documents) {
+        for (int i = 0; i < documents.size; i++) {
+            int number = documents.values[i];
+            if (number >>> 6 < bits.length) {
+                bits[number >>> 6] |= 1L << number;
+            }
+        }
+    }
+
+    private static int bitCount(long[] bits) {
+        int count = 0;
+        for (long word : bits) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    private static boolean isEmpty(long[] bits) {
+        for (long word : bits) {
+            if (word != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int nextSetBit(long[] bits, int from) {
+        int index = from >>> 6;
+        if (index >= bits.length) {
+            return -1;
+        }
+        long word = bits[index] & (-1L << from);
+        while (true) {
+            if (word != 0) {
+                return (index << 6) + Long.numberOfTrailingZeros(word);
+            }
+            if (++index == bits.length) {
+                return -1;
+            }
+            word = bits[index];
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.music.search;
+
+import com.music.spotify.ExpiringCache;
+import com.music.spotify.LibraryListener;
+import com.music.spotify.SpotifyService;
+import com.music.spotify.TrackResolver;
+import fileProcessor.CompactLibrary;
+import fileProcessor.CompactPlaylist;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+// Keeps a SearchIndex per user, updated in place as sessions learn about the user's library: playlists when the
+// playlist list is revalidated (only new, renamed or changed ones are re-indexed), imported playlists and their
+// resolved tracks when an import is resolved. A user's index is created on their first search and seeded from the
+// cached playlist list; indexes unused for a while are dropped and seeded again when needed.
+public class SearchService implements LibraryListener {
+    private static final Logger logger = LoggerFactory.getLogger(SearchService.class);
+    public static final int DEFAULT_MAX_USERS = 2_000;
+    public static final Duration DEFAULT_IDLE_TIMEOUT = Duration.ofHours(12);
+
+    private final ExpiringCache<String, SearchIndex> indexes;
+
+    public SearchService() {
+        this(DEFAULT_MAX_USERS, DEFAULT_IDLE_TIMEOUT);
+    }
+
+    public SearchService(int maxUsers, Duration idleTimeout) {
+        this.indexes = new ExpiringCache<>(maxUsers, idleTimeout);
+    }
+
+    public CompletableFuture<SearchIndex.Page> search(SpotifyService service, String query, SearchIndex.Kind kind, int offset, int limit) {
+        return service.getUserIdAsync()
+                .thenCompose(userId -> {
+                    if (userId == null) {
+                        return CompletableFuture.failedFuture(new IllegalStateException("User ID could not be fetched"));
+                    }
+                    SearchIndex index = indexFor(userId);
+                    if (index.hasSpotifyPlaylists()) {
+                        return CompletableFuture.completedFuture(index.search(query, kind, offset, limit));
+                    }
+                    return service.fetchPlaylistSnapshots(false)
+                            .thenApply(playlists -> {
+                                index.updateSpotifyPlaylists(namesById(playlists), null);
+                                return index.search(query, kind, offset, limit);
+                            });
+                });
+    }
+
+    @Override
+    public void playlistsRevalidated(String userId, List<SpotifyService.PlaylistSnapshot> playlists, List<String> changedIds) {
+        SearchIndex index = indexes.getStale(userId);
+        if (index != null && index.hasSpotifyPlaylists()) {
+            index.updateSpotifyPlaylists(namesById(playlists), changedIds);
+        }
+    }
+
+    @Override
+    public void importResolved(String userId, CompactLibrary library, TrackResolver.Resolution resolution) {
+        SearchIndex index = indexFor(userId);
+        List<SearchIndex.ImportedPlaylist> playlists = new ArrayList<>(library.getPlaylists().size());
+        for (CompactPlaylist playlist : library.getPlaylists()) {
+            playlists.add(new SearchIndex.ImportedPlaylist(playlist.getName(), playlist.getDescription()));
+        }
+        List<SearchIndex.ImportedTrack> tracks = new ArrayList<>(resolution.resolved().size());
+        for (TrackResolver.TrackMetadata track : resolution.resolved()) {
+            tracks.add(new SearchIndex.ImportedTrack(track.uri(), track.name(), track.artists(), track.album()));
+        }
+        // The latest import replaces the previous one, so playlists and tracks dropped from the export stop matching
+        index.replaceImport(playlists, tracks);
+        logger.info("Indexed {} imported playlists and {} tracks, {} documents in the index",
+                playlists.size(), tracks.size(), index.size());
+    }
+
+    private synchronized SearchIndex indexFor(String userId) {
+        SearchIndex index = indexes.get(userId);
+        if (index == null) {
+            index = new SearchIndex();
+            indexes.put(userId, index);
+        }
+        return index;
+    }
+
+    private static Map<String, String> namesById(List<SpotifyService.PlaylistSnapshot> playlists) {
+        Map<String, String> namesById = new LinkedHashMap<>(playlists.size() * 2);
+        for (SpotifyService.PlaylistSnapshot playlist : playlists) {
+            namesById.put(playlist.id(), playlist.name());
+        }
+        return namesById;
+    }
+}
@@ -0,0 +1,104 @@
+package com.music.spotify;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.music.http.HttpCaching;
+
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+// A user's playlist list as last fetched, together with the snapshot_id of every playlist.
+// On revalidation an entry whose snapshot_id is unchanged is carried over as is, so only playlists
+// that actually changed are replaced and reported as changed.
+final class CachedPlaylists {
+    private static final ObjectMapper JSON = new ObjectMapper();
+    private final List<Map<String, String>> playlists;
+    private final Map<String, String> snapshotIds;
+    private final List<String> changedPlaylistIds;
+    private volatile Response response;
+
+    // A playlist as returned by the paging endpoint, before it is turned into a response entry
+    record Summary(String id, String name, String snapshotId) {
+    }
+
+    // The /playlists body for this entry and its strong ETag
+    record Response(byte[] json, String etag) {
+    }
+
+    private CachedPlaylists(List<Map<String, String>> playlists, Map<String, String> snapshotIds, List<String> changedPlaylistIds) {
+        this.playlists = Collections.unmodifiableList(playlists);
+        this.snapshotIds = Collections.unmodifiableMap(snapshotIds);
+        this.changedPlaylistIds = Collections.unmodifiableList(changedPlaylistIds);
+    }
+
+    // Builds the new cache entry, reusing entries of `previous` (may be null) whose snapshot_id is unchanged
+    static CachedPlaylists revalidate(CachedPlaylists previous, List<Summary> fetched) {
+        Map<String, Map<String, String>> previousEntries = new HashMap<>();
+        if (previous != null) {
+            for (Map<String, String> entry : previous.playlists) {
+                previousEntries.put(entry.get("id"), entry);
+            }
+        }
+
+        List<Map<String, String>> playlists = new ArrayList<>(fetched.size());
+        Map<String, String> snapshotIds = new HashMap<>(fetched.size() * 2);
+        List<String> changed = new ArrayList<>();
+        for (Summary summary : fetched) {
+            Map<String, String> entry = previousEntries.get(summary.id());
+            boolean unchanged = entry != null
+                    && summary.snapshotId() != null
+                    && summary.snapshotId().equals(previous.snapshotIds.get(summary.id()))
+                    && Objects.equals(summary.name(), entry.get("name"));
+            if (!unchanged) {
+                entry = Map.of(
+                        "id", summary.id(),
+                        "name", summary.name()
+                );
+                changed.add(summary.id());
+            }
+            playlists.add(entry);
+            if (summary.snapshotId() != null) {
+                snapshotIds.put(summary.id(), summary.snapshotId());
+            }
+        }
+        return new CachedPlaylists(playlists, snapshotIds, changed);
+    }
+
+    List<Map<String, String>> getPlaylists() {
+        return playlists;
+    }
+
+    String getSnapshotId(String playlistId) {
+        return snapshotIds.get(playlistId);
+    }
+
+    Map<String, String> getSnapshotIds() {
+        return snapshotIds;
+    }
+
+    // Rendered on first use and then shared by every request served from this entry
+    Response getResponse() {
+        Response rendered = response;
+        if (rendered == null) {
+            byte[] json;
+            try {
+                json = JSON.writeValueAsBytes(Map.of("playlists", playlists));
+            } catch (JsonProcessingException e) {
+                throw new UncheckedIOException(e);
+            }
+            rendered = new Response(json, HttpCaching.strongEtag(json));
+            response = rendered;
+        }
+        return rendered;
+    }
+
+    // Ids of playlists that are new or whose snapshot_id differed from the previous entry
+    List<String> getChangedPlaylistIds() {
+        return changedPlaylistIds;
+    }
+}
@@ -0,0 +1,45 @@
+package com.music.spotify;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+// Runs asynchronous tasks with a bound on how many are in flight, without holding a thread per task: each lane starts
+// the next task when its previous one completes, so the number of lanes is the concurrency.
+// Tasks that complete synchronously (e.g. served from a cache) are taken in a loop rather than by recursion, so a
+// long run of them cannot overflow the stack. A failed task ends its lane and fails the combined future.
+public final class ConcurrentLanes {
+
+    private ConcurrentLanes() {
+    }
+
+    // Runs every queued task, at most maxConcurrent at a time
+    public static CompletableFuture<Void> run(Queue<Supplier<CompletableFuture<Void>>> tasks, int maxConcurrent) {
+        return run(Math.min(maxConcurrent, tasks.size()), () -> {
+            Supplier<CompletableFuture<Void>> task = tasks.poll();
+            return task == null ? null : task.get();
+        });
+    }
+
+    // Starts lanes lanes; each keeps calling nextTask, which starts a task and returns it, until it returns null
+    public static CompletableFuture<Void> run(int lanes, Supplier<CompletableFuture<Void>> nextTask) {
+        CompletableFuture<?>[] laneFutures = new CompletableFuture<?>[lanes];
+        for (int i = 0; i < lanes; i++) {
+            laneFutures[i] = drain(nextTask);
+        }
+        return CompletableFuture.allOf(laneFutures);
+    }
+
+    private static CompletableFuture<Void> drain(Supplier<CompletableFuture<Void>> nextTask) {
+        CompletableFuture<Void> task;
+        while ((task = nextTask.get()) != null) {
+            if (!task.isDone()) {
+                return task.thenCompose(unused -> drain(nextTask));
+            }
+            if (task.isCompletedExceptionally()) {
+                return task;
+            }
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+}
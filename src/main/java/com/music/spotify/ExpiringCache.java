@@ -0,0 +1,134 @@
+package com.music.spotify;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Concurrent cache with a time-to-live per entry and a maximum size.
+// Expired entries are dropped lazily on access and in bulk when the cache fills up; if it is still full
+// the least recently used entries are evicted in a batch. Hit, miss and eviction counts are kept in LongAdders.
+public class ExpiringCache<K, V> {
+    private static final int EVICTION_BATCH_DIVISOR = 16;
+    private final Map<K, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final int maxSize;
+    private final long ttlMillis;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private static final class Entry<V> {
+        private final V value;
+        private final long writeTime;
+        private volatile long lastAccessTime;
+
+        private Entry(V value, long now) {
+            this.value = value;
+            this.writeTime = now;
+            this.lastAccessTime = now;
+        }
+    }
+
+    public ExpiringCache(int maxSize, Duration ttl) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be at least 1");
+        }
+        this.maxSize = maxSize;
+        this.ttlMillis = ttl.toMillis();
+    }
+
+    // Returns the cached value if present and not expired, counting a hit or a miss
+    public V get(K key) {
+        Entry<V> entry = entries.get(key);
+        long now = System.currentTimeMillis();
+        if (entry == null || isExpired(entry, now)) {
+            misses.increment();
+            return null;
+        }
+        entry.lastAccessTime = now;
+        hits.increment();
+        return entry.value;
+    }
+
+    // Returns the cached value even if it has expired, without touching the statistics; used for revalidation
+    public V getStale(K key) {
+        Entry<V> entry = entries.get(key);
+        return entry == null ? null : entry.value;
+    }
+
+    public void put(K key, V value) {
+        if (!entries.containsKey(key) && entries.size() >= maxSize) {
+            makeRoom();
+        }
+        entries.put(key, new Entry<>(value, System.currentTimeMillis()));
+    }
+
+    public void invalidate(K key) {
+        entries.remove(key);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public Map<String, Long> stats() {
+        return Map.of(
+                "hits", getHits(),
+                "misses", getMisses(),
+                "evictions", getEvictions(),
+                "size", (long) size()
+        );
+    }
+
+    private boolean isExpired(Entry<V> entry, long now) {
+        return now - entry.writeTime >= ttlMillis;
+    }
+
+    private void makeRoom() {
+        long now = System.currentTimeMillis();
+        Iterator<Entry<V>> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            if (isExpired(iterator.next(), now)) {
+                iterator.remove();
+                evictions.increment();
+            }
+        }
+        if (entries.size() < maxSize) {
+            return;
+        }
+        // Evict the least recently used 1/16th in one pass, so a full cache scans once per batch rather than per put
+        long[] accessTimes = new long[entries.size()];
+        int count = 0;
+        for (Entry<V> entry : entries.values()) {
+            if (count == accessTimes.length) {
+                break;
+            }
+            accessTimes[count++] = entry.lastAccessTime;
+        }
+        Arrays.sort(accessTimes, 0, count);
+        int toEvict = Math.min(count, entries.size() - maxSize + Math.max(1, maxSize / EVICTION_BATCH_DIVISOR));
+        long threshold = accessTimes[Math.max(0, toEvict - 1)];
+        Iterator<Entry<V>> candidates = entries.values().iterator();
+        while (toEvict > 0 && candidates.hasNext()) {
+            if (candidates.next().lastAccessTime <= threshold) {
+                candidates.remove();
+                evictions.increment();
+                toEvict--;
+            }
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.music.spotify;
+
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.ParseException;
+import se.michaelthelin.spotify.IHttpManager;
+import se.michaelthelin.spotify.exceptions.SpotifyWebApiException;
+
+import java.io.IOException;
+import java.net.URI;
+
+// Sends the client library's requests to the hosts in SpotifyHosts. The token requests hard-code
+// accounts.spotify.com, so the hosts cannot be changed through SpotifyApi.Builder alone.
+class HostRewritingHttpManager implements IHttpManager {
+    private final IHttpManager delegate;
+    private final SpotifyHosts hosts;
+
+    HostRewritingHttpManager(IHttpManager delegate, SpotifyHosts hosts) {
+        this.delegate = delegate;
+        this.hosts = hosts;
+    }
+
+    @Override
+    public String get(URI uri, Header[] headers) throws IOException, SpotifyWebApiException, ParseException {
+        return delegate.get(hosts.rewrite(uri), headers);
+    }
+
+    @Override
+    public String post(URI uri, Header[] headers, HttpEntity body) throws IOException, SpotifyWebApiException, ParseException {
+        return delegate.post(hosts.rewrite(uri), headers, body);
+    }
+
+    @Override
+    public String put(URI uri, Header[] headers, HttpEntity body) throws IOException, SpotifyWebApiException, ParseException {
+        return delegate.put(hosts.rewrite(uri), headers, body);
+    }
+
+    @Override
+    public String delete(URI uri, Header[] headers, HttpEntity body) throws IOException, SpotifyWebApiException, ParseException {
+        return delegate.delete(hosts.rewrite(uri), headers, body);
+    }
+}
@@ -0,0 +1,19 @@
+package com.music.spotify;
+
+import fileProcessor.CompactLibrary;
+
+import java.util.List;
+
+// Told when a session learns something new about a user's library, so derived views such as the search index can be
+// updated in place. Called on the thread that completed the Spotify call; implementations must not block.
+public interface LibraryListener {
+
+    // The user's playlist list was fetched again; changedIds are the playlists that are new or whose name or
+    // snapshot_id changed, and playlists missing from the list have been deleted
+    default void playlistsRevalidated(String userId, List<SpotifyService.PlaylistSnapshot> playlists, List<String> changedIds) {
+    }
+
+    // An imported library was resolved against Spotify
+    default void importResolved(String userId, CompactLibrary library, TrackResolver.Resolution resolution) {
+    }
+}
@@ -0,0 +1,141 @@
+package com.music.spotify;
+
+import se.michaelthelin.spotify.model_objects.specification.Paging;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+// Fetches every page of an offset-based Spotify paging endpoint.
+// The first page is requested on its own to learn `total`, the remaining offsets are then requested
+// concurrently (at most maxConcurrency at a time) and each page is written straight into a buffer at its offset,
+// so Spotify's order is kept without re-copying the accumulated results per page. The buffer is presized from
+// `total` up to INITIAL_CAPACITY and grows as pages beyond it arrive, so a bogus total costs nothing up front.
+// Concurrent pages need a connection each: the factory gives every SpotifyApi a PooledHttpManager, as the library's
+// default manager holds a single connection and fails calls that overlap.
+public class PaginatedFetcher {
+    public static final int MAX_PAGE_SIZE = 50;
+    public static final int DEFAULT_MAX_CONCURRENCY = 8;
+    // Paging stops here whatever total the first page reports
+    public static final int MAX_ITEMS = 1_000_000;
+    static final int INITIAL_CAPACITY = 4096;
+
+    private final int pageSize;
+    private final int maxConcurrency;
+
+    // Requests a single page; implemented by the caller for the endpoint being paged
+    @FunctionalInterface
+    public interface PageRequest<T> {
+        CompletableFuture<Paging<T>> fetch(int offset, int limit);
+    }
+
+    public PaginatedFetcher() {
+        this(MAX_PAGE_SIZE, DEFAULT_MAX_CONCURRENCY);
+    }
+
+    public PaginatedFetcher(int pageSize, int maxConcurrency) {
+        if (pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("pageSize must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("maxConcurrency must be at least 1");
+        }
+        this.pageSize = pageSize;
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    // Fetches all pages and maps every item; items mapped to null are dropped from the result
+    public <T, R> CompletableFuture<List<R>> fetchAll(PageRequest<T> pageRequest, Function<T, R> mapper) {
+        return pageRequest.fetch(0, pageSize)
+                .thenCompose(firstPage -> {
+                    T[] firstItems = firstPage.getItems();
+                    int firstCount = firstItems == null ? 0 : firstItems.length;
+                    int reported = firstPage.getTotal() == null ? firstCount : Math.max(firstPage.getTotal(), firstCount);
+                    int total = Math.min(reported, MAX_ITEMS);
+
+                    PageBuffer buffer = new PageBuffer(total);
+                    AtomicInteger nextOffset = new AtomicInteger(firstCount);
+                    copyPage(firstPage, 0, buffer, mapper, nextOffset);
+
+                    int remainingPages = (total - firstCount + pageSize - 1) / pageSize;
+                    if (firstCount == 0 || remainingPages <= 0) {
+                        return CompletableFuture.completedFuture(buffer.toList());
+                    }
+
+                    // Every lane keeps claiming the next unfetched offset until the total is covered
+                    return ConcurrentLanes.run(Math.min(maxConcurrency, remainingPages), () -> {
+                        int offset = nextOffset.getAndAdd(pageSize);
+                        if (offset >= total) {
+                            return null;
+                        }
+                        return pageRequest.fetch(offset, pageSize)
+                                .thenAccept(page -> copyPage(page, offset, buffer, mapper, nextOffset));
+                    }).thenApply(unused -> buffer.toList());
+                });
+    }
+
+    // Maps a page into the buffer at its offset; items past the initially reported total are ignored.
+    // An empty page means the list ends before the reported total, so no lane claims further offsets.
+    private static <T, R> void copyPage(Paging<T> page, int offset, PageBuffer buffer, Function<T, R> mapper,
+                                        AtomicInteger nextOffset) {
+        T[] items = page.getItems();
+        if (items == null || items.length == 0) {
+            nextOffset.set(buffer.limit);
+            return;
+        }
+        int count = Math.max(0, Math.min(items.length, buffer.limit - offset));
+        Object[] mapped = new Object[count];
+        for (int i = 0; i < count; i++) {
+            T item = items[i];
+            mapped[i] = item == null ? null : mapper.apply(item);
+        }
+        buffer.put(offset, mapped);
+    }
+
+    // Items by offset, up to limit. Pages arrive out of order from several lanes, so writes take the buffer's lock;
+    // that is one short copy per page.
+    static final class PageBuffer {
+        private final int limit;
+        private Object[] slots;
+
+        PageBuffer(int limit) {
+            this.limit = limit;
+            this.slots = new Object[Math.min(limit, INITIAL_CAPACITY)];
+        }
+
+        synchronized void put(int offset, Object[] items) {
+            int end = offset + items.length;
+            if (end > slots.length) {
+                slots = Arrays.copyOf(slots, (int) Math.min(limit, Math.max(end, 2L * slots.length)));
+            }
+            System.arraycopy(items, 0, slots, offset, items.length);
+        }
+
+        synchronized int capacity() {
+            return slots.length;
+        }
+
+        // Drops the slots left empty by null items or by a total that shrank while paging
+        @SuppressWarnings("unchecked")
+        synchronized <R> List<R> toList() {
+            List<R> results = new ArrayList<>(slots.length);
+            for (Object item : slots) {
+                if (item != null) {
+                    results.add((R) item);
+                }
+            }
+            return results;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.music.spotify;
+
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.ParseException;
+import se.michaelthelin.spotify.IHttpManager;
+import se.michaelthelin.spotify.SpotifyHttpManager;
+import se.michaelthelin.spotify.exceptions.SpotifyWebApiException;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+// A SpotifyHttpManager holds a single connection and fails with "Connection is still allocated" when two calls
+// use it at once, which is what happens to the library's shared default manager as soon as sessions overlap.
+// This lends each call a manager of its own from a fixed set; with one per request the scheduler lets run at the
+// same time, a call never waits here.
+class PooledHttpManager implements IHttpManager {
+    private final BlockingQueue<IHttpManager> managers;
+
+    PooledHttpManager(int size) {
+        managers = new ArrayBlockingQueue<>(size);
+        for (int i = 0; i < size; i++) {
+            managers.add(new SpotifyHttpManager.Builder().build());
+        }
+    }
+
+    @FunctionalInterface
+    private interface Call {
+        String send(IHttpManager manager) throws IOException, SpotifyWebApiException, ParseException;
+    }
+
+    private String withManager(Call call) throws IOException, SpotifyWebApiException, ParseException {
+        IHttpManager manager;
+        try {
+            manager = managers.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a connection");
+        }
+        try {
+            return call.send(manager);
+        } finally {
+            managers.add(manager);
+        }
+    }
+
+    @Override
+    public String get(URI uri, Header[] headers) throws IOException, SpotifyWebApiException, ParseException {
+        return withManager(manager -> manager.get(uri, headers));
+    }
+
+    @Override
+    public String post(URI uri, Header[] headers, HttpEntity body) throws IOException, SpotifyWebApiException, ParseException {
+        return withManager(manager -> manager.post(uri, headers, body));
+    }
+
+    @Override
+    public String put(URI uri, Header[] headers, HttpEntity body) throws IOException, SpotifyWebApiException, ParseException {
+        return withManager(manager -> manager.put(uri, headers, body));
+    }
+
+    @Override
+    public String delete(URI uri, Header[] headers, HttpEntity body) throws IOException, SpotifyWebApiException, ParseException {
+        return withManager(manager -> manager.delete(uri, headers, body));
+    }
+}
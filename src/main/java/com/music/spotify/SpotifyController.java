@@ -1,21 +1,68 @@
 package com.music.spotify;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.music.http.HttpCaching;
+import fileProcessor.CompactLibrary;
 import io.javalin.Javalin;
 import io.javalin.http.Context;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import se.michaelthelin.spotify.exceptions.detailed.TooManyRequestsException;
+import se.michaelthelin.spotify.model_objects.specification.ArtistSimplified;
+import se.michaelthelin.spotify.model_objects.specification.SavedTrack;
+import se.michaelthelin.spotify.model_objects.specification.Track;
 
-import java.util.Collections;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 
 public class SpotifyController {
     private static final Logger logger = LoggerFactory.getLogger(SpotifyController.class);
-    private final SpotifyService spotifyService;
+    private static final ObjectMapper JSON = new ObjectMapper().disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    private static final int MAX_RESOLVE_URIS = 200_000;
+    public static final int DEFAULT_MAX_STREAMS = 256;
+    private final SpotifySessionStore sessions;
+    private final SpotifyServiceFactory serviceFactory;
+    private final SpotifyService authorizationService;  // builds authorization URIs, holds no user's tokens
+    private final Executor streamExecutor;  // writes streamed responses, which block while the client is slow
+    private final int maxStreams;
+    private final Semaphore streamPermits;  // one per response being streamed, so slow clients cannot pile up threads
 
-    public SpotifyController(SpotifyService spotifyService) {
-        this.spotifyService = spotifyService;
+    // Body of POST /tracks/resolve: imported playlists, of which only the item URIs are used
+    public record ResolveRequest(List<ImportedPlaylist> playlists) {
+    }
+
+    public record ImportedPlaylist(String name, String description, List<String> uris) {
+    }
+
+    public SpotifyController(SpotifySessionStore sessions, SpotifyServiceFactory serviceFactory, Executor streamExecutor) {
+        this(sessions, serviceFactory, streamExecutor, DEFAULT_MAX_STREAMS);
+    }
+
+    public SpotifyController(SpotifySessionStore sessions, SpotifyServiceFactory serviceFactory, Executor streamExecutor, int maxStreams) {
+        if (maxStreams < 1) {
+            throw new IllegalArgumentException("maxStreams must be at least 1");
+        }
+        this.sessions = sessions;
+        this.serviceFactory = serviceFactory;
+        this.authorizationService = serviceFactory.get();
+        this.streamExecutor = streamExecutor;
+        this.maxStreams = maxStreams;
+        this.streamPermits = new Semaphore(maxStreams);
+    }
+
+    public int getActiveStreamCount() {
+        return maxStreams - streamPermits.availablePermits();
     }
 
     // Register routes, including the login and callback routes
@@ -24,11 +71,21 @@ public class SpotifyController {
         app.get("/login/spotify/callback", this::callback);
         app.get("/spotify/auth/status", this::isLoggedIn);
         app.get("/playlists", this::playlists);
+        app.get("/liked-songs", this::likedSongs);
         app.get("/spotify/refresh-token", this::refreshAccessToken);
+        app.post("/spotify/refresh-token", this::refreshAccessToken);  // the frontend posts here
+        app.get("/spotify/cache/stats", this::cacheStats);
+        app.post("/tracks/resolve", this::resolveTracks);
     }
 
+    // Handlers that call Spotify hand their future to ctx.future, so the response is only written once it completes
     private void refreshAccessToken(Context context) {
-        spotifyService.refreshAccessTokenAsync()
+        SpotifyService spotifyService = sessions.find(context);
+        if (spotifyService == null) {
+            context.status(401);
+            return;
+        }
+        context.future(() -> spotifyService.refreshAccessTokenAsync()
                 .thenAccept(unused -> {
                     logger.info("Refreshed access token successfully");
                     context.status(200);
@@ -37,44 +94,206 @@ public class SpotifyController {
                     logger.error("Failed to refresh access token", ex);
                     context.status(401); // Unauthorized, token refresh failed
                     return null;
-                });
+                })
+        );
     }
 
     public void playlists(Context ctx) {
-        ctx.future(() -> spotifyService.fetchUserPlaylists()
-                .thenApply(playlists -> {
-                    if (playlists == null || playlists.isEmpty()) {
+        SpotifyService spotifyService = sessions.find(ctx);
+        if (spotifyService == null) {
+            ctx.status(401).json(Map.of("playlists", List.of()));
+            return;
+        }
+        boolean bypassCache = Boolean.parseBoolean(ctx.queryParam("refresh"));  // ?refresh=true revalidates against Spotify
+        // The body and ETag are rendered once per cache entry; a client holding the current ETag gets a 304
+        ctx.future(() -> spotifyService.fetchCachedPlaylists(bypassCache)
+                .thenAccept(cached -> {
+                    if (cached.getPlaylists().isEmpty()) {
                         logger.warn("No playlists found for the user.");
-                        return Map.of("playlists", List.of()); // Return an empty list if no playlists are found
-                    } else {
-                        logger.info("Retrieved playlists: {}", playlists);
-                        return Map.of("playlists", playlists);
+                        ctx.json(Map.of("playlists", List.of())); // Return an empty list if no playlists are found
+                        return;
                     }
+                    logger.debug("Retrieved {} playlists", cached.getPlaylists().size());
+                    CachedPlaylists.Response response = cached.getResponse();
+                    HttpCaching.json(ctx, response.json(), response.etag());
                 })
                 .exceptionally(ex -> {
                     logger.error("Error retrieving playlists: {}", ex.getMessage(), ex);
-                    ctx.status(500);
-                    return Map.of("error", Collections.singletonList("Error retrieving playlists: " + ex.getMessage()));
+                    upstreamFailure(ctx, ex, "Could not retrieve the playlists from Spotify");
+                    return null;
+                })
+                .toCompletableFuture()
+        );
+    }
+
+    // 503 with Retry-After while Spotify still rate limits after the scheduler's retries, 502 for any other failure
+    // of the calls behind the request
+    static void upstreamFailure(Context ctx, Throwable ex, String message) {
+        for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+            if (cause instanceof TooManyRequestsException tooManyRequests) {
+                int retryAfter = Math.max(tooManyRequests.getRetryAfter(), 1);
+                ctx.header("Retry-After", Integer.toString(retryAfter));
+                ctx.status(503).json(Map.of("error", message + ": rate limited, retry in " + retryAfter + " s"));
+                return;
+            }
+        }
+        ctx.status(502).json(Map.of("error", message));
+    }
+
+    // Metadata of the distinct tracks and episodes of imported playlists, and the items that are dead or unavailable;
+    // library listeners, such as the search index, are told about the import
+    public void resolveTracks(Context ctx) {
+        SpotifyService spotifyService = sessions.find(ctx);
+        if (spotifyService == null || !spotifyService.isLoggedIn()) {
+            ctx.status(401).json(Map.of("error", "Not logged in"));
+            return;
+        }
+        CompactLibrary library = new CompactLibrary();
+        int itemCount = 0;
+        try {
+            ResolveRequest request = ctx.bodyAsClass(ResolveRequest.class);
+            for (ImportedPlaylist playlist : request.playlists() == null ? List.<ImportedPlaylist>of() : request.playlists()) {
+                if (playlist == null) {
+                    continue;
+                }
+                List<String> playlistInfo = new ArrayList<>();
+                playlistInfo.add(playlist.name());
+                playlistInfo.add(playlist.description());
+                if (playlist.uris() != null) {
+                    playlist.uris().stream().filter(uri -> uri != null && !uri.isBlank()).forEach(playlistInfo::add);
+                }
+                itemCount += playlistInfo.size() - 2;
+                if (itemCount > MAX_RESOLVE_URIS) {
+                    break;
+                }
+                library.add(playlistInfo);
+            }
+        } catch (RuntimeException e) {
+            ctx.status(400).json(Map.of("error", "Expected a JSON body with a playlists array"));
+            return;
+        }
+        if (itemCount == 0 || itemCount > MAX_RESOLVE_URIS) {
+            ctx.status(400).json(Map.of("error", "Send between 1 and " + MAX_RESOLVE_URIS + " item URIs"));
+            return;
+        }
+
+        ctx.future(() -> spotifyService.resolveImport(library)
+                .thenAccept(ctx::json)
+                .exceptionally(ex -> {
+                    logger.error("Error resolving tracks: {}", ex.getMessage(), ex);
+                    ctx.status(500).json(Map.of("error", "Error resolving tracks: " + ex.getMessage()));
+                    return null;
                 })
-                .thenAccept(ctx::json).toCompletableFuture()
         );
     }
 
+    // Stream every liked song as NDJSON, one line per track, flushing after each page from Spotify
+    public void likedSongs(Context ctx) {
+        SpotifyService spotifyService = sessions.find(ctx);
+        if (spotifyService == null) {
+            ctx.status(401).json(Map.of("error", "Not logged in"));
+            return;
+        }
+
+        // Each stream holds a thread until the client has read everything; past maxStreams the client is asked to retry
+        if (!streamPermits.tryAcquire()) {
+            rejectStream(ctx);
+            return;
+        }
+        CompletableFuture<Void> stream;
+        try {
+            // Streaming blocks on the client, so it runs on the stream executor and the request thread is released
+            stream = CompletableFuture.runAsync(() -> writeLikedSongs(ctx, spotifyService), streamExecutor);
+        } catch (RejectedExecutionException e) {
+            streamPermits.release();
+            rejectStream(ctx);
+            return;
+        }
+        stream.whenComplete((unused, ex) -> streamPermits.release());
+        ctx.contentType("application/x-ndjson");
+        ctx.header("Cache-Control", "no-store");
+        ctx.future(() -> stream);
+    }
+
+    private static void rejectStream(Context ctx) {
+        ctx.header("Retry-After", "1");
+        ctx.status(503).json(Map.of("error", "Too many liked songs streams in progress, try again shortly"));
+    }
+
+    private void writeLikedSongs(Context ctx, SpotifyService spotifyService) {
+        // The servlet stream itself, uncompressed: Javalin's ctx.outputStream() ignores flush, so every page would
+        // be held back until the response ends
+        OutputStream out;
+        try {
+            out = ctx.res().getOutputStream();
+        } catch (IOException e) {
+            logger.info("Could not open the liked songs stream: {}", e.getMessage());
+            return;
+        }
+        boolean[] started = {false};
+        try {
+            spotifyService.streamLikedSongs(items -> {
+                for (SavedTrack savedTrack : items) {
+                    Map<String, Object> line = toLikedSongLine(savedTrack);
+                    if (line != null) {
+                        JSON.writeValue(out, line);
+                        out.write('\n');
+                    }
+                }
+                out.flush();  // blocks while the client is slow, which holds back the next page request
+                started[0] = true;
+            });
+        } catch (IOException e) {
+            logger.info("Client stopped reading liked songs: {}", e.getMessage());
+        } catch (RuntimeException e) {
+            logger.error("Error streaming liked songs: {}", e.getMessage(), e);
+            if (!started[0]) {
+                ctx.status(500);
+            }
+            try {
+                JSON.writeValue(out, Map.of("error", "Error streaming liked songs: " + e.getMessage()));
+                out.write('\n');
+                out.flush();
+            } catch (IOException ignored) {
+                // client is gone
+            }
+        }
+    }
+
+    private static Map<String, Object> toLikedSongLine(SavedTrack savedTrack) {
+        Track track = savedTrack == null ? null : savedTrack.getTrack();
+        if (track == null) {
+            return null;
+        }
+        Map<String, Object> line = new LinkedHashMap<>();
+        line.put("id", track.getId());
+        line.put("uri", track.getUri());
+        line.put("name", track.getName());
+        line.put("artists", track.getArtists() == null ? List.of()
+                : Arrays.stream(track.getArtists()).map(ArtistSimplified::getName).toList());
+        line.put("album", track.getAlbum() == null ? null : track.getAlbum().getName());
+        line.put("durationMs", track.getDurationMs());
+        line.put("addedAt", savedTrack.getAddedAt() == null ? null : savedTrack.getAddedAt().toInstant().toString());
+        return line;
+    }
+
     // Redirect to Spotify login
     public void login(Context ctx) {
         // Generate a random `state` value to prevent CSRF attacks
         String state = UUID.randomUUID().toString();
         ctx.res().addHeader("Set-Cookie", "spotify_auth_state=" + state + "; Max-Age=600; SameSite=Lax; HttpOnly; Secure");  // Store `state` in a cookie for 600 seconds
 
-        spotifyService.getAuthorizationUriAsync(state)
+        // The session is only started by the callback, once Spotify has accepted the login
+        ctx.future(() -> authorizationService.getAuthorizationUriAsync(state)
                 .thenAccept(uri -> {
                     logger.info("Redirecting to Spotify for authentication");
                     ctx.redirect(uri.toString());  // Redirect user to Spotify for authentication
                 }).exceptionally(ex -> {
                     logger.error("Error generating Spotify login URL: " + ex.getMessage(), ex);
-                    ctx.result("Error generating Spotify login URL: " + ex.getMessage());
+                    ctx.status(500).result("Error generating Spotify login URL: " + ex.getMessage());
                     return null;
-                });
+                })
+        );
     }
 
     // Handle the Spotify callback
@@ -94,24 +313,42 @@ public class SpotifyController {
         ctx.removeCookie("spotify_auth_state");
 
         if (code != null) {
-            spotifyService.exchangeAuthorizationCodeAsync(code);
-            logger.info("Successfully authenticated with Spotify");
-
             ctx.res().setHeader("Cache-Control", "no-store, no-cache, must-revalidate, max-age=0");
             ctx.res().setHeader("Pragma", "no-cache");
             ctx.res().setHeader("Expires", "0");
 
-            ctx.result("Successfully authenticated with Spotify!");
-            ctx.redirect("/");
+            // Redirect only once the tokens are stored, so the page does not load as logged out
+            ctx.future(() -> sessions.logIn(ctx, code)
+                    .thenAccept(spotifyService -> {
+                        logger.info("Successfully authenticated with Spotify");
+                        ctx.redirect("/");
+                    })
+                    .exceptionally(ex -> {
+                        logger.error("Authentication failed.");
+                        ctx.redirect("/");
+                        return null;
+                    })
+            );
         } else {
             logger.error("Authentication failed.");
             ctx.redirect("/");
         }
     }
 
+    // Expose hit/miss counts of the shared caches to logged-in users
+    public void cacheStats(Context ctx) {
+        SpotifyService spotifyService = sessions.find(ctx);
+        if (spotifyService == null || !spotifyService.isLoggedIn()) {
+            ctx.status(401).json(Map.of("error", "Not logged in"));
+            return;
+        }
+        HttpCaching.json(ctx, serviceFactory.cacheStats());
+    }
+
     // Expose the login status
     public void isLoggedIn(Context ctx) {
-        boolean loggedIn = spotifyService.isLoggedIn();
+        SpotifyService spotifyService = sessions.find(ctx);
+        boolean loggedIn = spotifyService != null && spotifyService.isLoggedIn();
         logger.info("Spotify login status: {}", loggedIn);
         ctx.json(Map.of("spotifyLoggedIn", loggedIn));
     }
@@ -0,0 +1,56 @@
+package com.music.spotify;
+
+import com.music.metrics.Counter;
+import com.music.metrics.LatencyHistogram;
+import com.music.metrics.MetricsRegistry;
+import se.michaelthelin.spotify.exceptions.detailed.TooManyRequestsException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+// The kinds of Spotify call the service makes, each with its own latency histogram and outcome counters.
+// Only the call itself is timed, from the moment the scheduler releases it; time spent queued is not included.
+enum SpotifyEndpoint {
+    AUTHORIZATION_CODE("authorization_code"),
+    TOKEN_REFRESH("token_refresh"),
+    PROFILE("profile"),
+    PLAYLISTS_PAGE("playlists_page"),
+    PLAYLIST_ITEMS_PAGE("playlist_items_page"),
+    SAVED_TRACKS_PAGE("saved_tracks_page"),
+    SEVERAL_TRACKS("several_tracks"),
+    SEVERAL_EPISODES("several_episodes");
+
+    private final LatencyHistogram latency;
+    private final Counter successes;
+    private final Counter rateLimited;
+    private final Counter errors;
+
+    SpotifyEndpoint(String label) {
+        MetricsRegistry registry = MetricsRegistry.getDefault();
+        latency = registry.histogram("spotify_api_request_duration_seconds",
+                "Duration of Spotify Web API calls, by endpoint", "endpoint", label);
+        String help = "Spotify Web API calls, by endpoint and outcome";
+        successes = registry.counter("spotify_api_requests_total", help, "endpoint", label, "outcome", "success");
+        rateLimited = registry.counter("spotify_api_requests_total", help, "endpoint", label, "outcome", "rate_limited");
+        errors = registry.counter("spotify_api_requests_total", help, "endpoint", label, "outcome", "error");
+    }
+
+    // Starts the call and records its duration and outcome when it completes; returns the call's own future
+    <T> CompletableFuture<T> timed(Supplier<CompletableFuture<T>> call) {
+        long start = System.nanoTime();
+        CompletableFuture<T> future = call.get();
+        future.whenComplete((value, ex) -> {
+            latency.recordNanos(System.nanoTime() - start);
+            Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+            if (cause == null) {
+                successes.increment();
+            } else if (cause instanceof TooManyRequestsException) {
+                rateLimited.increment();
+            } else {
+                errors.increment();
+            }
+        });
+        return future;
+    }
+}
@@ -0,0 +1,37 @@
+package com.music.spotify;
+
+import java.net.URI;
+
+// Where the Spotify accounts service (authorize, token) and the Web API are reached. Defaults to Spotify itself;
+// pointing both at a local stub (-Dspotify.accountsUri=http://localhost:8090 -Dspotify.apiUri=http://localhost:8090)
+// lets the service be load-tested offline.
+public record SpotifyHosts(URI accountsUri, URI apiUri) {
+    public static final SpotifyHosts SPOTIFY = new SpotifyHosts(
+            URI.create("https://accounts.spotify.com"), URI.create("https://api.spotify.com"));
+    private static final String ACCOUNTS_HOST = "accounts.spotify.com";
+    private static final String API_HOST = "api.spotify.com";
+
+    public static SpotifyHosts fromSystemProperties() {
+        return new SpotifyHosts(
+                URI.create(System.getProperty("spotify.accountsUri", SPOTIFY.accountsUri().toString())),
+                URI.create(System.getProperty("spotify.apiUri", SPOTIFY.apiUri().toString())));
+    }
+
+    public boolean isSpotify() {
+        return equals(SPOTIFY);
+    }
+
+    // Moves a request URI built by the client library for Spotify's hosts to the configured ones, keeping path and query
+    URI rewrite(URI uri) {
+        URI target = ACCOUNTS_HOST.equals(uri.getHost()) ? accountsUri
+                : API_HOST.equals(uri.getHost()) ? apiUri
+                : null;
+        if (target == null) {
+            return uri;
+        }
+        String rewritten = target.getScheme() + "://" + target.getRawAuthority()
+                + (uri.getRawPath() == null ? "" : uri.getRawPath())
+                + (uri.getRawQuery() == null ? "" : "?" + uri.getRawQuery());
+        return URI.create(rewritten);
+    }
+}
@@ -0,0 +1,228 @@
+package com.music.spotify;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se.michaelthelin.spotify.exceptions.detailed.TooManyRequestsException;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+// Single gate for every outbound Spotify Web API call of the application.
+// Calls wait in one of two priority lanes and are released when a token is available in the shared token bucket
+// and fewer than maxInFlight calls are running. A 429 pauses the whole scheduler for the Retry-After period plus
+// jitter (the rate limit applies to the app, not to one user) and the call is retried at the head of its lane.
+// Interactive calls go first, but every few dispatches a waiting background call is let through so it cannot starve.
+public class SpotifyRequestScheduler implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(SpotifyRequestScheduler.class);
+    public static final double DEFAULT_PERMITS_PER_SECOND = 20;
+    public static final int DEFAULT_BURST = 40;
+    public static final int DEFAULT_MAX_IN_FLIGHT = 32;
+    private static final int MAX_ATTEMPTS = 5;
+    private static final int BACKGROUND_SHARE = 5;  // at least one in every 5 dispatches goes to the background lane
+    private static final long DEFAULT_RETRY_AFTER_MILLIS = 1000;
+
+    public enum Priority {
+        INTERACTIVE,
+        BACKGROUND
+    }
+
+    private final double permitsPerNano;
+    private final double burst;
+    private final int maxInFlight;
+    private final long retryDelayMillis;
+    private final ScheduledExecutorService timer;
+    private final Executor callbackExecutor;
+
+    // Guarded by `this`
+    private final ArrayDeque<Task<?>> interactive = new ArrayDeque<>();
+    private final ArrayDeque<Task<?>> background = new ArrayDeque<>();
+    private double tokens;
+    private long lastRefillNanos;
+    private long pausedUntilNanos;
+    private int inFlight;
+    private int dispatchCount;
+    private boolean wakeupScheduled;
+
+    private static final class Task<T> {
+        private final Priority priority;
+        private final Supplier<CompletableFuture<T>> call;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private int attempts;
+
+        private Task(Priority priority, Supplier<CompletableFuture<T>> call) {
+            this.priority = priority;
+            this.call = call;
+        }
+    }
+
+    public SpotifyRequestScheduler() {
+        this(DEFAULT_PERMITS_PER_SECOND, DEFAULT_BURST, DEFAULT_MAX_IN_FLIGHT, ForkJoinPool.commonPool());
+    }
+
+    // Results are completed on callbackExecutor, so callers' completion stages never run on the HTTP client's threads
+    public SpotifyRequestScheduler(double permitsPerSecond, int burst, int maxInFlight, Executor callbackExecutor) {
+        this(permitsPerSecond, burst, maxInFlight, callbackExecutor, DEFAULT_RETRY_AFTER_MILLIS);
+    }
+
+    // retryDelayMillis is the first backoff after a 429 without Retry-After; tests shorten it to run out of retries
+    SpotifyRequestScheduler(double permitsPerSecond, int burst, int maxInFlight, Executor callbackExecutor, long retryDelayMillis) {
+        if (permitsPerSecond <= 0 || burst < 1 || maxInFlight < 1) {
+            throw new IllegalArgumentException("permitsPerSecond, burst and maxInFlight must be positive");
+        }
+        this.permitsPerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.burst = burst;
+        this.maxInFlight = maxInFlight;
+        this.callbackExecutor = callbackExecutor;
+        this.retryDelayMillis = retryDelayMillis;
+        this.tokens = burst;
+        this.lastRefillNanos = System.nanoTime();
+        this.timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "spotify-request-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Queues a call; the supplier is invoked once the call may be sent (again on every retry)
+    public <T> CompletableFuture<T> submit(Priority priority, Supplier<CompletableFuture<T>> call) {
+        Task<T> task = new Task<>(priority, call);
+        synchronized (this) {
+            lane(priority).addLast(task);
+        }
+        drain();
+        return task.result;
+    }
+
+    public synchronized int getQueuedCount() {
+        return interactive.size() + background.size();
+    }
+
+    public synchronized int getInFlightCount() {
+        return inFlight;
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    // Releases as many queued calls as the bucket and the in-flight limit allow
+    private void drain() {
+        List<Task<?>> ready = new ArrayList<>();
+        synchronized (this) {
+            long now = System.nanoTime();
+            refill(now);
+            while (inFlight < maxInFlight && (!interactive.isEmpty() || !background.isEmpty())) {
+                if (now < pausedUntilNanos) {
+                    scheduleWakeup(pausedUntilNanos - now);
+                    break;
+                }
+                if (tokens < 1) {
+                    scheduleWakeup((long) Math.ceil((1 - tokens) / permitsPerNano));
+                    break;
+                }
+                tokens -= 1;
+                inFlight++;
+                ready.add(nextTask());
+            }
+        }
+        // Calls are started outside the lock; a call that completes synchronously re-enters drain()
+        for (Task<?> task : ready) {
+            start(task);
+        }
+    }
+
+    private Task<?> nextTask() {
+        dispatchCount++;
+        boolean backgroundTurn = dispatchCount % BACKGROUND_SHARE == 0;
+        if (interactive.isEmpty() || (backgroundTurn && !background.isEmpty())) {
+            return background.pollFirst();
+        }
+        return interactive.pollFirst();
+    }
+
+    private <T> void start(Task<T> task) {
+        task.attempts++;
+        CompletableFuture<T> call;
+        try {
+            call = task.call.get();
+        } catch (RuntimeException e) {
+            call = CompletableFuture.failedFuture(e);
+        }
+        call.whenCompleteAsync((value, ex) -> {
+            Throwable cause = unwrap(ex);
+            boolean retry = false;
+            synchronized (this) {
+                inFlight--;
+                if (cause instanceof TooManyRequestsException tooManyRequests && task.attempts < MAX_ATTEMPTS) {
+                    long delayMillis = retryDelayMillis(tooManyRequests.getRetryAfter(), task.attempts);
+                    pausedUntilNanos = Math.max(pausedUntilNanos, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis));
+                    lane(task.priority).addFirst(task);
+                    retry = true;
+                    logger.warn("Spotify rate limit hit, pausing requests for {} ms (attempt {} of {})",
+                            delayMillis, task.attempts, MAX_ATTEMPTS);
+                }
+            }
+            if (!retry) {
+                if (ex != null) {
+                    task.result.completeExceptionally(cause);
+                } else {
+                    task.result.complete(value);
+                }
+            }
+            drain();
+        }, callbackExecutor);
+    }
+
+    // Retry-After (or 1s when absent) with exponential growth on repeated 429s, plus up to 25% jitter
+    private long retryDelayMillis(int retryAfterSeconds, int attempt) {
+        long base = retryAfterSeconds > 0 ? TimeUnit.SECONDS.toMillis(retryAfterSeconds) : retryDelayMillis;
+        long backoff = Math.max(base, retryDelayMillis << Math.min(attempt - 1, 5));
+        return backoff + ThreadLocalRandom.current().nextLong(backoff / 4 + 1);
+    }
+
+    private void refill(long now) {
+        tokens = Math.min(burst, tokens + (now - lastRefillNanos) * permitsPerNano);
+        lastRefillNanos = now;
+    }
+
+    private void scheduleWakeup(long delayNanos) {
+        if (wakeupScheduled) {
+            return;
+        }
+        wakeupScheduled = true;
+        timer.schedule(() -> {
+            synchronized (this) {
+                wakeupScheduled = false;
+            }
+            drain();
+        }, Math.max(delayNanos, 1), TimeUnit.NANOSECONDS);
+    }
+
+    private ArrayDeque<Task<?>> lane(Priority priority) {
+        return priority == Priority.INTERACTIVE ? interactive : background;
+    }
+
+    private static Throwable unwrap(Throwable ex) {
+        Throwable cause = ex;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException) && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+
+    @Override
+    public void close() {
+        timer.shutdownNow();
+    }
+}
@@ -1,39 +1,76 @@
 package com.music.spotify;
 
+import com.music.spotify.SpotifyRequestScheduler.Priority;
+import fileProcessor.CompactLibrary;
+import fileProcessor.CompactPlaylist;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import se.michaelthelin.spotify.SpotifyApi;
+import se.michaelthelin.spotify.model_objects.specification.Episode;
 import se.michaelthelin.spotify.model_objects.specification.Paging;
 import se.michaelthelin.spotify.model_objects.specification.PlaylistSimplified;
+import se.michaelthelin.spotify.model_objects.specification.PlaylistTrack;
 import se.michaelthelin.spotify.model_objects.specification.SavedTrack;
+import se.michaelthelin.spotify.model_objects.specification.Track;
 import se.michaelthelin.spotify.model_objects.specification.User;
+import se.michaelthelin.spotify.requests.IRequest;
 import se.michaelthelin.spotify.requests.authorization.authorization_code.AuthorizationCodeRequest;
 import se.michaelthelin.spotify.requests.authorization.authorization_code.AuthorizationCodeRefreshRequest;
 import se.michaelthelin.spotify.requests.data.library.GetUsersSavedTracksRequest;
-import se.michaelthelin.spotify.requests.data.playlists.GetListOfUsersPlaylistsRequest;
 import se.michaelthelin.spotify.requests.data.users_profile.GetCurrentUsersProfileRequest;
 
+import java.io.IOException;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
-public class SpotifyService {
+public class SpotifyService implements AutoCloseable {
     private static final Logger logger = LoggerFactory.getLogger(SpotifyService.class);
     private final SpotifyApi spotifyApi;
+    private final PaginatedFetcher paginatedFetcher;
+    private final SpotifyRequestScheduler requestScheduler;
+    private final TokenRefreshCoordinator tokenRefresher;
+    private final ExpiringCache<String, String> userIdCache;
+    private final ExpiringCache<String, CachedPlaylists> playlistCache;
+    private final TrackResolver trackResolver;
+    private final List<LibraryListener> libraryListeners;
+    private final SpotifyStateStore stateStore;
+    private final SpotifyHosts hosts;
+    private final String sessionKey = UUID.randomUUID().toString();  // identifies this session in shared caches
+    private final String sessionId;  // the session cookie, null if this service is not part of a session
     private String authorizationCode;
-    private String refreshToken;
-    private long accessTokenExpirationTime;
+
+    // One of the user's playlists with the snapshot_id it had when the list was fetched
+    public record PlaylistSnapshot(String id, String name, String snapshotId) {
+    }
 
     public SpotifyService(String clientId, String clientSecret, URI redirectUri) {
+        this(new SpotifyServiceFactory(clientId, clientSecret, redirectUri), null);
+    }
+
+    // Sessions are normally created through SpotifyServiceFactory so they share its resources
+    SpotifyService(SpotifyServiceFactory factory, String sessionId) {
+        this.sessionId = sessionId;
+        stateStore = factory.getStateStore();
+        hosts = factory.getHosts();
+        paginatedFetcher = factory.getPaginatedFetcher();
+        requestScheduler = factory.getRequestScheduler();
+        userIdCache = factory.getUserIdCache();
+        playlistCache = factory.getPlaylistCache();
+        trackResolver = factory.getTrackResolver();
+        libraryListeners = factory.getLibraryListeners();
         spotifyApi = new SpotifyApi.Builder()
-                .setClientId(clientId)
-                .setClientSecret(clientSecret)
-                .setRedirectUri(redirectUri)
+                .setClientId(factory.getClientId())
+                .setClientSecret(factory.getClientSecret())
+                .setRedirectUri(factory.getRedirectUri())
+                .setHttpManager(factory.getHttpManager())
                 .build();
+        tokenRefresher = new TokenRefreshCoordinator(this::requestAccessTokenRefresh, factory.getScheduler());
     }
 
     public CompletableFuture<URI> getAuthorizationUriAsync(String state) {
@@ -43,49 +80,56 @@ public class SpotifyService {
                 .scope("user-read-email, user-read-private, playlist-read-private, playlist-read-collaborative, user-library-read")
                 .show_dialog(true)
                 .build()
-                .executeAsync();
+                .executeAsync()
+                .thenApply(hosts::rewrite);
     }
 
-    public void exchangeAuthorizationCodeAsync(String code) {
+    // Completes once the session holds the new tokens, so callers can redirect only after login has finished
+    public CompletableFuture<Void> exchangeAuthorizationCodeAsync(String code) {
         logger.info("Exchanging authorization code for access token");
         this.authorizationCode = code;
         AuthorizationCodeRequest authorizationCodeRequest = spotifyApi.authorizationCode(authorizationCode).build();
 
-        authorizationCodeRequest.executeAsync().thenAccept(credentials -> {
+        return execute(Priority.INTERACTIVE, SpotifyEndpoint.AUTHORIZATION_CODE, authorizationCodeRequest).thenAccept(credentials -> {
             spotifyApi.setAccessToken(credentials.getAccessToken());
             spotifyApi.setRefreshToken(credentials.getRefreshToken());
 
-            // Calculate and save the token expiration time
-            accessTokenExpirationTime = System.currentTimeMillis() + (credentials.getExpiresIn() * 1000L);
+            // Save the token expiration time and schedule the refresh ahead of it
+            tokenRefresher.tokenIssued(credentials.getExpiresIn());
+            saveSession();
 
-            logger.info("Access Token: {}", credentials.getAccessToken());
-            logger.info("Refresh Token: {}", credentials.getRefreshToken());
             logger.info("Token expires in: {} seconds", credentials.getExpiresIn());
         }).exceptionally(e -> {
             logger.error("Error exchanging authorization code: {}", e.getMessage(), e);
-            return null;
+            throw new RuntimeException("Failed to exchange authorization code", e);
         });
     }
 
+    // Refreshes the access token; joins the refresh already in flight for this session if there is one
     public CompletableFuture<Void> refreshAccessTokenAsync() {
+        return tokenRefresher.refresh();
+    }
+
+    // Performs the refresh request; only ever called by the TokenRefreshCoordinator
+    private CompletableFuture<Void> requestAccessTokenRefresh() {
         logger.info("Refreshing Spotify access token");
         AuthorizationCodeRefreshRequest refreshRequest = spotifyApi.authorizationCodeRefresh().build();
 
-        return refreshRequest.executeAsync()
+        return execute(Priority.INTERACTIVE, SpotifyEndpoint.TOKEN_REFRESH, refreshRequest)
                 .thenAccept(credentials -> {
                     spotifyApi.setAccessToken(credentials.getAccessToken());
 
-                    // Calculate and save the new expiration time
-                    accessTokenExpirationTime = System.currentTimeMillis() + (credentials.getExpiresIn() * 1000L);
-
                     // Optionally update refresh token if provided
                     if (credentials.getRefreshToken() != null) {
                         spotifyApi.setRefreshToken(credentials.getRefreshToken());
                         logger.info("Refresh Token has been updated.");
                     }
 
-                    logger.info("New Access Token: {}", credentials.getAccessToken());
-                    logger.info("Token expires in: {} seconds", credentials.getExpiresIn());
+                    // Save the new expiration time and schedule the next refresh
+                    tokenRefresher.tokenIssued(credentials.getExpiresIn());
+                    saveSession();
+
+                    logger.info("Access token refreshed, expires in: {} seconds", credentials.getExpiresIn());
                 }).exceptionally(e -> {
                     logger.error("Error refreshing access token: {}", e.getMessage(), e);
                     throw new RuntimeException("Failed to refresh access token", e);
@@ -99,37 +143,92 @@ public class SpotifyService {
             logger.warn("No access token found. User is not logged in.");
             return false;
         }
-        // Check if the token has expired
-        long currentTime = System.currentTimeMillis();
-        if (currentTime >= accessTokenExpirationTime) {
-            logger.warn("Access token has expired. Attempting to refresh...");
-            try {
-                // Refresh the token
-                refreshAccessTokenAsync();
-                logger.info("Access token refreshed successfully.");
-            } catch (Exception e) {
-                logger.error("Failed to refresh access token: {}", e.getMessage(), e);
-                return false;
-            }
+        // An expired token is refreshed in the background; the session stays logged in while it can be renewed
+        if (!tokenRefresher.isTokenValid()) {
+            logger.warn("Access token has expired. Refreshing in the background...");
+            tokenRefresher.refreshIfExpired();
         }
         logger.info("User is logged in with a valid access token.");
         return true;
     }
 
-    // ensure access token is active; otherwise, refresh access token
+    // ensure access token is active; otherwise wait for the (shared) refresh of this session's token
     private CompletionStage<Void> ensureAccessTokenIsValid() {
-        if (isLoggedIn()) {
+        String accessToken = spotifyApi.getAccessToken();
+        if (accessToken != null && !accessToken.isEmpty() && tokenRefresher.isTokenValid()) {
             return CompletableFuture.completedFuture(null);
-        } else {
-            logger.info("Access token is expired or user is not logged in. Refreshing access token...");
-            return refreshAccessTokenAsync();
         }
+        logger.info("Access token is expired or user is not logged in. Refreshing access token...");
+        return tokenRefresher.refreshIfExpired();
     }
 
-    // method to get the current user ID
+    // Sends a Web API request through the shared rate-limit-aware scheduler, timing it per endpoint
+    private <T> CompletableFuture<T> execute(Priority priority, SpotifyEndpoint endpoint, IRequest<T> request) {
+        return requestScheduler.submit(priority, () -> endpoint.timed(request::executeAsync));
+    }
+
+    // The session cookie; it survives a restore into a new instance, so state tied to the session is keyed by it.
+    // A service outside a session is identified by its own instance key.
+    public String getSessionId() {
+        return sessionId != null ? sessionId : sessionKey;
+    }
+
+    // Cancels this session's scheduled token refresh and drops its cached user ID
+    @Override
+    public void close() {
+        tokenRefresher.close();
+        userIdCache.invalidate(sessionKey);
+    }
+
+    // Closes the session for good: it will not be restored after a restart
+    public void endSession() {
+        close();
+        if (sessionId != null) {
+            stateStore.deleteSession(sessionId);
+        }
+    }
+
+    // Saves the session, then closes it; used on shutdown so it can be restored by the next process
+    public void suspend() {
+        saveSession();
+        close();
+    }
+
+    // Resumes a session saved by saveSession before a restart
+    void restore(SpotifyStateStore.SessionState state) {
+        spotifyApi.setAccessToken(state.accessToken());
+        spotifyApi.setRefreshToken(state.refreshToken());
+        tokenRefresher.tokenRestored(state.expirationTime());
+        if (state.userId() != null) {
+            userIdCache.put(sessionKey, state.userId());
+        }
+    }
+
+    // Persists the tokens (encrypted) and the user ID, if this service belongs to a logged-in session
+    private void saveSession() {
+        String accessToken = spotifyApi.getAccessToken();
+        if (sessionId == null || accessToken == null) {
+            return;
+        }
+        stateStore.saveSession(sessionId, new SpotifyStateStore.SessionState(accessToken, spotifyApi.getRefreshToken(),
+                tokenRefresher.getExpirationTime(), userIdCache.getStale(sessionKey), System.currentTimeMillis()));
+    }
+
+    // method to get the current user ID; served from the shared cache while it is fresh
     public CompletableFuture<String> getUserIdAsync() {
+        String cachedUserId = userIdCache.get(sessionKey);
+        if (cachedUserId != null) {
+            return CompletableFuture.completedFuture(cachedUserId);
+        }
         return ensureAccessTokenIsValid()
                 .thenCompose(unused -> requestUserId())
+                .thenApply(userId -> {
+                    if (userId != null) {
+                        userIdCache.put(sessionKey, userId);
+                        saveSession();
+                    }
+                    return userId;
+                })
                 .toCompletableFuture();
     }
 
@@ -137,7 +236,7 @@ public class SpotifyService {
     private CompletableFuture<String> requestUserId() {
         logger.info("Fetching current user's Spotify ID");
         GetCurrentUsersProfileRequest request = spotifyApi.getCurrentUsersProfile().build();
-        return request.executeAsync()
+        return execute(Priority.INTERACTIVE, SpotifyEndpoint.PROFILE, request)
                 .thenApply(User::getId)
                 .exceptionally(e -> {
                     logger.error("Error fetching user ID: {}", e.getMessage(), e);
@@ -147,55 +246,189 @@ public class SpotifyService {
 
     // Get user's playlists by fetching all pages, with automatic refresh if token is expired
     public CompletionStage<List<Map<String, String>>> fetchUserPlaylists() {
+        return fetchUserPlaylists(false);
+    }
+
+    // Get user's playlists from the cache while fresh; bypassCache forces revalidation against Spotify
+    public CompletionStage<List<Map<String, String>>> fetchUserPlaylists(boolean bypassCache) {
+        return fetchCachedPlaylists(bypassCache)
+                .thenApply(CachedPlaylists::getPlaylists);
+    }
+
+    // The user's playlists with their snapshot_ids, in Spotify's order. Fails if they could not be fetched, so that
+    // callers comparing against the library never mistake an error for an empty one
+    public CompletionStage<List<PlaylistSnapshot>> fetchPlaylistSnapshots(boolean bypassCache) {
+        return fetchCachedPlaylists(bypassCache)
+                .thenApply(cached -> {
+                    List<PlaylistSnapshot> snapshots = new ArrayList<>(cached.getPlaylists().size());
+                    for (Map<String, String> playlist : cached.getPlaylists()) {
+                        String id = playlist.get("id");
+                        snapshots.add(new PlaylistSnapshot(id, playlist.get("name"), cached.getSnapshotId(id)));
+                    }
+                    return snapshots;
+                });
+    }
+
+    // The cache entry itself, so the controller can reuse its rendered body and ETag. Fails if the playlists could not
+    // be fetched, with the TooManyRequestsException as the cause once the scheduler has run out of retries
+    CompletionStage<CachedPlaylists> fetchCachedPlaylists(boolean bypassCache) {
         return ensureAccessTokenIsValid()
-                .thenCompose(unused -> retrieveAllUserPlaylists());
+                .thenCompose(unused -> retrieveAllUserPlaylists(bypassCache));
     }
 
-    // Retrieves all playlists for the current user by fetching all pages.
-    private CompletionStage<List<Map<String, String>>> retrieveAllUserPlaylists() {
+    // Retrieves all playlists for the current user, using the cache unless bypassed
+    private CompletionStage<CachedPlaylists> retrieveAllUserPlaylists(boolean bypassCache) {
         return getUserIdAsync()
                 .thenCompose(userId -> {
                     if (userId == null) {
-                        logger.error("User ID could not be fetched.");
-                        return CompletableFuture.completedFuture(List.of());
+                        return CompletableFuture.<CachedPlaylists>failedFuture(new IllegalStateException("User ID could not be fetched"));
+                    }
+                    CachedPlaylists cached = bypassCache ? null : playlistCache.get(userId);
+                    if (cached != null) {
+                        return CompletableFuture.completedFuture(cached);
                     }
-                    return retrievePlaylistsWithPagination(userId, 0, List.of());
+                    CachedPlaylists restored = bypassCache ? null : restorePlaylists(userId);
+                    if (restored != null) {
+                        return CompletableFuture.completedFuture(restored);
+                    }
+                    return revalidatePlaylists(userId);
                 })
-                .exceptionally(e -> {
-                    logger.error("Error fetching playlists: {}", e.getMessage(), e);
-                    return List.of();
+                .whenComplete((cached, e) -> {
+                    if (e != null) {
+                        logger.error("Error fetching playlists: {}", e.getMessage());
+                    }
                 });
     }
 
-    // Helper method to fetch all playlists with pagination
-    private CompletionStage<List<Map<String, String>>> retrievePlaylistsWithPagination(String userId, int offset, List<Map<String, String>> accumulatedPlaylists) {
-        GetListOfUsersPlaylistsRequest request = spotifyApi.getListOfUsersPlaylists(userId)
-                .limit(50)
-                .offset(offset)
-                .build();
+    // First request for this user since startup: serves the list saved by the previous process, if any, and
+    // revalidates it in the background instead of making the user wait for Spotify
+    private CachedPlaylists restorePlaylists(String userId) {
+        if (playlistCache.getStale(userId) != null) {
+            return null;
+        }
+        List<CachedPlaylists.Summary> stored = stateStore.loadPlaylists(userId);
+        if (stored == null) {
+            return null;
+        }
+        CachedPlaylists restored = CachedPlaylists.revalidate(null, stored);
+        playlistCache.put(userId, restored);
+        revalidatePlaylists(userId).exceptionally(e -> {
+            logger.warn("Background revalidation of restored playlists failed: {}", e.getMessage());
+            return null;
+        });
+        return restored;
+    }
 
-        return request.executeAsync()
-                .thenCompose(playlistPaging -> {
-                    List<Map<String, String>> currentPlaylists = Stream.of(playlistPaging.getItems())
-                            .map(playlist -> Map.of(
-                                            "id", playlist.getId(),
-                                            "name", playlist.getName()
-                            ))
-                            .toList();
-
-                    List<Map<String, String>> updatedAccumulatedPlaylists = Stream.concat(accumulatedPlaylists.stream(), currentPlaylists.stream())
-                            .collect(Collectors.toList());
-
-                    // If there are more playlists to fetch, continue with the next page
-                    if (playlistPaging.getTotal() > offset + playlistPaging.getItems().length) {
-                        return retrievePlaylistsWithPagination(userId, offset + 50, updatedAccumulatedPlaylists);
-                    } else {
-                        // No more playlists to fetch, return the accumulated list
-                        return CompletableFuture.completedFuture(updatedAccumulatedPlaylists);
+    // Re-fetches the playlist list and replaces only the entries whose snapshot_id changed
+    private CompletionStage<CachedPlaylists> revalidatePlaylists(String userId) {
+        return retrievePlaylistsWithPagination(userId)
+                .thenApply(summaries -> {
+                    CachedPlaylists revalidated = CachedPlaylists.revalidate(playlistCache.getStale(userId), summaries);
+                    playlistCache.put(userId, revalidated);
+                    stateStore.savePlaylists(userId, summaries);
+                    logger.info("Revalidated {} playlists, {} new or changed", summaries.size(), revalidated.getChangedPlaylistIds().size());
+                    if (!libraryListeners.isEmpty()) {
+                        List<PlaylistSnapshot> snapshots = summaries.stream()
+                                .map(summary -> new PlaylistSnapshot(summary.id(), summary.name(), summary.snapshotId()))
+                                .toList();
+                        libraryListeners.forEach(listener -> listener.playlistsRevalidated(userId, snapshots, revalidated.getChangedPlaylistIds()));
                     }
+                    return revalidated;
                 });
     }
 
+    // Helper method to fetch all playlists; pages after the first are requested concurrently
+    private CompletionStage<List<CachedPlaylists.Summary>> retrievePlaylistsWithPagination(String userId) {
+        return paginatedFetcher.<PlaylistSimplified, CachedPlaylists.Summary>fetchAll(
+                (offset, limit) -> execute(Priority.INTERACTIVE, SpotifyEndpoint.PLAYLISTS_PAGE, spotifyApi.getListOfUsersPlaylists(userId)
+                        .limit(limit)
+                        .offset(offset)
+                        .build()),
+                playlist -> new CachedPlaylists.Summary(playlist.getId(), playlist.getName(), playlist.getSnapshotId()));
+    }
+
+    // Fetches the URI of every item of a playlist (tracks, episodes and local files) as background bulk work.
+    // Items saved for the snapshot_id last seen in /playlists are reused, as the playlist has not changed since.
+    public CompletableFuture<List<String>> fetchPlaylistItemUris(String playlistId) {
+        String snapshotId = findCachedSnapshotId(playlistId);
+        List<String> stored = snapshotId == null ? null : stateStore.loadPlaylistItems(playlistId, snapshotId);
+        if (stored != null) {
+            return CompletableFuture.completedFuture(stored);
+        }
+        return ensureAccessTokenIsValid()
+                .thenCompose(unused -> paginatedFetcher.<PlaylistTrack, String>fetchAll(
+                        (offset, limit) -> execute(Priority.BACKGROUND, SpotifyEndpoint.PLAYLIST_ITEMS_PAGE, spotifyApi.getPlaylistsItems(playlistId)
+                                .additionalTypes("track,episode")
+                                .limit(limit)
+                                .offset(offset)
+                                .build()),
+                        item -> item.getTrack() == null ? null : item.getTrack().getUri()))
+                .thenApply(uris -> {
+                    if (snapshotId != null) {
+                        stateStore.savePlaylistItems(playlistId, snapshotId, uris);
+                    }
+                    return uris;
+                })
+                .toCompletableFuture();
+    }
+
+    // snapshot_id of one of the user's playlists as last fetched for /playlists, or null if it is not cached
+    private String findCachedSnapshotId(String playlistId) {
+        String userId = userIdCache.getStale(sessionKey);
+        CachedPlaylists cached = userId == null ? null : playlistCache.getStale(userId);
+        return cached == null ? null : cached.getSnapshotId(playlistId);
+    }
+
+    // Name of one of the user's playlists as last fetched for /playlists, or null if it is not cached
+    public String findCachedPlaylistName(String playlistId) {
+        String userId = userIdCache.getStale(sessionKey);
+        CachedPlaylists cached = userId == null ? null : playlistCache.getStale(userId);
+        if (cached == null) {
+            return null;
+        }
+        for (Map<String, String> playlist : cached.getPlaylists()) {
+            if (playlistId.equals(playlist.get("id"))) {
+                return playlist.get("name");
+            }
+        }
+        return null;
+    }
+
+    // Metadata of every distinct item URI across the imported playlists, plus the items that cannot be resolved.
+    // Library listeners are told about the import once it is resolved.
+    public CompletableFuture<TrackResolver.Resolution> resolveImport(CompactLibrary library) {
+        List<String> uris = new ArrayList<>();
+        for (CompactPlaylist playlist : library.getPlaylists()) {
+            for (int i = 0; i < playlist.size(); i++) {
+                uris.add(playlist.uriAt(i));
+            }
+        }
+        return resolveUris(uris)
+                .thenCompose(resolution -> getUserIdAsync().thenApply(userId -> {
+                    if (userId != null) {
+                        libraryListeners.forEach(listener -> listener.importResolved(userId, library, resolution));
+                    }
+                    return resolution;
+                }));
+    }
+
+    // Looks the URIs up with the multi-ID endpoints as background work; see TrackResolver
+    public CompletableFuture<TrackResolver.Resolution> resolveUris(Collection<String> uris) {
+        return ensureAccessTokenIsValid()
+                .thenCompose(unused -> trackResolver.resolve(uris, new TrackResolver.BatchLookup() {
+                    @Override
+                    public CompletableFuture<Track[]> tracks(String[] ids) {
+                        return execute(Priority.BACKGROUND, SpotifyEndpoint.SEVERAL_TRACKS, spotifyApi.getSeveralTracks(ids).build());
+                    }
+
+                    @Override
+                    public CompletableFuture<Episode[]> episodes(String[] ids) {
+                        return execute(Priority.BACKGROUND, SpotifyEndpoint.SEVERAL_EPISODES, spotifyApi.getSeveralEpisodes(ids).build());
+                    }
+                }))
+                .toCompletableFuture();
+    }
+
     // Method to get liked songs, ensures token is valid before proceeding
     public CompletableFuture<Paging<SavedTrack>> getLikedSongs() {
         return ensureAccessTokenIsValid()
@@ -205,11 +438,56 @@ public class SpotifyService {
                             .limit(50)
                             .offset(0)
                             .build();
-                    return request.executeAsync()
+                    return execute(Priority.INTERACTIVE, SpotifyEndpoint.SAVED_TRACKS_PAGE, request)
                             .exceptionally(e -> {
                                 logger.error("Error fetching liked songs: {}", e.getMessage(), e);
                                 return null;
                             });
                 }).toCompletableFuture();
     }
+
+    // Receives one page of a streamed collection; may block, which holds back the next request
+    @FunctionalInterface
+    public interface PageConsumer<T> {
+        void accept(T[] items) throws IOException;
+    }
+
+    // Streams the user's whole liked-songs library in order, one page at a time, and returns the number of tracks.
+    // Runs on the calling thread: the next page is prefetched while the consumer handles the current one, but no
+    // further page is requested until the consumer returns, so a slow consumer bounds memory to two pages.
+    public int streamLikedSongs(PageConsumer<SavedTrack> consumer) throws IOException {
+        logger.info("Streaming user's liked songs");
+        CompletableFuture<Paging<SavedTrack>> nextPage = requestLikedSongsPage(0, Priority.INTERACTIVE);
+        int offset = 0;
+        boolean hasMore;
+        do {
+            Paging<SavedTrack> page = nextPage.join();
+            SavedTrack[] items = page.getItems() == null ? new SavedTrack[0] : page.getItems();
+            offset += items.length;
+            hasMore = items.length > 0 && page.getNext() != null;
+            if (hasMore) {
+                // later pages are bulk work and must not delay interactive calls of other users
+                nextPage = requestLikedSongsPage(offset, Priority.BACKGROUND);
+            }
+            try {
+                consumer.accept(items);
+            } catch (IOException | RuntimeException e) {
+                if (hasMore) {
+                    nextPage.cancel(false);
+                }
+                throw e;
+            }
+        } while (hasMore);
+        logger.info("Streamed {} liked songs", offset);
+        return offset;
+    }
+
+    private CompletableFuture<Paging<SavedTrack>> requestLikedSongsPage(int offset, Priority priority) {
+        return ensureAccessTokenIsValid()
+                .thenCompose(unused -> execute(priority, SpotifyEndpoint.SAVED_TRACKS_PAGE, spotifyApi.getUsersSavedTracks()
+                        .limit(PaginatedFetcher.MAX_PAGE_SIZE)
+                        .offset(offset)
+                        .build()))
+                .toCompletableFuture();
+    }
 }
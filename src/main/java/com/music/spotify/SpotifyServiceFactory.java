@@ -0,0 +1,173 @@
+package com.music.spotify;
+
+import se.michaelthelin.spotify.IHttpManager;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.Supplier;
+
+// Creates the per-session SpotifyService instances and owns the resources they share:
+// the app credentials, the pagination engine, the outbound request scheduler, the scheduler used for background token refreshes, the
+// user ID, playlist and track metadata caches and the on-disk state store.
+public class SpotifyServiceFactory implements Supplier<SpotifyService>, AutoCloseable {
+    public static final int DEFAULT_USER_ID_CACHE_SIZE = 50_000;
+    public static final Duration DEFAULT_USER_ID_TTL = Duration.ofMinutes(30);
+    public static final int DEFAULT_PLAYLIST_CACHE_SIZE = 10_000;
+    public static final Duration DEFAULT_PLAYLIST_TTL = Duration.ofMinutes(2);
+
+    private final String clientId;
+    private final String clientSecret;
+    private final URI redirectUri;
+    private final PaginatedFetcher paginatedFetcher;
+    private final SpotifyRequestScheduler requestScheduler;
+    private final ScheduledExecutorService scheduler;
+    private final ExpiringCache<String, String> userIdCache;
+    private final ExpiringCache<String, CachedPlaylists> playlistCache;
+    private final TrackResolver trackResolver;
+    private final SpotifyStateStore stateStore;
+    private final SpotifyHosts hosts;
+    private final IHttpManager httpManager;
+    private final List<LibraryListener> libraryListeners = new CopyOnWriteArrayList<>();
+
+    public SpotifyServiceFactory(String clientId, String clientSecret, URI redirectUri) {
+        this(clientId, clientSecret, redirectUri, PaginatedFetcher.DEFAULT_MAX_CONCURRENCY, new SpotifyRequestScheduler());
+    }
+
+    // maxPageConcurrency caps how many pages of a paged endpoint are requested at the same time;
+    // every Web API call of every session goes through requestScheduler
+    public SpotifyServiceFactory(String clientId, String clientSecret, URI redirectUri, int maxPageConcurrency,
+                                 SpotifyRequestScheduler requestScheduler) {
+        this(clientId, clientSecret, redirectUri, maxPageConcurrency, requestScheduler, SpotifyStateStore.disabled());
+    }
+
+    // stateStore keeps sessions and fetched metadata across restarts
+    public SpotifyServiceFactory(String clientId, String clientSecret, URI redirectUri, int maxPageConcurrency,
+                                 SpotifyRequestScheduler requestScheduler, SpotifyStateStore stateStore) {
+        this(clientId, clientSecret, redirectUri, maxPageConcurrency, requestScheduler, stateStore, SpotifyHosts.SPOTIFY);
+    }
+
+    // hosts sends every call to another accounts service and Web API, e.g. a local stub
+    public SpotifyServiceFactory(String clientId, String clientSecret, URI redirectUri, int maxPageConcurrency,
+                                 SpotifyRequestScheduler requestScheduler, SpotifyStateStore stateStore, SpotifyHosts hosts) {
+        this.clientId = clientId;
+        this.clientSecret = clientSecret;
+        this.redirectUri = redirectUri;
+        this.paginatedFetcher = new PaginatedFetcher(PaginatedFetcher.MAX_PAGE_SIZE, maxPageConcurrency);
+        this.requestScheduler = requestScheduler;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "spotify-token-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.userIdCache = new ExpiringCache<>(DEFAULT_USER_ID_CACHE_SIZE, DEFAULT_USER_ID_TTL);
+        this.playlistCache = new ExpiringCache<>(DEFAULT_PLAYLIST_CACHE_SIZE, DEFAULT_PLAYLIST_TTL);
+        this.trackResolver = new TrackResolver(TrackResolver.DEFAULT_CACHE_SIZE, TrackResolver.DEFAULT_TTL, TrackResolver.DEFAULT_MAX_CONCURRENT_BATCHES);
+        this.stateStore = stateStore;
+        this.hosts = hosts;
+        IHttpManager connections = new PooledHttpManager(requestScheduler.getMaxInFlight());
+        this.httpManager = hosts.isSpotify() ? connections : new HostRewritingHttpManager(connections, hosts);
+    }
+
+    // A service outside any session; its tokens are never persisted
+    @Override
+    public SpotifyService get() {
+        return new SpotifyService(this, null);
+    }
+
+    // A new service for the session with this cookie id
+    SpotifyService create(String sessionId) {
+        return new SpotifyService(this, sessionId);
+    }
+
+    // The service of a session saved before a restart, or null if none was saved within maxAgeMillis
+    SpotifyService restore(String sessionId, long maxAgeMillis) {
+        SpotifyStateStore.SessionState state = stateStore.loadSession(sessionId);
+        if (state == null) {
+            return null;
+        }
+        if (state.savedAt() < System.currentTimeMillis() - maxAgeMillis) {
+            stateStore.deleteSession(sessionId);
+            return null;
+        }
+        SpotifyService service = new SpotifyService(this, sessionId);
+        service.restore(state);
+        return service;
+    }
+
+    String getClientId() {
+        return clientId;
+    }
+
+    String getClientSecret() {
+        return clientSecret;
+    }
+
+    URI getRedirectUri() {
+        return redirectUri;
+    }
+
+    PaginatedFetcher getPaginatedFetcher() {
+        return paginatedFetcher;
+    }
+
+    SpotifyRequestScheduler getRequestScheduler() {
+        return requestScheduler;
+    }
+
+    ScheduledExecutorService getScheduler() {
+        return scheduler;
+    }
+
+    ExpiringCache<String, String> getUserIdCache() {
+        return userIdCache;
+    }
+
+    ExpiringCache<String, CachedPlaylists> getPlaylistCache() {
+        return playlistCache;
+    }
+
+    TrackResolver getTrackResolver() {
+        return trackResolver;
+    }
+
+    SpotifyHosts getHosts() {
+        return hosts;
+    }
+
+    IHttpManager getHttpManager() {
+        return httpManager;
+    }
+
+    SpotifyStateStore getStateStore() {
+        return stateStore;
+    }
+
+    // Registers a listener for what any session learns about its user's library
+    public void addLibraryListener(LibraryListener listener) {
+        libraryListeners.add(listener);
+    }
+
+    List<LibraryListener> getLibraryListeners() {
+        return libraryListeners;
+    }
+
+    // Hit/miss counts of the shared caches
+    public Map<String, Map<String, Long>> cacheStats() {
+        return Map.of(
+                "userIds", userIdCache.stats(),
+                "playlists", playlistCache.stats(),
+                "tracks", trackResolver.cacheStats()
+        );
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        requestScheduler.close();
+    }
+}
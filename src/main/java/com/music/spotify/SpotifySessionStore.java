@@ -0,0 +1,211 @@
+package com.music.spotify;
+
+import io.javalin.http.Context;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Keeps one SpotifyService (credentials + client state) per browser session, keyed by a session cookie.
+// Lookups are lock-free reads of a ConcurrentHashMap; the store is bounded to maxSessions and sessions
+// idle for longer than idleTimeout are evicted by a background sweeper.
+// A session only exists once Spotify has accepted its login, so anonymous traffic cannot fill the store and push
+// logged-in users out of it.
+// Logged-in sessions are also saved by the factory's state store: a cookie that is not in memory, e.g. after a
+// restart, resumes its saved session if that was last saved within idleTimeout.
+public class SpotifySessionStore implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(SpotifySessionStore.class);
+    public static final String SESSION_COOKIE = "sptfy_session";
+    public static final int DEFAULT_MAX_SESSIONS = 50_000;
+    public static final Duration DEFAULT_IDLE_TIMEOUT = Duration.ofHours(1);
+    private static final int EVICTION_BATCH_DIVISOR = 16;
+
+    private final SpotifyServiceFactory serviceFactory;
+    private final int maxSessions;
+    private final long idleTimeoutMillis;
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private final Object admissionLock = new Object();  // makes the size check and the insert of a new session atomic
+    private final SecureRandom random = new SecureRandom();
+    private final ScheduledExecutorService sweeper;
+
+    private static final class Session {
+        private final SpotifyService service;
+        private volatile long lastAccessTime;
+
+        private Session(SpotifyService service) {
+            this.service = service;
+            this.lastAccessTime = System.currentTimeMillis();
+        }
+    }
+
+    public SpotifySessionStore(SpotifyServiceFactory serviceFactory) {
+        this(serviceFactory, DEFAULT_MAX_SESSIONS, DEFAULT_IDLE_TIMEOUT);
+    }
+
+    public SpotifySessionStore(SpotifyServiceFactory serviceFactory, int maxSessions, Duration idleTimeout) {
+        if (maxSessions < 1) {
+            throw new IllegalArgumentException("maxSessions must be at least 1");
+        }
+        this.serviceFactory = serviceFactory;
+        this.maxSessions = maxSessions;
+        this.idleTimeoutMillis = idleTimeout.toMillis();
+
+        long sweepInterval = Math.max(1000, idleTimeoutMillis / 4);
+        sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "spotify-session-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleAtFixedRate(this::sweep, sweepInterval, sweepInterval, TimeUnit.MILLISECONDS);
+    }
+
+    // Exchanges an authorization code and completes with the logged-in service. A caller with a session logs in
+    // again on it; otherwise the code is exchanged on a new service, which is stored, and its cookie set, only
+    // once Spotify has accepted the code.
+    public CompletableFuture<SpotifyService> logIn(Context ctx, String code) {
+        SpotifyService current = find(ctx);
+        if (current != null) {
+            return current.exchangeAuthorizationCodeAsync(code).thenApply(unused -> current);
+        }
+
+        // Never adopt a client-chosen id, always issue a fresh one to prevent session fixation
+        String sessionId = newSessionId();
+        SpotifyService service = serviceFactory.create(sessionId);
+        return service.exchangeAuthorizationCodeAsync(code)
+                .whenComplete((unused, e) -> {
+                    if (e != null) {
+                        service.close();
+                    }
+                })
+                .thenApply(unused -> {
+                    admit(sessionId, new Session(service));
+                    ctx.res().addHeader("Set-Cookie", SESSION_COOKIE + "=" + sessionId + "; Path=/; SameSite=Lax; HttpOnly; Secure");
+                    return service;
+                });
+    }
+
+    // Returns the caller's service without starting a session
+    public SpotifyService find(Context ctx) {
+        String sessionId = ctx.cookie(SESSION_COOKIE);
+        Session session = sessionId == null ? null : findOrRestore(sessionId);
+        if (session == null) {
+            return null;
+        }
+        session.lastAccessTime = System.currentTimeMillis();
+        return session.service;
+    }
+
+    public int size() {
+        return sessions.size();
+    }
+
+    // Stores a new session unless one with this id is already there, and returns the stored one. New sessions only
+    // come from logins and restores, so serializing them costs nothing on the lookup path.
+    private Session admit(String sessionId, Session session) {
+        synchronized (admissionLock) {
+            Session existing = sessions.get(sessionId);
+            if (existing != null) {
+                return existing;
+            }
+            if (sessions.size() >= maxSessions) {
+                makeRoom();
+            }
+            sessions.put(sessionId, session);
+            return session;
+        }
+    }
+
+    // Only ids this server issued have saved state, so resuming one does not open the door to session fixation
+    private Session findOrRestore(String sessionId) {
+        Session session = sessions.get(sessionId);
+        if (session != null) {
+            return session;
+        }
+        SpotifyService restored = serviceFactory.restore(sessionId, idleTimeoutMillis);
+        if (restored == null) {
+            return null;
+        }
+        Session created = new Session(restored);
+        session = admit(sessionId, created);
+        if (session != created) {
+            restored.close();  // a concurrent request restored it first
+            return session;
+        }
+        logger.info("Restored a saved Spotify session, {} active", sessions.size());
+        return created;
+    }
+
+    // Only reached when the store is full of logged-in sessions: idle ones go first, then the least recently used
+    // sixteenth in one pass, so a full store is scanned once per batch of logins rather than once per login
+    private void makeRoom() {
+        evictIdleSessions();
+        if (sessions.size() < maxSessions) {
+            return;
+        }
+        long[] accessTimes = sessions.values().stream().mapToLong(session -> session.lastAccessTime).toArray();
+        Arrays.sort(accessTimes);
+        int toEvict = Math.min(accessTimes.length, sessions.size() - maxSessions + Math.max(1, maxSessions / EVICTION_BATCH_DIVISOR));
+        long threshold = accessTimes[Math.max(0, toEvict - 1)];
+        int evicted = 0;
+        Iterator<Session> candidates = sessions.values().iterator();
+        while (evicted < toEvict && candidates.hasNext()) {
+            Session session = candidates.next();
+            if (session.lastAccessTime <= threshold) {
+                candidates.remove();
+                session.service.endSession();
+                evicted++;
+            }
+        }
+        logger.warn("Session store full ({} sessions), evicted the {} least recently used", maxSessions, evicted);
+    }
+
+    private void sweep() {
+        evictIdleSessions();
+        long cutoff = System.currentTimeMillis() - idleTimeoutMillis;
+        int expired = serviceFactory.getStateStore().deleteSessionsSavedBefore(cutoff);
+        if (expired > 0) {
+            logger.info("Deleted {} saved Spotify sessions that were not resumed in time", expired);
+        }
+    }
+
+    private void evictIdleSessions() {
+        long cutoff = System.currentTimeMillis() - idleTimeoutMillis;
+        int evicted = 0;
+        Iterator<Map.Entry<String, Session>> iterator = sessions.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Session session = iterator.next().getValue();
+            if (session.lastAccessTime < cutoff) {
+                iterator.remove();
+                session.service.endSession();
+                evicted++;
+            }
+        }
+        if (evicted > 0) {
+            logger.info("Evicted {} idle Spotify sessions, {} remaining", evicted, sessions.size());
+        }
+    }
+
+    private String newSessionId() {
+        byte[] bytes = new byte[24];
+        random.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    // Saves every session on the way out so the next process can resume them
+    @Override
+    public void close() {
+        sweeper.shutdownNow();
+        sessions.values().forEach(session -> session.service.suspend());
+        sessions.clear();
+    }
+}
@@ -0,0 +1,232 @@
+package com.music.spotify;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.music.http.HttpCaching;
+import com.music.store.LogStore;
+import com.music.store.TokenCipher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+// What the service has learned from Spotify, kept on disk so a restart does not send every user back to the
+// Web API at once: logged-in sessions (tokens encrypted with the TokenCipher), playlist lists and the item URIs
+// of each playlist snapshot.
+// The store is opened in the background; until it is ready lookups miss and writes are skipped, so startup is
+// never held up by it. Storage errors are logged and treated as misses: the store only saves requests, it is never
+// the source of truth.
+public class SpotifyStateStore implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(SpotifyStateStore.class);
+    private static final ObjectMapper JSON = new ObjectMapper();
+    private static final Duration SESSION_RESTORE_WAIT = Duration.ofSeconds(2);
+    private static final String SESSION_PREFIX = "session:";
+
+    private final CompletableFuture<LogStore> store;
+    private final TokenCipher tokenCipher;
+    // When each saved session was written, so sweeps need not decrypt them; filled from the store on the first sweep
+    private final Map<String, Long> sessionSavedAt = new ConcurrentHashMap<>();
+    private volatile boolean sessionSavedAtLoaded;
+
+    // Tokens and what is needed to resume a session after a restart; expirationTime and savedAt are epoch millis
+    record SessionState(String accessToken, String refreshToken, long expirationTime, String userId, long savedAt) {
+    }
+
+    // The item URIs of a playlist at one snapshot_id
+    record PlaylistItems(String snapshotId, List<String> uris) {
+    }
+
+    private SpotifyStateStore(CompletableFuture<LogStore> store, TokenCipher tokenCipher) {
+        this.store = store;
+        this.tokenCipher = tokenCipher;
+    }
+
+    // Starts opening the store in dir on executor and returns at once; sessions are only persisted with a cipher
+    public static SpotifyStateStore open(Path dir, TokenCipher tokenCipher, Executor executor) {
+        if (tokenCipher == null) {
+            logger.warn("No store key configured, sessions will not survive a restart");
+        }
+        CompletableFuture<LogStore> store = CompletableFuture.supplyAsync(() -> {
+            try {
+                return LogStore.open(dir);
+            } catch (IOException e) {
+                logger.error("Could not open the store in {}, continuing without it", dir, e);
+                return null;
+            }
+        }, executor);
+        return new SpotifyStateStore(store, tokenCipher);
+    }
+
+    public static SpotifyStateStore disabled() {
+        return new SpotifyStateStore(CompletableFuture.completedFuture(null), null);
+    }
+
+    private LogStore ready() {
+        return store.isCompletedExceptionally() ? null : store.getNow(null);
+    }
+
+    void saveSession(String sessionId, SessionState state) {
+        LogStore ready = ready();
+        if (ready == null || tokenCipher == null) {
+            return;
+        }
+        String key = sessionKey(sessionId);
+        try {
+            ready.put(key, tokenCipher.encrypt(JSON.writeValueAsBytes(state), key.getBytes(StandardCharsets.UTF_8)));
+            sessionSavedAt.put(key, state.savedAt());
+        } catch (IOException | RuntimeException e) {
+            logger.error("Could not save session state: {}", e.getMessage(), e);
+        }
+    }
+
+    // Waits briefly for the store if it is still opening: a miss here logs the user out
+    SessionState loadSession(String sessionId) {
+        if (tokenCipher == null) {
+            return null;
+        }
+        LogStore ready;
+        try {
+            ready = store.get(SESSION_RESTORE_WAIT.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            logger.warn("Store not open yet, cannot restore session");
+            return null;
+        } catch (Exception e) {
+            return null;
+        }
+        return ready == null ? null : readSession(ready, sessionKey(sessionId));
+    }
+
+    private SessionState readSession(LogStore ready, String key) {
+        try {
+            byte[] sealed = ready.get(key);
+            if (sealed == null) {
+                return null;
+            }
+            return JSON.readValue(tokenCipher.decrypt(sealed, key.getBytes(StandardCharsets.UTF_8)), SessionState.class);
+        } catch (GeneralSecurityException e) {
+            // Typically the store key was changed; the session cannot be recovered
+            logger.warn("Discarding a saved session that cannot be decrypted with the current key");
+            ready.delete(key);
+            sessionSavedAt.remove(key);
+            return null;
+        } catch (IOException | RuntimeException e) {
+            logger.error("Could not load session state: {}", e.getMessage(), e);
+            return null;
+        }
+    }
+
+    void deleteSession(String sessionId) {
+        LogStore ready = ready();
+        if (ready != null) {
+            String key = sessionKey(sessionId);
+            ready.delete(key);
+            sessionSavedAt.remove(key);
+        }
+    }
+
+    // Removes saved sessions last written before cutoff (epoch millis), which are too old to be restored.
+    // Only the first call after opening reads the saved sessions; later ones are answered from sessionSavedAt.
+    int deleteSessionsSavedBefore(long cutoff) {
+        LogStore ready = ready();
+        if (ready == null || tokenCipher == null) {
+            return 0;
+        }
+        if (!sessionSavedAtLoaded) {
+            loadSessionSavedAt(ready);
+        }
+        int deleted = 0;
+        for (Map.Entry<String, Long> entry : sessionSavedAt.entrySet()) {
+            if (entry.getValue() < cutoff && sessionSavedAt.remove(entry.getKey(), entry.getValue())) {
+                ready.delete(entry.getKey());
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    private synchronized void loadSessionSavedAt(LogStore ready) {
+        if (sessionSavedAtLoaded) {
+            return;
+        }
+        for (String key : ready.keys(SESSION_PREFIX)) {
+            SessionState state = readSession(ready, key);
+            if (state != null) {
+                sessionSavedAt.merge(key, state.savedAt(), Math::max);  // a save since the read is newer
+            }
+        }
+        sessionSavedAtLoaded = true;
+    }
+
+    void savePlaylists(String userId, List<CachedPlaylists.Summary> playlists) {
+        write("playlists:" + userId, playlists);
+    }
+
+    List<CachedPlaylists.Summary> loadPlaylists(String userId) {
+        return read("playlists:" + userId, new TypeReference<>() {
+        });
+    }
+
+    void savePlaylistItems(String playlistId, String snapshotId, List<String> uris) {
+        write("items:" + playlistId, new PlaylistItems(snapshotId, uris));
+    }
+
+    // The stored item URIs, only if they were saved for this snapshot_id
+    List<String> loadPlaylistItems(String playlistId, String snapshotId) {
+        PlaylistItems items = read("items:" + playlistId, new TypeReference<>() {
+        });
+        return items != null && snapshotId.equals(items.snapshotId()) ? items.uris() : null;
+    }
+
+    private void write(String key, Object value) {
+        LogStore ready = ready();
+        if (ready == null) {
+            return;
+        }
+        try {
+            ready.put(key, JSON.writeValueAsBytes(value));
+        } catch (IOException | RuntimeException e) {
+            logger.error("Could not save {}: {}", key, e.getMessage(), e);
+        }
+    }
+
+    private <T> T read(String key, TypeReference<T> type) {
+        LogStore ready = ready();
+        if (ready == null) {
+            return null;
+        }
+        try {
+            byte[] value = ready.get(key);
+            return value == null ? null : JSON.readValue(value, type);
+        } catch (IOException | RuntimeException e) {
+            logger.error("Could not load {}: {}", key, e.getMessage(), e);
+            return null;
+        }
+    }
+
+    // Session ids are bearer credentials, so only their hash is written to disk
+    private static String sessionKey(String sessionId) {
+        byte[] hash = HttpCaching.sha256().digest(sessionId.getBytes(StandardCharsets.UTF_8));
+        return SESSION_PREFIX + Base64.getUrlEncoder().withoutPadding().encodeToString(hash);
+    }
+
+    // Closes the store once it has opened, writing its index so the next start does not replay the log
+    @Override
+    public void close() {
+        LogStore ready = store.exceptionally(e -> null).join();
+        if (ready != null) {
+            ready.close();
+        }
+    }
+}
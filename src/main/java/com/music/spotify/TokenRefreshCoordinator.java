@@ -0,0 +1,151 @@
+package com.music.spotify;
+
+import com.music.metrics.Counter;
+import com.music.metrics.MetricsRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+// Coordinates access-token refreshes for one session.
+// Concurrent refresh attempts are merged into a single in-flight future that every caller waits on, and a
+// refresh is scheduled ahead of expiry so request paths normally find a valid token and never block on renewal.
+class TokenRefreshCoordinator implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(TokenRefreshCoordinator.class);
+    private static final long MAX_REFRESH_MARGIN_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    private static final String REFRESHES_HELP = "Access-token refreshes sent to Spotify, by outcome";
+    private static final Counter REFRESH_SUCCESSES = MetricsRegistry.getDefault()
+            .counter("spotify_token_refreshes_total", REFRESHES_HELP, "outcome", "success");
+    private static final Counter REFRESH_FAILURES = MetricsRegistry.getDefault()
+            .counter("spotify_token_refreshes_total", REFRESHES_HELP, "outcome", "failure");
+    private static final Counter REFRESH_JOINS = MetricsRegistry.getDefault()
+            .counter("spotify_token_refresh_joins_total", "Callers that waited on a refresh already in flight instead of sending their own");
+    private static final Counter PROACTIVE_REFRESHES = MetricsRegistry.getDefault()
+            .counter("spotify_token_proactive_refreshes_total", "Refreshes started ahead of token expiry by the scheduler");
+
+    private final Supplier<CompletableFuture<Void>> refreshAction;
+    private final ScheduledExecutorService scheduler;
+    private final AtomicReference<CompletableFuture<Void>> inFlight = new AtomicReference<>();
+    private volatile long expirationTime;
+    private volatile ScheduledFuture<?> scheduledRefresh;
+    private volatile boolean closed;
+
+    // refreshAction performs the token request and must call tokenIssued before its future completes
+    TokenRefreshCoordinator(Supplier<CompletableFuture<Void>> refreshAction, ScheduledExecutorService scheduler) {
+        this.refreshAction = refreshAction;
+        this.scheduler = scheduler;
+    }
+
+    boolean isTokenValid() {
+        return System.currentTimeMillis() < expirationTime;
+    }
+
+    long getExpirationTime() {
+        return expirationTime;
+    }
+
+    // Records a freshly issued token and schedules its proactive refresh
+    void tokenIssued(int expiresInSeconds) {
+        long lifetimeMillis = expiresInSeconds * 1000L;
+        expirationTime = System.currentTimeMillis() + lifetimeMillis;
+
+        // Refresh 5 minutes early, or after 80% of the lifetime for short-lived tokens
+        long margin = Math.min(MAX_REFRESH_MARGIN_MILLIS, lifetimeMillis / 5);
+        scheduleRefresh(lifetimeMillis - margin);
+    }
+
+    // Restores the expiry of a token saved before a restart; an already expired one is refreshed on next use
+    void tokenRestored(long expirationTime) {
+        this.expirationTime = expirationTime;
+        long remainingMillis = expirationTime - System.currentTimeMillis();
+        if (remainingMillis > 0) {
+            scheduleRefresh(remainingMillis - Math.min(MAX_REFRESH_MARGIN_MILLIS, remainingMillis / 5));
+        }
+    }
+
+    // Refreshes only if the token has expired; callers arriving during a refresh share its future
+    CompletableFuture<Void> refreshIfExpired() {
+        if (isTokenValid()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return joinOrStartRefresh(false);
+    }
+
+    // Refreshes even if the token is still valid, unless a refresh is already in flight
+    CompletableFuture<Void> refresh() {
+        return joinOrStartRefresh(true);
+    }
+
+    private CompletableFuture<Void> joinOrStartRefresh(boolean force) {
+        while (true) {
+            CompletableFuture<Void> current = inFlight.get();
+            if (current != null) {
+                REFRESH_JOINS.increment();
+                return current;
+            }
+            CompletableFuture<Void> created = new CompletableFuture<>();
+            if (!inFlight.compareAndSet(null, created)) {
+                continue;
+            }
+            // A refresh may have finished between the caller's expiry check and winning the CAS
+            if (!force && isTokenValid()) {
+                inFlight.compareAndSet(created, null);
+                created.complete(null);
+                return created;
+            }
+            startRefresh(created);
+            return created;
+        }
+    }
+
+    private void startRefresh(CompletableFuture<Void> result) {
+        CompletableFuture<Void> action;
+        try {
+            action = refreshAction.get();
+        } catch (RuntimeException e) {
+            action = CompletableFuture.failedFuture(e);
+        }
+        action.whenComplete((unused, ex) -> {
+            // Clear before completing so callers woken by the result can start the next refresh if needed
+            inFlight.compareAndSet(result, null);
+            (ex != null ? REFRESH_FAILURES : REFRESH_SUCCESSES).increment();
+            if (ex != null) {
+                result.completeExceptionally(ex);
+            } else {
+                result.complete(null);
+            }
+        });
+    }
+
+    private void scheduleRefresh(long delayMillis) {
+        if (closed) {
+            return;
+        }
+        ScheduledFuture<?> previous = scheduledRefresh;
+        if (previous != null) {
+            previous.cancel(false);
+        }
+        scheduledRefresh = scheduler.schedule(() -> {
+            logger.info("Proactively refreshing access token before it expires");
+            PROACTIVE_REFRESHES.increment();
+            refresh().exceptionally(e -> {
+                logger.warn("Proactive token refresh failed, will refresh on next request: {}", e.getMessage());
+                return null;
+            });
+        }, Math.max(0, delayMillis), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        ScheduledFuture<?> scheduled = scheduledRefresh;
+        if (scheduled != null) {
+            scheduled.cancel(false);
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.music.spotify;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se.michaelthelin.spotify.model_objects.specification.ArtistSimplified;
+import se.michaelthelin.spotify.model_objects.specification.Episode;
+import se.michaelthelin.spotify.model_objects.specification.Track;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Supplier;
+
+// Looks up the metadata of imported item URIs with Spotify's multi-ID endpoints.
+// URIs are deduplicated first and answered from a cache shared by all sessions where possible; the rest are grouped
+// into batches of up to 50 IDs per endpoint, of which at most maxConcurrentBatches are in flight per call. Items
+// Spotify does not know, or that are available in no market, are cached too, so they are not asked for again.
+// Availability is judged without a market, so the cache does not depend on the user's country.
+public class TrackResolver {
+    private static final Logger logger = LoggerFactory.getLogger(TrackResolver.class);
+    public static final int MAX_IDS_PER_BATCH = 50;
+    public static final int DEFAULT_MAX_CONCURRENT_BATCHES = 4;
+    public static final int DEFAULT_CACHE_SIZE = 200_000;
+    public static final Duration DEFAULT_TTL = Duration.ofHours(12);
+    private static final String TRACK_PREFIX = "spotify:track:";
+    private static final String EPISODE_PREFIX = "spotify:episode:";
+    private static final String LOCAL_PREFIX = "spotify:local:";
+
+    private final ExpiringCache<String, Lookup> cache;
+    private final int maxConcurrentBatches;
+
+    // type is "track" or "episode"; for episodes artists is empty and album holds the show
+    public record TrackMetadata(String uri, String type, String name, List<String> artists, String album, Integer durationMs) {
+    }
+
+    public enum Reason {
+        NOT_FOUND,    // Spotify does not know the ID
+        UNAVAILABLE,  // known, but not playable in any market
+        LOCAL,        // a local file, which only exists on the user's device
+        INVALID,      // not a track or episode URI with a well-formed ID
+        FAILED        // the lookup itself failed; not cached, so the next call retries it
+    }
+
+    public record Unresolved(String uri, Reason reason) {
+    }
+
+    // requested counts URIs as given, unique after deduplication; apiCalls is the number of batch lookups made
+    public record Resolution(List<TrackMetadata> resolved, List<Unresolved> unresolved, int requested, int unique, int apiCalls) {
+    }
+
+    // The batch endpoints as seen from one session; results are in the order of the IDs, null for unknown IDs
+    interface BatchLookup {
+        CompletableFuture<Track[]> tracks(String[] ids);
+
+        CompletableFuture<Episode[]> episodes(String[] ids);
+    }
+
+    // Either the metadata or the reason there is none
+    private record Lookup(TrackMetadata metadata, Reason reason) {
+    }
+
+    TrackResolver(int cacheSize, Duration ttl, int maxConcurrentBatches) {
+        if (maxConcurrentBatches < 1) {
+            throw new IllegalArgumentException("maxConcurrentBatches must be at least 1");
+        }
+        this.cache = new ExpiringCache<>(cacheSize, ttl);
+        this.maxConcurrentBatches = maxConcurrentBatches;
+    }
+
+    CompletableFuture<Resolution> resolve(Collection<String> uris, BatchLookup lookup) {
+        Set<String> unique = new LinkedHashSet<>(uris);
+        unique.remove(null);
+        Map<String, Lookup> results = new ConcurrentHashMap<>(unique.size() * 2);
+        List<String> trackIds = new ArrayList<>();
+        List<String> episodeIds = new ArrayList<>();
+        for (String uri : unique) {
+            Lookup cached = cache.get(uri);
+            if (cached != null) {
+                results.put(uri, cached);
+            } else if (uri.startsWith(LOCAL_PREFIX)) {
+                results.put(uri, new Lookup(null, Reason.LOCAL));
+            } else if (uri.startsWith(TRACK_PREFIX) && isValidId(uri, TRACK_PREFIX.length())) {
+                trackIds.add(uri.substring(TRACK_PREFIX.length()));
+            } else if (uri.startsWith(EPISODE_PREFIX) && isValidId(uri, EPISODE_PREFIX.length())) {
+                episodeIds.add(uri.substring(EPISODE_PREFIX.length()));
+            } else {
+                results.put(uri, new Lookup(null, Reason.INVALID));
+            }
+        }
+
+        Queue<Supplier<CompletableFuture<Void>>> batches = new ConcurrentLinkedQueue<>();
+        for (int from = 0; from < trackIds.size(); from += MAX_IDS_PER_BATCH) {
+            String[] ids = trackIds.subList(from, Math.min(trackIds.size(), from + MAX_IDS_PER_BATCH)).toArray(String[]::new);
+            batches.add(() -> lookup.tracks(ids).handle((tracks, ex) -> {
+                record(results, TRACK_PREFIX, ids, tracks, ex, TrackResolver::fromTrack);
+                return null;
+            }));
+        }
+        for (int from = 0; from < episodeIds.size(); from += MAX_IDS_PER_BATCH) {
+            String[] ids = episodeIds.subList(from, Math.min(episodeIds.size(), from + MAX_IDS_PER_BATCH)).toArray(String[]::new);
+            batches.add(() -> lookup.episodes(ids).handle((episodes, ex) -> {
+                record(results, EPISODE_PREFIX, ids, episodes, ex, TrackResolver::fromEpisode);
+                return null;
+            }));
+        }
+
+        int apiCalls = batches.size();
+        return ConcurrentLanes.run(batches, maxConcurrentBatches)
+                .thenApply(unused -> {
+                    List<TrackMetadata> resolved = new ArrayList<>();
+                    List<Unresolved> unresolved = new ArrayList<>();
+                    for (String uri : unique) {
+                        Lookup result = results.get(uri);
+                        if (result.metadata() != null) {
+                            resolved.add(result.metadata());
+                        } else {
+                            unresolved.add(new Unresolved(uri, result.reason()));
+                        }
+                    }
+                    logger.info("Resolved {} of {} unique URIs ({} given) with {} batch lookups",
+                            resolved.size(), unique.size(), uris.size(), apiCalls);
+                    return new Resolution(resolved, unresolved, uris.size(), unique.size(), apiCalls);
+                });
+    }
+
+    private interface Converter<T> {
+        Lookup convert(String uri, T item);
+    }
+
+    private <T> void record(Map<String, Lookup> results, String prefix, String[] ids, T[] items, Throwable ex, Converter<T> converter) {
+        if (ex != null) {
+            logger.warn("Batch lookup of {} IDs failed: {}", ids.length, ex.getMessage());
+        }
+        for (int i = 0; i < ids.length; i++) {
+            String uri = prefix + ids[i];
+            T item = ex == null && items != null && i < items.length ? items[i] : null;
+            Lookup lookup;
+            if (ex != null) {
+                lookup = new Lookup(null, Reason.FAILED);
+            } else {
+                lookup = item == null ? new Lookup(null, Reason.NOT_FOUND) : converter.convert(uri, item);
+                cache.put(uri, lookup);
+            }
+            results.put(uri, lookup);
+        }
+    }
+
+    private static Lookup fromTrack(String uri, Track track) {
+        if (track.getAvailableMarkets() != null && track.getAvailableMarkets().length == 0) {
+            return new Lookup(null, Reason.UNAVAILABLE);
+        }
+        List<String> artists = track.getArtists() == null ? List.of()
+                : Arrays.stream(track.getArtists()).map(ArtistSimplified::getName).toList();
+        return new Lookup(new TrackMetadata(uri, "track", track.getName(), artists,
+                track.getAlbum() == null ? null : track.getAlbum().getName(), track.getDurationMs()), null);
+    }
+
+    private static Lookup fromEpisode(String uri, Episode episode) {
+        if (Boolean.FALSE.equals(episode.getPlayable())) {
+            return new Lookup(null, Reason.UNAVAILABLE);
+        }
+        return new Lookup(new TrackMetadata(uri, "episode", episode.getName(), List.of(),
+                episode.getShow() == null ? null : episode.getShow().getName(), episode.getDurationMs()), null);
+    }
+
+    // Base62, 22 characters; a malformed ID would fail the whole batch it is in
+    private static boolean isValidId(String uri, int start) {
+        if (uri.length() - start != 22) {
+            return false;
+        }
+        for (int i = start; i < uri.length(); i++) {
+            char c = uri.charAt(i);
+            if (!(c >= '0' && c <= '9' || c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    Map<String, Long> cacheStats() {
+        return cache.stats();
+    }
+}
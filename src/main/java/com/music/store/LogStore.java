@@ -0,0 +1,486 @@
+package com.music.store;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32C;
+
+// Embedded key-value store: an append-only log file, read through a memory mapping, with an in-memory index of
+// where each key's latest value is.
+//
+// Every record carries a CRC32C. On open, the log is replayed from the end of the last hint file (the index saved
+// at compaction and on clean shutdown), so a clean restart only reads the index and not the data, and the first
+// torn or corrupt record (e.g. from a crash mid-write) and everything after it is cut off.
+// Overwritten and deleted records stay in the log until compaction rewrites the live records into the next
+// generation; the switch is made by atomically replacing the CURRENT file, so a crash during compaction leaves
+// the previous generation intact. Appends are flushed to disk at most FLUSH_INTERVAL_MILLIS later.
+public class LogStore implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(LogStore.class);
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    // crc (4), type (1), key length (4), value length (4); the crc covers everything after itself
+    private static final int HEADER_SIZE = 13;
+    private static final int HINT_MAGIC = 0x53545048;
+    private static final long FLUSH_INTERVAL_MILLIS = 1000;
+    private static final long MIN_COMPACTION_GARBAGE = 16L * 1024 * 1024;
+    private static final String CURRENT = "CURRENT";
+
+    private final Path dir;
+    private final Object compactionLock = new Object();
+    private final ScheduledExecutorService background;
+    private volatile Segment segment;
+
+    // Guarded by `this`
+    private long garbageBytes;
+    private boolean dirty;
+    private boolean compactionScheduled;
+    private boolean closed;
+
+    // Where a key's latest record is in the current log
+    private record Location(long recordOffset, int recordSize, int keyLength, int valueLength) {
+    }
+
+    // One generation of the log with its index; replaced as a whole by compaction
+    private static final class Segment {
+        private final long generation;
+        private final FileChannel channel;
+        private final Map<String, Location> index;
+        private volatile MappedByteBuffer mapping;
+        private long writePosition;  // guarded by the store
+
+        private Segment(long generation, FileChannel channel, Map<String, Location> index, long writePosition) {
+            this.generation = generation;
+            this.channel = channel;
+            this.index = index;
+            this.writePosition = writePosition;
+        }
+
+        // Reads length bytes at offset, through the mapping when the log fits in one (files under 2 GiB)
+        private byte[] read(long offset, int length) throws IOException {
+            byte[] bytes = new byte[length];
+            MappedByteBuffer mapped = mapping;
+            if (mapped == null || offset + length > mapped.capacity()) {
+                mapped = remap(offset + length);
+            }
+            if (mapped != null) {
+                mapped.get((int) offset, bytes);
+                return bytes;
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, offset + buffer.position()) < 0) {
+                    throw new IOException("Unexpected end of store file");
+                }
+            }
+            return bytes;
+        }
+
+        private synchronized MappedByteBuffer remap(long required) throws IOException {
+            MappedByteBuffer mapped = mapping;
+            if (mapped != null && required <= mapped.capacity()) {
+                return mapped;
+            }
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                return null;
+            }
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            mapping = mapped;
+            return mapped;
+        }
+    }
+
+    private LogStore(Path dir, Segment segment, long garbageBytes) {
+        this.dir = dir;
+        this.segment = segment;
+        this.garbageBytes = garbageBytes;
+        this.background = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "log-store-" + dir.getFileName());
+            thread.setDaemon(true);
+            return thread;
+        });
+        background.scheduleWithFixedDelay(this::flush, FLUSH_INTERVAL_MILLIS, FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    // Opens (or creates) the store in dir, recovering from an unclean shutdown if needed
+    public static LogStore open(Path dir) throws IOException {
+        Files.createDirectories(dir);
+        long generation = readCurrentGeneration(dir);
+        deleteOtherGenerations(dir, generation);
+
+        Path logFile = logFile(dir, generation);
+        FileChannel channel = FileChannel.open(logFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        Map<String, Location> index = new ConcurrentHashMap<>();
+        long start = readHint(hintFile(dir, generation), channel.size(), index);
+        long validEnd = replay(channel, start, index);
+        if (validEnd < channel.size()) {
+            logger.warn("Store {} has {} bytes of incomplete or corrupt records after offset {}, truncating",
+                    logFile, channel.size() - validEnd, validEnd);
+            channel.truncate(validEnd);
+            channel.force(true);
+        }
+        if (generation == 0 && !Files.exists(dir.resolve(CURRENT))) {
+            writeCurrentGeneration(dir, generation);
+        }
+        logger.info("Opened store {} with {} keys ({} bytes, {} replayed)", logFile, index.size(), validEnd, validEnd - start);
+        long liveBytes = index.values().stream().mapToLong(Location::recordSize).sum();
+        return new LogStore(dir, new Segment(generation, channel, index, validEnd), validEnd - liveBytes);
+    }
+
+    public byte[] get(String key) {
+        while (true) {
+            Segment current = segment;
+            Location location = current.index.get(key);
+            if (location == null) {
+                return null;
+            }
+            try {
+                return current.read(location.recordOffset() + HEADER_SIZE + location.keyLength(), location.valueLength());
+            } catch (IOException e) {
+                if (segment == current) {
+                    throw new UncheckedIOException("Could not read " + key + " from the store", e);
+                }
+                // The generation was compacted away while reading; look the key up again in the new one
+            }
+        }
+    }
+
+    public boolean containsKey(String key) {
+        return segment.index.containsKey(key);
+    }
+
+    public int size() {
+        return segment.index.size();
+    }
+
+    // Keys starting with prefix; answered from the in-memory index without touching the file
+    public List<String> keys(String prefix) {
+        List<String> keys = new ArrayList<>();
+        for (String key : segment.index.keySet()) {
+            if (key.startsWith(prefix)) {
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+
+    public void put(String key, byte[] value) {
+        append(PUT, key, value);
+    }
+
+    public void delete(String key) {
+        if (segment.index.containsKey(key)) {
+            append(DELETE, key, new byte[0]);
+        }
+    }
+
+    private void append(byte type, String key, byte[] value) {
+        byte[] record = encode(type, key.getBytes(StandardCharsets.UTF_8), value);
+        boolean compact;
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("Store is closed");
+            }
+            Segment current = segment;
+            long offset = current.writePosition;
+            try {
+                writeFully(current.channel, ByteBuffer.wrap(record), offset);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not write " + key + " to the store", e);
+            }
+            current.writePosition = offset + record.length;
+            dirty = true;
+            Location previous = type == PUT
+                    ? current.index.put(key, new Location(offset, record.length, record.length - HEADER_SIZE - value.length, value.length))
+                    : current.index.remove(key);
+            garbageBytes += (previous == null ? 0 : previous.recordSize()) + (type == DELETE ? record.length : 0);
+            compact = !compactionScheduled && garbageBytes > Math.max(MIN_COMPACTION_GARBAGE, current.writePosition - garbageBytes);
+            compactionScheduled |= compact;
+        }
+        if (compact) {
+            background.execute(() -> {
+                try {
+                    compact();
+                } catch (IOException | RuntimeException e) {
+                    logger.error("Store compaction failed", e);
+                }
+            });
+        }
+    }
+
+    // Rewrites the live records into a new generation and switches to it; writes continue meanwhile
+    public void compact() throws IOException {
+        synchronized (compactionLock) {
+            Segment old;
+            long copiedUpTo;
+            Map<String, Location> live;
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                old = segment;
+                copiedUpTo = old.writePosition;
+                live = new HashMap<>(old.index);
+            }
+
+            long generation = old.generation + 1;
+            Path newLog = logFile(dir, generation);
+            FileChannel channel = FileChannel.open(newLog, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            Map<String, Location> index = new ConcurrentHashMap<>();
+            long position = 0;
+            try {
+                // Bulk of the copy runs without blocking writers
+                for (Map.Entry<String, Location> entry : live.entrySet()) {
+                    Location location = entry.getValue();
+                    writeFully(channel, ByteBuffer.wrap(old.read(location.recordOffset(), location.recordSize())), position);
+                    index.put(entry.getKey(), new Location(position, location.recordSize(), location.keyLength(), location.valueLength()));
+                    position += location.recordSize();
+                }
+
+                synchronized (this) {
+                    // Carry over what was written during the copy, then switch generations atomically
+                    long end = old.writePosition;
+                    if (end > copiedUpTo) {
+                        byte[] tail = old.read(copiedUpTo, (int) (end - copiedUpTo));
+                        writeFully(channel, ByteBuffer.wrap(tail), position);
+                        position = replay(channel, position, index);
+                    }
+                    channel.force(true);
+                    writeHint(hintFile(dir, generation), position, index);
+                    writeCurrentGeneration(dir, generation);
+
+                    Segment compacted = new Segment(generation, channel, index, position);
+                    segment = compacted;
+                    garbageBytes = 0;
+                    compactionScheduled = false;
+                    logger.info("Compacted store from {} to {} bytes ({} keys)", end, position, index.size());
+                }
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                Files.deleteIfExists(newLog);
+                synchronized (this) {
+                    compactionScheduled = false;
+                }
+                throw e;
+            }
+            old.channel.close();
+            Files.deleteIfExists(logFile(dir, old.generation));
+            Files.deleteIfExists(hintFile(dir, old.generation));
+        }
+    }
+
+    private void flush() {
+        synchronized (this) {
+            if (!dirty || closed) {
+                return;
+            }
+            dirty = false;
+        }
+        try {
+            segment.channel.force(false);
+        } catch (IOException e) {
+            logger.error("Could not flush the store", e);
+        }
+    }
+
+    // Flushes and saves the index as a hint file, so the next open does not have to replay the log
+    @Override
+    public void close() {
+        background.shutdownNow();
+        synchronized (compactionLock) {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                Segment current = segment;
+                try {
+                    current.channel.force(true);
+                    writeHint(hintFile(dir, current.generation), current.writePosition, current.index);
+                    current.channel.close();
+                } catch (IOException e) {
+                    logger.error("Could not close the store cleanly; it will be recovered on the next open", e);
+                }
+            }
+        }
+    }
+
+    private static byte[] encode(byte type, byte[] key, byte[] value) {
+        ByteBuffer record = ByteBuffer.allocate(HEADER_SIZE + key.length + value.length).order(ByteOrder.BIG_ENDIAN);
+        record.putInt(0);
+        record.put(type);
+        record.putInt(key.length);
+        record.putInt(value.length);
+        record.put(key);
+        record.put(value);
+        CRC32C crc = new CRC32C();
+        crc.update(record.array(), 4, record.capacity() - 4);
+        record.putInt(0, (int) crc.getValue());
+        return record.array();
+    }
+
+    // Applies the records from start onwards to index and returns the end of the last valid record
+    private static long replay(FileChannel channel, long start, Map<String, Location> index) throws IOException {
+        long size = channel.size();
+        long position = start;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        while (position + HEADER_SIZE <= size) {
+            header.clear();
+            readFully(channel, header, position);
+            int storedCrc = header.getInt(0);
+            byte type = header.get(4);
+            int keyLength = header.getInt(5);
+            int valueLength = header.getInt(9);
+            if ((type != PUT && type != DELETE) || keyLength < 0 || valueLength < 0
+                    || position + HEADER_SIZE + (long) keyLength + valueLength > size) {
+                break;
+            }
+            ByteBuffer body = ByteBuffer.allocate(keyLength + valueLength);
+            readFully(channel, body, position + HEADER_SIZE);
+            CRC32C crc = new CRC32C();
+            crc.update(header.array(), 4, HEADER_SIZE - 4);
+            crc.update(body.array());
+            if ((int) crc.getValue() != storedCrc) {
+                break;
+            }
+            String key = new String(body.array(), 0, keyLength, StandardCharsets.UTF_8);
+            int recordSize = HEADER_SIZE + keyLength + valueLength;
+            if (type == PUT) {
+                index.put(key, new Location(position, recordSize, keyLength, valueLength));
+            } else {
+                index.remove(key);
+            }
+            position += recordSize;
+        }
+        return position;
+    }
+
+    // Hint layout: magic, covered log length, entry count, entries (key, offset, sizes), then a CRC32C of all of it
+    private static void writeHint(Path hint, long coveredLength, Map<String, Location> index) throws IOException {
+        int size = 4 + 8 + 4 + 8;
+        for (String key : index.keySet()) {
+            size += 4 + key.getBytes(StandardCharsets.UTF_8).length + 8 + 4 + 4 + 4;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(HINT_MAGIC).putLong(coveredLength).putInt(index.size());
+        for (Map.Entry<String, Location> entry : index.entrySet()) {
+            byte[] key = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            Location location = entry.getValue();
+            buffer.putInt(key.length).put(key)
+                    .putLong(location.recordOffset()).putInt(location.recordSize())
+                    .putInt(location.keyLength()).putInt(location.valueLength());
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.array(), 0, buffer.position());
+        buffer.putLong(crc.getValue());
+
+        Path temp = hint.resolveSibling(hint.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            writeFully(channel, buffer.flip(), 0);
+            channel.force(true);
+        }
+        Files.move(temp, hint, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    // Loads a hint into index and returns the log offset to replay from; 0 if there is no usable hint
+    private static long readHint(Path hint, long logSize, Map<String, Location> index) throws IOException {
+        if (!Files.exists(hint)) {
+            return 0;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(hint));
+        try {
+            CRC32C crc = new CRC32C();
+            crc.update(buffer.array(), 0, buffer.capacity() - 8);
+            if (buffer.getLong(buffer.capacity() - 8) != crc.getValue() || buffer.getInt() != HINT_MAGIC) {
+                throw new IOException("checksum mismatch");
+            }
+            long coveredLength = buffer.getLong();
+            if (coveredLength > logSize) {
+                throw new IOException("hint covers more than the log holds");
+            }
+            int count = buffer.getInt();
+            for (int i = 0; i < count; i++) {
+                byte[] key = new byte[buffer.getInt()];
+                buffer.get(key);
+                index.put(new String(key, StandardCharsets.UTF_8),
+                        new Location(buffer.getLong(), buffer.getInt(), buffer.getInt(), buffer.getInt()));
+            }
+            return coveredLength;
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Ignoring unusable store hint {} ({}), replaying the whole log", hint, e.getMessage());
+            index.clear();
+            return 0;
+        }
+    }
+
+    private static long readCurrentGeneration(Path dir) throws IOException {
+        Path current = dir.resolve(CURRENT);
+        return Files.exists(current) ? Long.parseLong(Files.readString(current, StandardCharsets.UTF_8).trim()) : 0;
+    }
+
+    private static void writeCurrentGeneration(Path dir, long generation) throws IOException {
+        Path temp = dir.resolve(CURRENT + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            writeFully(channel, ByteBuffer.wrap(Long.toString(generation).getBytes(StandardCharsets.UTF_8)), 0);
+            channel.force(true);
+        }
+        Files.move(temp, dir.resolve(CURRENT), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    // Leftovers of an interrupted compaction or of generations already replaced
+    private static void deleteOtherGenerations(Path dir, long generation) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "data-*")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (!name.equals(logFile(dir, generation).getFileName().toString())
+                        && !name.equals(hintFile(dir, generation).getFileName().toString())) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    private static Path logFile(Path dir, long generation) {
+        return dir.resolve("data-" + generation + ".log");
+    }
+
+    private static Path hintFile(Path dir, long generation) {
+        return dir.resolve("data-" + generation + ".hint");
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long offset = position;
+        while (buffer.hasRemaining()) {
+            offset += channel.write(buffer, offset);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of store file");
+            }
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.music.store;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+// Encrypts secrets (OAuth tokens) before they are written to the store, with AES-256-GCM.
+// The store key of the record is bound in as associated data, so a sealed value copied under another key fails
+// to decrypt. Layout of a sealed value: version (1 byte), IV (12 bytes), ciphertext with the 16-byte tag.
+public final class TokenCipher {
+    private static final byte VERSION = 1;
+    private static final int IV_LENGTH = 12;
+    private static final int TAG_BITS = 128;
+
+    private final SecretKeySpec key;
+    private final SecureRandom random = new SecureRandom();
+
+    private TokenCipher(byte[] key) {
+        if (key.length != 32) {
+            throw new IllegalArgumentException("The store key must be 32 bytes (base64 encoded), got " + key.length);
+        }
+        this.key = new SecretKeySpec(key, "AES");
+    }
+
+    public static TokenCipher fromBase64(String key) {
+        return new TokenCipher(Base64.getDecoder().decode(key.trim()));
+    }
+
+    public byte[] encrypt(byte[] plaintext, byte[] associatedData) {
+        byte[] iv = new byte[IV_LENGTH];
+        random.nextBytes(iv);
+        try {
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, iv));
+            cipher.updateAAD(associatedData);
+            byte[] ciphertext = cipher.doFinal(plaintext);
+            byte[] sealed = new byte[1 + IV_LENGTH + ciphertext.length];
+            sealed[0] = VERSION;
+            System.arraycopy(iv, 0, sealed, 1, IV_LENGTH);
+            System.arraycopy(ciphertext, 0, sealed, 1 + IV_LENGTH, ciphertext.length);
+            return sealed;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("AES-GCM is not available", e);
+        }
+    }
+
+    // Throws if the value was not sealed with this key and associated data, or was tampered with
+    public byte[] decrypt(byte[] sealed, byte[] associatedData) throws GeneralSecurityException {
+        if (sealed.length < 1 + IV_LENGTH || sealed[0] != VERSION) {
+            throw new GeneralSecurityException("Unknown sealed value format");
+        }
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, sealed, 1, IV_LENGTH));
+        cipher.updateAAD(associatedData);
+        return cipher.doFinal(sealed, 1 + IV_LENGTH, sealed.length - 1 - IV_LENGTH);
+    }
+}
@@ -0,0 +1,45 @@
+package com.music.sync;
+
+import java.util.List;
+
+// The edits that turn a live playlist into the exported one, in the order they must be applied:
+// 1. removals, whose positions refer to the live playlist at baseSnapshotId (Spotify's uri + positions form)
+// 2. moves, one at a time, with Spotify's range_start / insert_before semantics on the list as it is at that point
+// 3. insertions, in order, each inserting its URIs at position
+// A playlist without a live counterpart (status CREATE) has a single insertion at position 0.
+public record PlaylistChangeSet(String name, String playlistId, String baseSnapshotId, Status status,
+                                List<Removal> removals, List<Move> moves, List<Insertion> insertions, String error) {
+
+    public enum Status {
+        CREATE,     // no live playlist of this name
+        UPDATE,     // compared, changes needed
+        IN_SYNC,    // compared, the live playlist already matches the export
+        UNCHANGED,  // neither the export nor the live snapshot changed since the last sync, nothing was compared
+        FAILED      // the live items could not be fetched
+    }
+
+    public record Removal(String uri, int position) {
+    }
+
+    public record Move(String uri, int rangeStart, int insertBefore) {
+    }
+
+    public record Insertion(int position, List<String> uris) {
+    }
+
+    static PlaylistChangeSet unchanged(String name, String playlistId, String snapshotId) {
+        return new PlaylistChangeSet(name, playlistId, snapshotId, Status.UNCHANGED, List.of(), List.of(), List.of(), null);
+    }
+
+    static PlaylistChangeSet failed(String name, String playlistId, String snapshotId, String error) {
+        return new PlaylistChangeSet(name, playlistId, snapshotId, Status.FAILED, List.of(), List.of(), List.of(), error);
+    }
+
+    public int changeCount() {
+        int inserted = 0;
+        for (Insertion insertion : insertions) {
+            inserted += insertion.uris().size();
+        }
+        return removals.size() + moves.size() + inserted;
+    }
+}
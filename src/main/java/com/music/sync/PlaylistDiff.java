@@ -0,0 +1,328 @@
+package com.music.sync;
+
+import fileProcessor.CompactPlaylist;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Minimal edit scripts between two versions of a playlist, computed on 64-bit URI hashes.
+// The common prefix and suffix are skipped first, so the work after hashing is proportional to the span that changed,
+// not to the playlist. Inside that span the k-th copy of a URI on one side is paired with the k-th copy on the other;
+// unpaired live items are removed, unpaired export items inserted, and of the paired ones only those outside a
+// longest increasing subsequence are moved, which is the fewest single-item moves that restore the export order.
+final class PlaylistDiff {
+    private static final long GOLDEN = 0x9E3779B97F4A7C15L;
+
+    private PlaylistDiff() {
+    }
+
+    // FNV-1a finished with the murmur3 mixer; at 64 bits a collision within one library is not a practical concern
+    static long hash(String uri) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < uri.length(); i++) {
+            h ^= uri.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return mix(h);
+    }
+
+    static long[] hashes(List<String> uris) {
+        long[] hashes = new long[uris.size()];
+        for (int i = 0; i < hashes.length; i++) {
+            hashes[i] = hash(uris.get(i));
+        }
+        return hashes;
+    }
+
+    // Hashes each distinct dictionary entry once, so tracks shared by many playlists are not re-decoded every time
+    static long[] hashes(CompactPlaylist playlist, ReferenceHashes cache) {
+        long[] hashes = new long[playlist.size()];
+        for (int i = 0; i < hashes.length; i++) {
+            hashes[i] = cache.hash(playlist, i);
+        }
+        return hashes;
+    }
+
+    // Order-sensitive digest of a whole playlist
+    static long fingerprint(long[] hashes) {
+        long h = hashes.length;
+        for (long item : hashes) {
+            h = (h + item) * GOLDEN;
+        }
+        return mix(h);
+    }
+
+    static PlaylistChangeSet diff(String name, String playlistId, String snapshotId,
+                                  List<String> liveUris, long[] live, CompactPlaylist export, long[] target) {
+        int max = Math.min(live.length, target.length);
+        int prefix = 0;
+        while (prefix < max && live[prefix] == target[prefix]) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < max - prefix && live[live.length - 1 - suffix] == target[target.length - 1 - suffix]) {
+            suffix++;
+        }
+        int liveCount = live.length - suffix - prefix;
+        int targetCount = target.length - suffix - prefix;
+
+        long[] liveKeys = occurrenceKeys(live, prefix, liveCount);
+        long[] targetKeys = occurrenceKeys(target, prefix, targetCount);
+        LongIntMap targetIndex = new LongIntMap(targetCount);
+        for (int i = 0; i < targetCount; i++) {
+            targetIndex.put(targetKeys[i], i);
+        }
+
+        // Live items without a partner go; the rest, in live order, as indexes into the export window
+        List<PlaylistChangeSet.Removal> removals = new ArrayList<>();
+        int[] common = new int[Math.min(liveCount, targetCount)];
+        int commonCount = 0;
+        boolean[] paired = new boolean[targetCount];
+        for (int i = 0; i < liveCount; i++) {
+            int t = targetIndex.get(liveKeys[i]);
+            if (t < 0) {
+                removals.add(new PlaylistChangeSet.Removal(liveUris.get(prefix + i), prefix + i));
+            } else {
+                common[commonCount++] = t;
+                paired[t] = true;
+            }
+        }
+
+        List<PlaylistChangeSet.Move> moves = moves(common, commonCount, paired, prefix, export);
+
+        // After removals and moves the window holds the paired items in export order; inserting the rest in
+        // ascending export position puts every one of them where it belongs
+        List<PlaylistChangeSet.Insertion> insertions = new ArrayList<>();
+        for (int t = 0; t < targetCount; ) {
+            if (paired[t]) {
+                t++;
+                continue;
+            }
+            int start = t;
+            List<String> uris = new ArrayList<>();
+            while (t < targetCount && !paired[t]) {
+                uris.add(export.uriAt(prefix + t));
+                t++;
+            }
+            insertions.add(new PlaylistChangeSet.Insertion(prefix + start, uris));
+        }
+
+        PlaylistChangeSet.Status status = removals.isEmpty() && moves.isEmpty() && insertions.isEmpty()
+                ? PlaylistChangeSet.Status.IN_SYNC : PlaylistChangeSet.Status.UPDATE;
+        return new PlaylistChangeSet(name, playlistId, snapshotId, status, removals, moves, insertions, null);
+    }
+
+    // The whole export as one insertion, for a playlist that does not exist yet
+    static PlaylistChangeSet create(String name, CompactPlaylist export) {
+        List<String> uris = new ArrayList<>(export.size());
+        for (int i = 0; i < export.size(); i++) {
+            uris.add(export.uriAt(i));
+        }
+        List<PlaylistChangeSet.Insertion> insertions = uris.isEmpty() ? List.of() : List.of(new PlaylistChangeSet.Insertion(0, uris));
+        return new PlaylistChangeSet(name, null, null, PlaylistChangeSet.Status.CREATE, List.of(), List.of(), insertions, null);
+    }
+
+    // hash for the first copy of a URI in the window, a hash of (hash, k) for its k-th repeat
+    private static long[] occurrenceKeys(long[] hashes, int from, int count) {
+        long[] keys = new long[count];
+        LongIntMap seen = new LongIntMap(count);
+        for (int i = 0; i < count; i++) {
+            long h = hashes[from + i];
+            int previous = seen.get(h);
+            int occurrence = previous < 0 ? 0 : previous + 1;
+            seen.put(h, occurrence);
+            keys[i] = occurrence == 0 ? h : mix(h ^ (occurrence * GOLDEN));
+        }
+        return keys;
+    }
+
+    // common holds export indexes in live order. Items on a longest increasing run stay; every other item is taken
+    // in export order and moved to just after its export predecessor, which is already placed correctly.
+    // Positions are tracked without simulating the list: an item that has not moved sits in the slot of its live
+    // position, and a moved item sits in a slot chained after the nearest staying item before it in export order.
+    // That order of slots is fixed up front, so a Fenwick tree over occupied slots gives every index in log time.
+    private static List<PlaylistChangeSet.Move> moves(int[] common, int count, boolean[] paired, int offset, CompactPlaylist export) {
+        boolean[] stays = longestIncreasing(common, count, paired.length);
+        int[] livePosition = new int[paired.length];
+        for (int i = 0; i < count; i++) {
+            livePosition[common[i]] = i;
+        }
+        long width = count + 1L;
+        long[] slots = new long[count * 2];
+        int slotCount = 0;
+        int anchor = -1;
+        int depth = 0;
+        for (int t = 0; t < paired.length; t++) {
+            if (!paired[t]) {
+                continue;
+            }
+            slots[slotCount++] = (livePosition[t] + 1) * width;
+            if (stays[t]) {
+                anchor = livePosition[t];
+                depth = 0;
+            } else {
+                slots[slotCount++] = (anchor + 1) * width + ++depth;
+            }
+        }
+        slots = Arrays.copyOf(slots, slotCount);
+        Arrays.sort(slots);
+
+        int[] occupied = new int[slotCount + 1];
+        for (int i = 0; i < count; i++) {
+            add(occupied, Arrays.binarySearch(slots, (i + 1) * width), 1);
+        }
+        List<PlaylistChangeSet.Move> moves = new ArrayList<>();
+        anchor = -1;
+        depth = 0;
+        for (int t = 0; t < paired.length; t++) {
+            if (!paired[t]) {
+                continue;
+            }
+            if (stays[t]) {
+                anchor = livePosition[t];
+                depth = 0;
+                continue;
+            }
+            int fromSlot = Arrays.binarySearch(slots, (livePosition[t] + 1) * width);
+            int toSlot = Arrays.binarySearch(slots, (anchor + 1) * width + ++depth);
+            int from = countBefore(occupied, fromSlot);
+            int insertBefore = countBefore(occupied, toSlot);
+            if (from != insertBefore) {
+                moves.add(new PlaylistChangeSet.Move(export.uriAt(offset + t), offset + from, offset + insertBefore));
+            }
+            // Also when it is already in place, so the items chained after it find it in its new slot
+            add(occupied, fromSlot, -1);
+            add(occupied, toSlot, 1);
+        }
+        return moves;
+    }
+
+    private static void add(int[] tree, int slot, int delta) {
+        for (int i = slot + 1; i < tree.length; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+
+    private static int countBefore(int[] tree, int slot) {
+        int count = 0;
+        for (int i = slot; i > 0; i -= i & -i) {
+            count += tree[i];
+        }
+        return count;
+    }
+
+    // Patience sorting; the result is indexed by export index
+    private static boolean[] longestIncreasing(int[] values, int count, int range) {
+        int[] tails = new int[count];
+        int[] predecessors = new int[count];
+        int length = 0;
+        for (int i = 0; i < count; i++) {
+            int low = 0;
+            int high = length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (values[tails[middle]] < values[i]) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            predecessors[i] = low > 0 ? tails[low - 1] : -1;
+            tails[low] = i;
+            if (low == length) {
+                length++;
+            }
+        }
+        boolean[] stays = new boolean[range];
+        for (int i = length > 0 ? tails[length - 1] : -1; i >= 0; i = predecessors[i]) {
+            stays[values[i]] = true;
+        }
+        return stays;
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    // Memoized URI hashes per dictionary reference, shared by all playlists of one export
+    static final class ReferenceHashes {
+        private final LongIntMap index = new LongIntMap(1024);
+        private long[] values = new long[1024];
+        private int size;
+
+        long hash(CompactPlaylist playlist, int position) {
+            int reference = playlist.itemReference(position);
+            int slot = index.get(reference);
+            if (slot >= 0) {
+                return values[slot];
+            }
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            long h = PlaylistDiff.hash(playlist.uriAt(position));
+            values[size] = h;
+            index.put(reference, size++);
+            return h;
+        }
+    }
+
+    // Open addressing map from long keys to non-negative ints; get returns -1 when the key is absent
+    static final class LongIntMap {
+        private long[] keys;
+        private int[] values;  // value + 1, 0 marks a free slot
+        private int size;
+
+        LongIntMap(int expected) {
+            int capacity = Integer.highestOneBit(Math.max(4, expected) * 2 - 1) << 1;
+            keys = new long[capacity];
+            values = new int[capacity];
+        }
+
+        int get(long key) {
+            int mask = keys.length - 1;
+            for (int slot = (int) mix(key) & mask; values[slot] != 0; slot = (slot + 1) & mask) {
+                if (keys[slot] == key) {
+                    return values[slot] - 1;
+                }
+            }
+            return -1;
+        }
+
+        void put(long key, int value) {
+            if ((size + 1) * 2 > keys.length) {
+                grow();
+            }
+            int mask = keys.length - 1;
+            int slot = (int) mix(key) & mask;
+            while (values[slot] != 0) {
+                if (keys[slot] == key) {
+                    values[slot] = value + 1;
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            values[slot] = value + 1;
+            size++;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new int[oldValues.length * 2];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldValues[i] != 0) {
+                    put(oldKeys[i], oldValues[i] - 1);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.music.sync;
+
+import com.music.spotify.SpotifyService;
+import com.music.spotify.SpotifySessionStore;
+import fileProcessor.CompactLibrary;
+import io.javalin.Javalin;
+import io.javalin.http.Context;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+public class SyncController {
+    private static final Logger logger = LoggerFactory.getLogger(SyncController.class);
+    private static final int MAX_ITEMS = 200_000;
+    private final SpotifySessionStore sessions;
+    private final SyncEngine syncEngine;
+
+    // Body of POST /sync: the playlists of an export as produced by FileProcessor
+    public record SyncRequest(List<ExportedPlaylist> playlists) {
+    }
+
+    public record ExportedPlaylist(String name, String description, List<String> uris) {
+    }
+
+    public SyncController(SpotifySessionStore sessions, SyncEngine syncEngine) {
+        this.sessions = sessions;
+        this.syncEngine = syncEngine;
+    }
+
+    public void registerRoutes(Javalin app) {
+        app.post("/sync", this::sync);
+    }
+
+    // Plans the changes that would bring the user's live playlists in line with the posted export
+    public void sync(Context ctx) {
+        SpotifyService spotifyService = sessions.find(ctx);
+        if (spotifyService == null || !spotifyService.isLoggedIn()) {
+            ctx.status(401).json(Map.of("error", "Not logged in"));
+            return;
+        }
+
+        SyncRequest request;
+        try {
+            request = ctx.bodyAsClass(SyncRequest.class);
+        } catch (RuntimeException e) {
+            ctx.status(400).json(Map.of("error", "Expected a JSON body with a playlists array"));
+            return;
+        }
+        CompactLibrary export = toLibrary(request);
+        if (export == null) {
+            ctx.status(400).json(Map.of("error", "Send between 1 and " + MAX_ITEMS + " playlist items"));
+            return;
+        }
+
+        ctx.future(() -> syncEngine.plan(spotifyService, export)
+                .thenAccept(ctx::json)
+                .exceptionally(e -> {
+                    logger.error("Sync planning failed: {}", e.getMessage(), e);
+                    ctx.status(502).json(Map.of("error", "Could not read the playlists from Spotify"));
+                    return null;
+                }));
+    }
+
+    // null if the request is empty or too large
+    private static CompactLibrary toLibrary(SyncRequest request) {
+        if (request.playlists() == null || request.playlists().isEmpty()) {
+            return null;
+        }
+        int items = 0;
+        CompactLibrary library = new CompactLibrary();
+        for (ExportedPlaylist playlist : request.playlists()) {
+            List<String> uris = playlist == null || playlist.uris() == null ? List.of() : playlist.uris();
+            items += uris.size();
+            if (items > MAX_ITEMS) {
+                return null;
+            }
+            List<String> playlistInfo = new ArrayList<>(uris.size() + 2);
+            playlistInfo.add(playlist == null ? null : playlist.name());
+            playlistInfo.add(playlist == null ? null : playlist.description());
+            for (String uri : uris) {
+                if (uri != null && !uri.isBlank()) {
+                    playlistInfo.add(uri);
+                }
+            }
+            library.add(playlistInfo);
+        }
+        return library;
+    }
+}
@@ -0,0 +1,133 @@
+package com.music.sync;
+
+import com.music.spotify.ConcurrentLanes;
+import com.music.spotify.ExpiringCache;
+import com.music.spotify.SpotifyService;
+import fileProcessor.CompactLibrary;
+import fileProcessor.CompactPlaylist;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Supplier;
+
+// Compares an imported export with the user's live Spotify playlists and plans the changes that would make the
+// live playlists match it. Export playlists are paired with live playlists by name, in order when names repeat.
+// For every pair found IN_SYNC the engine remembers the live snapshot_id and a fingerprint of the export; while
+// neither changes the pair is reported UNCHANGED without fetching or diffing anything, so a repeat sync costs
+// one playlist-list fetch plus work for the playlists that changed or still need changes. Pending CREATEs and
+// UPDATEs are planned again every time, so a repeat sync still reports them. Live items come from the state store
+// when their snapshot was fetched before. Live playlists that are not in the export are left alone.
+// If the live playlists cannot be read the plan fails and nothing is remembered.
+public class SyncEngine {
+    private static final Logger logger = LoggerFactory.getLogger(SyncEngine.class);
+    public static final int DEFAULT_MAX_CONCURRENT_PLAYLISTS = 8;
+
+    private final int maxConcurrentPlaylists;
+    private final ExpiringCache<String, Map<String, SyncedPlaylist>> lastSynced = new ExpiringCache<>(10_000, Duration.ofDays(7));
+
+    // What a pair looked like when it was last found in sync
+    private record SyncedPlaylist(String playlistId, String snapshotId, long fingerprint) {
+    }
+
+    // compared counts the playlists that were diffed, skipped those reported UNCHANGED
+    public record SyncReport(List<PlaylistChangeSet> playlists, int compared, int skipped) {
+    }
+
+    public SyncEngine() {
+        this(DEFAULT_MAX_CONCURRENT_PLAYLISTS);
+    }
+
+    public SyncEngine(int maxConcurrentPlaylists) {
+        if (maxConcurrentPlaylists < 1) {
+            throw new IllegalArgumentException("maxConcurrentPlaylists must be at least 1");
+        }
+        this.maxConcurrentPlaylists = maxConcurrentPlaylists;
+    }
+
+    public CompletableFuture<SyncReport> plan(SpotifyService service, CompactLibrary export) {
+        return service.getUserIdAsync()
+                .thenCompose(userId -> {
+                    if (userId == null) {
+                        return CompletableFuture.failedFuture(new IllegalStateException("User ID could not be fetched"));
+                    }
+                    // Revalidated, so unchanged snapshot_ids can be trusted and stored items are reused for them
+                    return service.fetchPlaylistSnapshots(true)
+                            .thenCompose(live -> plan(service, userId, export, live));
+                });
+    }
+
+    private CompletableFuture<SyncReport> plan(SpotifyService service, String userId, CompactLibrary export,
+                                               List<SpotifyService.PlaylistSnapshot> live) {
+        Map<String, Deque<SpotifyService.PlaylistSnapshot>> liveByName = new HashMap<>();
+        for (SpotifyService.PlaylistSnapshot playlist : live) {
+            liveByName.computeIfAbsent(nameKey(playlist.name()), key -> new ArrayDeque<>()).add(playlist);
+        }
+        Map<String, SyncedPlaylist> previous = lastSynced.get(userId);
+        Map<String, SyncedPlaylist> synced = new ConcurrentHashMap<>();
+        Map<String, Integer> nameCounts = new HashMap<>();
+        PlaylistDiff.ReferenceHashes referenceHashes = new PlaylistDiff.ReferenceHashes();
+
+        PlaylistChangeSet[] results = new PlaylistChangeSet[export.getPlaylists().size()];
+        Queue<Supplier<CompletableFuture<Void>>> comparisons = new ConcurrentLinkedQueue<>();
+        int skipped = 0;
+        for (int i = 0; i < results.length; i++) {
+            CompactPlaylist playlist = export.getPlaylists().get(i);
+            String name = playlist.getName() == null ? "" : playlist.getName();
+            String nameKey = nameKey(name);
+            String pairKey = nameKey + '\u0000' + nameCounts.merge(nameKey, 1, Integer::sum);
+            long[] target = PlaylistDiff.hashes(playlist, referenceHashes);
+            long fingerprint = PlaylistDiff.fingerprint(target);
+            Deque<SpotifyService.PlaylistSnapshot> candidates = liveByName.get(nameKey);
+            SpotifyService.PlaylistSnapshot match = candidates == null ? null : candidates.poll();
+            String playlistId = match == null ? null : match.id();
+            String snapshotId = match == null ? null : match.snapshotId();
+            SyncedPlaylist current = new SyncedPlaylist(playlistId, snapshotId, fingerprint);
+
+            int slot = i;
+            if (match != null && snapshotId != null && previous != null && current.equals(previous.get(pairKey))) {
+                results[slot] = PlaylistChangeSet.unchanged(name, playlistId, snapshotId);
+                synced.put(pairKey, current);
+                skipped++;
+            } else if (match == null) {
+                results[slot] = PlaylistDiff.create(name, playlist);
+            } else {
+                comparisons.add(() -> service.fetchPlaylistItemUris(playlistId)
+                        .handle((uris, ex) -> {
+                            if (ex != null) {
+                                logger.warn("Could not fetch items of playlist {} for sync: {}", playlistId, ex.getMessage());
+                                results[slot] = PlaylistChangeSet.failed(name, playlistId, snapshotId, String.valueOf(ex.getMessage()));
+                                return null;
+                            }
+                            results[slot] = PlaylistDiff.diff(name, playlistId, snapshotId, uris, PlaylistDiff.hashes(uris), playlist, target);
+                            if (results[slot].status() == PlaylistChangeSet.Status.IN_SYNC) {
+                                synced.put(pairKey, current);
+                            }
+                            return null;
+                        }));
+            }
+        }
+
+        int compared = comparisons.size();
+        int skippedCount = skipped;
+        return ConcurrentLanes.run(comparisons, maxConcurrentPlaylists)
+                .thenApply(unused -> {
+                    lastSynced.put(userId, synced);
+                    logger.info("Planned sync of {} playlists: {} compared, {} unchanged", results.length, compared, skippedCount);
+                    return new SyncReport(List.of(results), compared, skippedCount);
+                });
+    }
+
+    private static String nameKey(String name) {
+        return name == null ? "" : name.strip().toLowerCase();
+    }
+}
@@ -0,0 +1,47 @@
+package com.music.transfer;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+// Writes every transferred playlist as one NDJSON line to <directory>/<jobId>.ndjson.
+// Meant for local runs and testing in place of the real destination service.
+public class FileTrackSink implements TrackSink {
+    private static final ObjectMapper JSON = new ObjectMapper().disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    private final Path directory;
+
+    public FileTrackSink(Path directory) throws IOException {
+        this.directory = Files.createDirectories(directory);
+    }
+
+    @Override
+    public CompletableFuture<Void> accept(PlaylistTracks playlist) {
+        Map<String, Object> line = new LinkedHashMap<>();
+        line.put("playlistId", playlist.playlistId());
+        line.put("name", playlist.name());
+        line.put("items", playlist.itemUris());
+
+        Path file = directory.resolve(playlist.jobId() + ".ndjson");
+        try {
+            byte[] bytes = JSON.writeValueAsBytes(line);
+            // one job's playlists complete concurrently; serialize appends to keep lines intact
+            synchronized (this) {
+                try (OutputStream out = Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                    out.write(bytes);
+                    out.write('\n');
+                }
+            }
+            return CompletableFuture.completedFuture(null);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+}
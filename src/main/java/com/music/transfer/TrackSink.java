@@ -0,0 +1,15 @@
+package com.music.transfer;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+// Destination of transferred playlists, e.g. the YouTube Music microservice or a local file for testing.
+// Implementations must be safe to call concurrently for different playlists and jobs.
+public interface TrackSink {
+
+    // A fetched playlist ready to be handed to the sink
+    record PlaylistTracks(String jobId, String playlistId, String name, List<String> itemUris) {
+    }
+
+    CompletableFuture<Void> accept(PlaylistTracks playlist);
+}
@@ -0,0 +1,92 @@
+package com.music.transfer;
+
+import com.music.http.HttpCaching;
+import com.music.spotify.SpotifyService;
+import com.music.spotify.SpotifySessionStore;
+import io.javalin.Javalin;
+import io.javalin.http.Context;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Map;
+
+public class TransferController {
+    private static final Logger logger = LoggerFactory.getLogger(TransferController.class);
+    private static final int MAX_PLAYLISTS_PER_JOB = 1000;
+    private final SpotifySessionStore sessions;
+    private final TransferJobEngine jobEngine;
+
+    // Body of POST /transfer-playlists
+    public record TransferRequest(List<String> playlistIds) {
+    }
+
+    public TransferController(SpotifySessionStore sessions, TransferJobEngine jobEngine) {
+        this.sessions = sessions;
+        this.jobEngine = jobEngine;
+    }
+
+    public void registerRoutes(Javalin app) {
+        app.post("/transfer-playlists", this::startTransfer);
+        app.get("/transfer-playlists/{jobId}", this::transferProgress);
+        app.post("/transfer-playlists/{jobId}/resume", this::resumeTransfer);
+    }
+
+    // Accept a batch of playlist IDs and return the job ID right away
+    public void startTransfer(Context ctx) {
+        SpotifyService spotifyService = sessions.find(ctx);
+        if (spotifyService == null || !spotifyService.isLoggedIn()) {
+            ctx.status(401).json(Map.of("error", "Not logged in"));
+            return;
+        }
+
+        TransferRequest request;
+        try {
+            request = ctx.bodyAsClass(TransferRequest.class);
+        } catch (RuntimeException e) {
+            ctx.status(400).json(Map.of("error", "Expected a JSON body with a playlistIds array"));
+            return;
+        }
+        List<String> playlistIds = request.playlistIds() == null ? List.of()
+                : request.playlistIds().stream().filter(id -> id != null && !id.isBlank()).distinct().toList();
+        if (playlistIds.isEmpty() || playlistIds.size() > MAX_PLAYLISTS_PER_JOB) {
+            ctx.status(400).json(Map.of("error", "Select between 1 and " + MAX_PLAYLISTS_PER_JOB + " playlists"));
+            return;
+        }
+
+        TransferJob job = jobEngine.submit(spotifyService, playlistIds);
+        ctx.status(202).json(Map.of("jobId", job.getId()));
+    }
+
+    // Poll a job's progress and throughput
+    public void transferProgress(Context ctx) {
+        TransferJob job = findOwnedJob(ctx, sessions.find(ctx));
+        if (job != null) {
+            HttpCaching.json(ctx, job.progress());  // a finished job's progress no longer changes, so polls get 304s
+        }
+    }
+
+    // Retry the playlists of a finished job that did not complete
+    public void resumeTransfer(Context ctx) {
+        SpotifyService spotifyService = sessions.find(ctx);
+        TransferJob job = findOwnedJob(ctx, spotifyService);
+        if (job == null) {
+            return;
+        }
+        if (!jobEngine.resume(job, spotifyService)) {
+            ctx.status(409).json(Map.of("error", "Job is still running"));
+            return;
+        }
+        logger.info("Resumed transfer job {}", job.getId());
+        ctx.status(202).json(job.progress());
+    }
+
+    private TransferJob findOwnedJob(Context ctx, SpotifyService spotifyService) {
+        TransferJob job = jobEngine.find(ctx.pathParam("jobId"));
+        if (job == null || spotifyService == null || !job.isOwnedBy(spotifyService)) {
+            ctx.status(404).json(Map.of("error", "Unknown transfer job"));
+            return null;
+        }
+        return job;
+    }
+}
@@ -0,0 +1,129 @@
+package com.music.transfer;
+
+import com.music.spotify.SpotifyService;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// State of one batch transfer. The set of completed playlists is the job's checkpoint: resuming a job only
+// processes the playlists that are not in it.
+public class TransferJob {
+    public enum Status {
+        QUEUED,
+        RUNNING,
+        COMPLETED,
+        COMPLETED_WITH_ERRORS
+    }
+
+    private final String id;
+    private final String ownerSessionId;
+    private final List<String> playlistIds;
+    private final Set<String> completedPlaylistIds = ConcurrentHashMap.newKeySet();
+    private final Map<String, String> failedPlaylists = new ConcurrentHashMap<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicLong transferredItems = new AtomicLong();
+    private final long createdAt = System.currentTimeMillis();
+    private volatile Status status = Status.QUEUED;
+    private volatile long startedAt;
+    private volatile long finishedAt;
+
+    TransferJob(String id, String ownerSessionId, List<String> playlistIds) {
+        this.id = id;
+        this.ownerSessionId = ownerSessionId;
+        this.playlistIds = List.copyOf(playlistIds);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    // Jobs are only visible to the session that started them, also after it has been restored into a new instance
+    public boolean isOwnedBy(SpotifyService service) {
+        return ownerSessionId.equals(service.getSessionId());
+    }
+
+    // True once every playlist of the last run has completed or failed; only finished jobs may be dropped
+    boolean isFinished() {
+        return status == Status.COMPLETED || status == Status.COMPLETED_WITH_ERRORS;
+    }
+
+    long getFinishedAt() {
+        return finishedAt;
+    }
+
+    // Playlists still to be transferred, i.e. everything after the checkpoint
+    List<String> remainingPlaylistIds() {
+        List<String> remaining = new ArrayList<>();
+        for (String playlistId : playlistIds) {
+            if (!completedPlaylistIds.contains(playlistId)) {
+                remaining.add(playlistId);
+            }
+        }
+        return remaining;
+    }
+
+    // Returns false if the job is already running
+    synchronized boolean start(int playlistCount) {
+        if (status == Status.RUNNING) {
+            return false;
+        }
+        failedPlaylists.clear();
+        pending.set(playlistCount);
+        startedAt = System.currentTimeMillis();
+        finishedAt = 0;
+        status = Status.RUNNING;
+        if (playlistCount == 0) {
+            finish();
+        }
+        return true;
+    }
+
+    void playlistCompleted(String playlistId, int itemCount) {
+        completedPlaylistIds.add(playlistId);
+        transferredItems.addAndGet(itemCount);
+        if (pending.decrementAndGet() == 0) {
+            finish();
+        }
+    }
+
+    void playlistFailed(String playlistId, String reason) {
+        failedPlaylists.put(playlistId, reason);
+        if (pending.decrementAndGet() == 0) {
+            finish();
+        }
+    }
+
+    private void finish() {
+        finishedAt = System.currentTimeMillis();
+        status = failedPlaylists.isEmpty() ? Status.COMPLETED : Status.COMPLETED_WITH_ERRORS;
+    }
+
+    // Progress and throughput snapshot for the polling endpoint
+    public Map<String, Object> progress() {
+        long end = finishedAt > 0 ? finishedAt : System.currentTimeMillis();
+        long elapsedMillis = startedAt > 0 ? Math.max(end - startedAt, 1) : 0;
+        long items = transferredItems.get();
+
+        Map<String, Object> progress = new LinkedHashMap<>();
+        progress.put("jobId", id);
+        progress.put("status", status);
+        progress.put("totalPlaylists", playlistIds.size());
+        progress.put("completedPlaylists", completedPlaylistIds.size());
+        progress.put("failedPlaylists", Map.copyOf(failedPlaylists));
+        progress.put("transferredItems", items);
+        progress.put("elapsedMillis", elapsedMillis);
+        progress.put("itemsPerSecond", elapsedMillis == 0 ? 0.0 : items * 1000.0 / elapsedMillis);
+        progress.put("createdAt", createdAt);
+        return progress;
+    }
+}
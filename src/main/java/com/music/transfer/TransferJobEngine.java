@@ -0,0 +1,256 @@
+package com.music.transfer;
+
+import com.music.spotify.SpotifyService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+// Runs batch playlist transfers in the background.
+// Submitting a job returns immediately; each playlist is then fetched (all pages) and handed to the TrackSink.
+// Work is fully asynchronous and at most maxConcurrentPlaylists playlists are in progress across all jobs, so many
+// users can run jobs at once without tying up threads or holding many large playlists in memory. Each job queues its
+// own playlists and runs at most maxPlaylistsPerJob of them at once; jobs with waiting playlists take turns for the
+// free permits, so one large job cannot hold back the others. Permits are handed out in a loop rather than from
+// completion callbacks, so a long run of playlists that complete synchronously cannot overflow the stack.
+// An attempt that has not finished within attemptTimeout counts as failed. A failed playlist goes back to its job's
+// queue after a backoff; once retries are exhausted it is recorded as failed and the job can be resumed.
+// Jobs are kept for a day after they finish and only finished jobs are dropped to make room; a job holds its
+// owner's session ID, not the SpotifyService, which is only referenced while the job runs.
+public class TransferJobEngine {
+    private static final Logger logger = LoggerFactory.getLogger(TransferJobEngine.class);
+    public static final int DEFAULT_MAX_CONCURRENT_PLAYLISTS = 8;
+    public static final int DEFAULT_MAX_PLAYLISTS_PER_JOB = 4;
+    private static final int MAX_ATTEMPTS = 3;
+    private static final Duration DEFAULT_ATTEMPT_TIMEOUT = Duration.ofMinutes(5);
+    private static final Duration DEFAULT_RETRY_BACKOFF = Duration.ofSeconds(2);
+    private static final int DEFAULT_MAX_RETAINED_JOBS = 10_000;
+    private static final long RETENTION_MILLIS = Duration.ofHours(24).toMillis();
+
+    private final TrackSink sink;
+    private final int maxConcurrentPlaylists;
+    private final int maxPlaylistsPerJob;
+    private final int maxRetainedJobs;
+    private final long attemptTimeoutMillis;
+    private final long retryBackoffMillis;
+    private final Map<String, TransferJob> jobs = new ConcurrentHashMap<>();
+
+    // Guarded by `this`
+    private final ArrayDeque<JobRun> ready = new ArrayDeque<>();  // runs that may start a playlist, in turn order
+    private int running;
+    private boolean dispatching;
+
+    // One run of a job: its queue of playlist attempts and how many of them are in progress. Guarded by the engine.
+    private static final class JobRun {
+        private final TransferJob job;
+        private final SpotifyService service;
+        private final ArrayDeque<Attempt> waiting = new ArrayDeque<>();
+        private int inProgress;
+        private boolean ready;
+
+        private JobRun(TransferJob job, SpotifyService service) {
+            this.job = job;
+            this.service = service;
+        }
+    }
+
+    private record Attempt(String playlistId, int number) {
+    }
+
+    public TransferJobEngine(TrackSink sink) {
+        this(sink, DEFAULT_MAX_CONCURRENT_PLAYLISTS);
+    }
+
+    public TransferJobEngine(TrackSink sink, int maxConcurrentPlaylists) {
+        this(sink, maxConcurrentPlaylists, DEFAULT_MAX_PLAYLISTS_PER_JOB);
+    }
+
+    public TransferJobEngine(TrackSink sink, int maxConcurrentPlaylists, int maxPlaylistsPerJob) {
+        this(sink, maxConcurrentPlaylists, maxPlaylistsPerJob, DEFAULT_MAX_RETAINED_JOBS, DEFAULT_ATTEMPT_TIMEOUT, DEFAULT_RETRY_BACKOFF);
+    }
+
+    TransferJobEngine(TrackSink sink, int maxConcurrentPlaylists, int maxPlaylistsPerJob, int maxRetainedJobs,
+                      Duration attemptTimeout, Duration retryBackoff) {
+        if (maxConcurrentPlaylists < 1 || maxPlaylistsPerJob < 1) {
+            throw new IllegalArgumentException("maxConcurrentPlaylists and maxPlaylistsPerJob must be at least 1");
+        }
+        this.sink = sink;
+        this.maxConcurrentPlaylists = maxConcurrentPlaylists;
+        this.maxPlaylistsPerJob = maxPlaylistsPerJob;
+        this.maxRetainedJobs = maxRetainedJobs;
+        this.attemptTimeoutMillis = attemptTimeout.toMillis();
+        this.retryBackoffMillis = retryBackoff.toMillis();
+    }
+
+    public TransferJob submit(SpotifyService service, List<String> playlistIds) {
+        TransferJob job = new TransferJob(UUID.randomUUID().toString(), service.getSessionId(), playlistIds);
+        if (jobs.size() >= maxRetainedJobs) {
+            dropFinishedJobs();
+        }
+        jobs.put(job.getId(), job);
+        run(job, service);
+        logger.info("Started transfer job {} for {} playlists", job.getId(), playlistIds.size());
+        return job;
+    }
+
+    // Re-runs the playlists of a finished job that are not checkpointed as completed, with the owner's current
+    // service; false if it is still running
+    public boolean resume(TransferJob job, SpotifyService service) {
+        return run(job, service);
+    }
+
+    public TransferJob find(String jobId) {
+        TransferJob job = jobs.get(jobId);
+        if (job != null && isExpired(job, System.currentTimeMillis())) {
+            drop(job);
+            return null;
+        }
+        return job;
+    }
+
+    public int size() {
+        return jobs.size();
+    }
+
+    private boolean isExpired(TransferJob job, long now) {
+        return job.isFinished() && now - job.getFinishedAt() >= RETENTION_MILLIS;
+    }
+
+    // Drops expired jobs, then the longest finished ones until there is room; running jobs are never dropped
+    private void dropFinishedJobs() {
+        long now = System.currentTimeMillis();
+        jobs.values().stream().filter(job -> isExpired(job, now)).forEach(this::drop);
+        int excess = jobs.size() - maxRetainedJobs + 1;
+        if (excess > 0) {
+            jobs.values().stream()
+                    .filter(TransferJob::isFinished)
+                    .sorted(Comparator.comparingLong(TransferJob::getFinishedAt))
+                    .limit(excess)
+                    .forEach(this::drop);
+        }
+    }
+
+    private void drop(TransferJob job) {
+        jobs.remove(job.getId(), job);
+        if (!job.isFinished()) {
+            jobs.putIfAbsent(job.getId(), job);  // resumed while it was being dropped
+        }
+    }
+
+    private boolean run(TransferJob job, SpotifyService service) {
+        List<String> remaining = job.remainingPlaylistIds();
+        if (!job.start(remaining.size())) {
+            return false;
+        }
+        JobRun run = new JobRun(job, service);
+        synchronized (this) {
+            for (String playlistId : remaining) {
+                run.waiting.addLast(new Attempt(playlistId, 1));
+            }
+            makeReady(run);
+        }
+        dispatch();
+        return true;
+    }
+
+    // Starts playlists while permits are free. Only one thread dispatches at a time; a playlist that completes while
+    // it does, even synchronously inside start(), just frees its permit and the loop picks up the next one.
+    private void dispatch() {
+        synchronized (this) {
+            if (dispatching) {
+                return;
+            }
+            dispatching = true;
+        }
+        while (true) {
+            JobRun run;
+            Attempt attempt;
+            synchronized (this) {
+                run = running < maxConcurrentPlaylists ? ready.pollFirst() : null;
+                if (run == null) {
+                    dispatching = false;
+                    return;
+                }
+                run.ready = false;
+                attempt = run.waiting.pollFirst();
+                run.inProgress++;
+                running++;
+                makeReady(run);  // back to the end of the line, behind the other jobs
+            }
+            start(run, attempt);
+        }
+    }
+
+    // Queues the run for a turn if it has waiting playlists and a free lane
+    private void makeReady(JobRun run) {
+        if (!run.ready && !run.waiting.isEmpty() && run.inProgress < maxPlaylistsPerJob) {
+            run.ready = true;
+            ready.addLast(run);
+        }
+    }
+
+    private void start(JobRun run, Attempt attempt) {
+        CompletableFuture<Void> transfer;
+        try {
+            transfer = transferPlaylist(run, attempt);
+        } catch (RuntimeException e) {
+            logger.error("Transfer of playlist {} in job {} could not start", attempt.playlistId(), run.job.getId(), e);
+            run.job.playlistFailed(attempt.playlistId(), String.valueOf(e.getMessage()));
+            transfer = CompletableFuture.completedFuture(null);
+        }
+        transfer.whenComplete((unused, ex) -> {
+            synchronized (this) {
+                running--;
+                run.inProgress--;
+                makeReady(run);
+            }
+            dispatch();
+        });
+    }
+
+    private CompletableFuture<Void> transferPlaylist(JobRun run, Attempt attempt) {
+        TransferJob job = run.job;
+        SpotifyService service = run.service;
+        String playlistId = attempt.playlistId();
+        CompletableFuture<List<String>> uris;
+        try {
+            uris = service.fetchPlaylistItemUris(playlistId);
+        } catch (RuntimeException e) {
+            uris = CompletableFuture.failedFuture(e);
+        }
+        return uris
+                .thenCompose(items -> sink.accept(new TrackSink.PlaylistTracks(
+                        job.getId(), playlistId, service.findCachedPlaylistName(playlistId), items))
+                        .thenApply(unused -> items.size()))
+                .orTimeout(attemptTimeoutMillis, TimeUnit.MILLISECONDS)
+                .handle((itemCount, ex) -> {
+                    if (ex == null) {
+                        job.playlistCompleted(playlistId, itemCount);
+                    } else if (attempt.number() < MAX_ATTEMPTS) {
+                        long delay = retryBackoffMillis << (attempt.number() - 1);
+                        logger.warn("Transfer of playlist {} in job {} failed (attempt {}), retrying in {} ms: {}",
+                                playlistId, job.getId(), attempt.number(), delay, String.valueOf(ex.getMessage()));
+                        // The permit is released during the backoff; the retry waits for its job's turn like any other
+                        CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS).execute(() -> {
+                            synchronized (this) {
+                                run.waiting.addFirst(new Attempt(playlistId, attempt.number() + 1));
+                                makeReady(run);
+                            }
+                            dispatch();
+                        });
+                    } else {
+                        logger.error("Transfer of playlist {} in job {} failed after {} attempts", playlistId, job.getId(), attempt.number(), ex);
+                        job.playlistFailed(playlistId, String.valueOf(ex.getMessage()));
+                    }
+                    return null;
+                });
+    }
+}
@@ -0,0 +1,165 @@
+package fileProcessor;
+
+import org.apache.commons.io.FilenameUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Parses many CSV/JSON exports at once, e.g. a whole library migration directory.
+ * Files are parsed in parallel on a bounded {@link ForkJoinPool} with the same logic as
+ * {@link FileProcessor}; a file that fails is recorded in the result's errors and does not stop
+ * the rest of the batch. Playlists are merged in the order the files were given.
+ */
+public class BulkFileProcessor {
+    private static final Logger logger = Logger.getLogger(BulkFileProcessor.class.getName());
+    private final int parallelism;
+    private final ExportReader reader;
+
+    /**
+     * Class Constructor, using one worker per available core
+     */
+    public BulkFileProcessor() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Class Constructor
+     * @param parallelism maximum number of files parsed at the same time
+     */
+    public BulkFileProcessor(int parallelism) {
+        this(parallelism, FileProcessor::readFile);
+    }
+
+    /**
+     * Class Constructor with a custom reader for single files
+     * @param parallelism maximum number of files parsed at the same time
+     * @param reader reads the playlists of one export
+     */
+    BulkFileProcessor(int parallelism, ExportReader reader) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        }
+        this.parallelism = parallelism;
+        this.reader = reader;
+    }
+
+    /**
+     * Parses every csv and json file below a directory, in path order
+     *
+     * @param directoryPath directory containing exports
+     * @return merged playlists and per-file errors
+     * @throws IOException if the directory cannot be listed
+     */
+    public Result processDirectory(String directoryPath) throws IOException {
+        List<String> filePaths;
+        try (Stream<Path> paths = Files.walk(Path.of(directoryPath))) {
+            filePaths = paths.filter(Files::isRegularFile)
+                    .map(Path::toString)
+                    .filter(path -> FilenameUtils.isExtension(path.toLowerCase(), "csv", "json"))
+                    .sorted()
+                    .toList();
+        }
+        return processFiles(filePaths);
+    }
+
+    /**
+     * Parses the given files in parallel
+     *
+     * @param filePaths paths of csv or json exports
+     * @return merged playlists and per-file errors
+     */
+    public Result processFiles(List<String> filePaths) {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            List<FileResult> fileResults = pool.submit(() -> filePaths.parallelStream()
+                    .map(this::parse)
+                    .toList()
+            ).get();
+            return merge(fileResults);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while processing files", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Unexpected failure while processing files", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private FileResult parse(String filePath) {
+        try {
+            return new FileResult(filePath, reader.read(filePath), null);
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Error processing file: " + filePath, e);
+            return new FileResult(filePath, List.of(), e);
+        }
+    }
+
+    private static Result merge(List<FileResult> fileResults) {
+        int playlists = 0;
+        for (FileResult fileResult : fileResults) {
+            playlists += fileResult.data().size();
+        }
+        List<List<String>> data = new ArrayList<>(playlists);
+        Map<String, Exception> errors = new LinkedHashMap<>();
+        for (FileResult fileResult : fileResults) {
+            data.addAll(fileResult.data());
+            if (fileResult.error() != null) {
+                errors.put(fileResult.filePath(), fileResult.error());
+            }
+        }
+        return new Result(data, errors);
+    }
+
+    /**
+     * Reads the playlists of a single export, {@link FileProcessor#readFile(String)} by default
+     */
+    @FunctionalInterface
+    interface ExportReader {
+        List<List<String>> read(String filePath) throws IOException;
+    }
+
+    private record FileResult(String filePath, List<List<String>> data, Exception error) {
+    }
+
+    /**
+     * Outcome of a bulk run
+     */
+    public static class Result {
+        private final List<List<String>> data;
+        private final Map<String, Exception> errors;
+
+        private Result(List<List<String>> data, Map<String, Exception> errors) {
+            this.data = data;
+            this.errors = Collections.unmodifiableMap(errors);
+        }
+
+        /**
+         * Getter for data variable
+         * @return playlists of every file that parsed, in the same format as {@link FileProcessor#getData()}
+         */
+        public List<List<String>> getData() {
+            return data;
+        }
+
+        /**
+         * Getter for errors variable
+         * @return failure per file path, in input order
+         */
+        public Map<String, Exception> getErrors() {
+            return errors;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package fileProcessor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Typed, memory-compact alternative to the {@code List<List<String>>} produced by
+ * {@link FileProcessor#getData()}. All playlists share one {@link TrackDictionary}, so a track that
+ * appears in many playlists is stored once and each occurrence costs a single int.
+ * Conversion in both directions is lossless.
+ */
+public class CompactLibrary {
+    private final TrackDictionary dictionary = new TrackDictionary();
+    private final List<CompactPlaylist> playlists = new ArrayList<>();
+
+    /**
+     * Builds a library from the [name, description, uris...] format
+     *
+     * @param data playlists as returned by {@link FileProcessor#getData()}
+     * @return the compact library
+     */
+    public static CompactLibrary fromLegacy(List<List<String>> data) {
+        CompactLibrary library = new CompactLibrary();
+        if (data != null) {
+            for (List<String> playlist : data) {
+                library.add(playlist);
+            }
+        }
+        return library;
+    }
+
+    /**
+     * Adds one playlist in the [name, description, uris...] format
+     *
+     * @param playlistInfo name, description and item URIs
+     * @return the compact playlist
+     */
+    public CompactPlaylist add(List<String> playlistInfo) {
+        String name = playlistInfo.size() > 0 ? playlistInfo.get(0) : null;
+        String description = playlistInfo.size() > 1 ? playlistInfo.get(1) : null;
+        int count = Math.max(playlistInfo.size() - 2, 0);
+        int[] items = new int[count];
+        for (int i = 0; i < count; i++) {
+            items[i] = dictionary.add(playlistInfo.get(i + 2));
+        }
+        CompactPlaylist playlist = new CompactPlaylist(name, description, items, dictionary);
+        playlists.add(playlist);
+        return playlist;
+    }
+
+    /**
+     * Converts back to the format of {@link FileProcessor#getData()}
+     *
+     * @return playlists as lists of name, description and URIs
+     */
+    public List<List<String>> toLegacy() {
+        List<List<String>> data = new ArrayList<>(playlists.size());
+        for (CompactPlaylist playlist : playlists) {
+            data.add(playlist.toList());
+        }
+        return data;
+    }
+
+    /**
+     * Getter for playlists variable
+     * @return the playlists in insertion order
+     */
+    public List<CompactPlaylist> getPlaylists() {
+        return Collections.unmodifiableList(playlists);
+    }
+
+    /**
+     * Getter for dictionary variable
+     * @return dictionary shared by every playlist
+     */
+    public TrackDictionary getDictionary() {
+        return dictionary;
+    }
+}
@@ -0,0 +1,75 @@
+package fileProcessor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A playlist whose items are stored as int references into a shared {@link TrackDictionary}
+ */
+public class CompactPlaylist {
+    private final String name;
+    private final String description;
+    private final int[] items;
+    private final TrackDictionary dictionary;
+
+    CompactPlaylist(String name, String description, int[] items, TrackDictionary dictionary) {
+        this.name = name;
+        this.description = description;
+        this.items = items;
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * Getter for name variable
+     * @return name of the playlist
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Getter for description variable
+     * @return description, null for CSV imports
+     */
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * @return number of tracks, local tracks and episodes
+     */
+    public int size() {
+        return items.length;
+    }
+
+    /**
+     * @param index position in the playlist
+     * @return dictionary reference of the item; equal references mean the same URI
+     */
+    public int itemReference(int index) {
+        return items[index];
+    }
+
+    /**
+     * @param index position in the playlist
+     * @return URI of the item
+     */
+    public String uriAt(int index) {
+        return dictionary.uri(items[index]);
+    }
+
+    /**
+     * Converts back to the [name, description, uris...] layout of {@link FileProcessor#getData()}
+     *
+     * @return the playlist as a list
+     */
+    public List<String> toList() {
+        List<String> playlistInfo = new ArrayList<>(items.length + 2);
+        playlistInfo.add(name);
+        playlistInfo.add(description);
+        for (int item : items) {
+            playlistInfo.add(dictionary.uri(item));
+        }
+        return playlistInfo;
+    }
+}
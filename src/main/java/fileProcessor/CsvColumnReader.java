@@ -0,0 +1,213 @@
+package fileProcessor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Extracts a single named column from a CSV file.
+ * The file is read through a {@link FileChannel} in large chunks and scanned byte by byte; only the
+ * bytes of the wanted column are copied and decoded, every other column is skipped without being
+ * materialized. Quoted fields, escaped quotes ("") and line breaks inside quotes are handled as in
+ * RFC 4180. Empty cells are skipped.
+ */
+public class CsvColumnReader {
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final byte QUOTE = '"';
+    private static final byte CR = '\r';
+    private static final byte LF = '\n';
+
+    private final byte delimiter;
+
+    /**
+     * Class Constructor
+     * @param delimiter single-byte field separator, e.g. ','
+     */
+    public CsvColumnReader(char delimiter) {
+        if (delimiter > 0x7F || delimiter == '"' || delimiter == '\r' || delimiter == '\n') {
+            throw new IllegalArgumentException("Unsupported CSV delimiter: " + delimiter);
+        }
+        this.delimiter = (byte) delimiter;
+    }
+
+    /**
+     * Reads every non-empty value of a column
+     *
+     * @param filePath   CSV file with a header row
+     * @param columnName header of the column to extract
+     * @return the column's values in file order
+     * @throws IOException if the file cannot be read or has no such column
+     */
+    public List<String> readColumn(Path filePath, String columnName) throws IOException {
+        List<String> values = new ArrayList<>();
+        readColumn(filePath, columnName, values::add);
+        return values;
+    }
+
+    /**
+     * Streams every non-empty value of a column to a consumer
+     *
+     * @param filePath   CSV file with a header row
+     * @param columnName header of the column to extract
+     * @param consumer   receives each value in file order
+     * @throws IOException if the file cannot be read or has no such column
+     */
+    public void readColumn(Path filePath, String columnName, Consumer<String> consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            new Scanner(columnName, consumer).scan(channel);
+        }
+    }
+
+    /**
+     * Parser state for one pass over a file. The header row is collected in full to locate the
+     * column; afterwards only the target column's bytes are buffered.
+     */
+    private final class Scanner {
+        private final String columnName;
+        private final Consumer<String> consumer;
+        private final List<String> header = new ArrayList<>();
+
+        private byte[] field = new byte[128];
+        private int fieldLength;
+        private int column;
+        private int targetColumn = -1;
+        private boolean inHeader = true;
+        private boolean inQuotes;
+        private boolean quotePending;  // saw a quote inside a quoted field: closing quote or first half of ""
+        private boolean atFieldStart = true;  // no byte of the current field seen yet, so a quote opens it
+        private boolean skipLf;
+        private boolean firstByte = true;
+        private int bomBytesSeen;
+
+        private Scanner(String columnName, Consumer<String> consumer) {
+            this.columnName = columnName;
+            this.consumer = consumer;
+        }
+
+        private void scan(FileChannel channel) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(BUFFER_SIZE, Math.max(channel.size(), 16)));
+            byte[] bytes = buffer.array();
+            int read;
+            while ((read = channel.read(buffer)) != -1) {
+                if (read == 0) {
+                    continue;
+                }
+                int start = firstByte ? skipByteOrderMark(bytes, buffer.position()) : 0;
+                firstByte = false;
+                scanChunk(bytes, start, buffer.position());
+                buffer.clear();
+                if (!inHeader && targetColumn < 0) {
+                    break;  // header has been read and lacks the column
+                }
+            }
+            endRecord();
+            if (targetColumn < 0) {
+                throw new IOException("Column \"" + columnName + "\" not found in CSV header");
+            }
+        }
+
+        private int skipByteOrderMark(byte[] bytes, int length) {
+            byte[] bom = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+            while (bomBytesSeen < bom.length && bomBytesSeen < length && bytes[bomBytesSeen] == bom[bomBytesSeen]) {
+                bomBytesSeen++;
+            }
+            return bomBytesSeen == bom.length ? bom.length : 0;
+        }
+
+        private void scanChunk(byte[] bytes, int from, int to) {
+            boolean capture = inHeader || column == targetColumn;
+            for (int i = from; i < to; i++) {
+                byte b = bytes[i];
+
+                if (skipLf) {
+                    skipLf = false;
+                    if (b == LF) {
+                        continue;
+                    }
+                }
+
+                if (inQuotes) {
+                    if (quotePending) {
+                        quotePending = false;
+                        if (b == QUOTE) {
+                            if (capture) {
+                                append(b);  // "" inside quotes is a literal quote
+                            }
+                            continue;
+                        }
+                        inQuotes = false;  // the pending quote closed the field; handle b below
+                    } else if (b == QUOTE) {
+                        quotePending = true;
+                        continue;
+                    } else {
+                        if (capture) {
+                            append(b);
+                        }
+                        continue;
+                    }
+                }
+
+                if (b == delimiter) {
+                    endField();
+                    capture = inHeader || column == targetColumn;
+                } else if (b == LF || b == CR) {
+                    skipLf = b == CR;
+                    endRecord();
+                    capture = inHeader || column == targetColumn;
+                } else if (b == QUOTE && atFieldStart) {
+                    inQuotes = true;
+                    atFieldStart = false;
+                } else {
+                    atFieldStart = false;  // a quote from here on is literal, e.g. 12" Single
+                    if (capture) {
+                        append(b);
+                    }
+                }
+            }
+        }
+
+        private void append(byte b) {
+            if (fieldLength == field.length) {
+                field = Arrays.copyOf(field, field.length * 2);
+            }
+            field[fieldLength++] = b;
+        }
+
+        private void endField() {
+            if (inHeader) {
+                header.add(new String(field, 0, fieldLength, StandardCharsets.UTF_8));
+            } else if (column == targetColumn && fieldLength > 0) {
+                consumer.accept(new String(field, 0, fieldLength, StandardCharsets.UTF_8));
+            }
+            fieldLength = 0;
+            atFieldStart = true;
+            column++;
+        }
+
+        private void endRecord() {
+            if (inQuotes && quotePending) {
+                inQuotes = false;
+                quotePending = false;
+            }
+            boolean emptyLine = column == 0 && fieldLength == 0;
+            if (!emptyLine) {
+                endField();
+            }
+            if (inHeader && !emptyLine) {
+                targetColumn = header.indexOf(columnName);
+                inHeader = false;
+                header.clear();
+            }
+            column = 0;
+            fieldLength = 0;
+            atFieldStart = true;
+        }
+    }
+}
@@ -1,14 +1,12 @@
 package fileProcessor;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.JsonNode;
-import joinery.DataFrame;
 import org.apache.commons.io.FilenameUtils;
 
 import java.io.*;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Objects;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -35,96 +33,93 @@ public class FileProcessor {
      * @return A list within a list containing details for the playlists
      */
     private List<List<String>> processFile(String filePath) {
-        String extension = FilenameUtils.getExtension(filePath);
-        return switch (extension.toLowerCase()) {
-            case "json" -> processJsonFile(filePath);
-            case "csv" -> processCsvFile(filePath);
-            default -> {
-                logger.log(Level.SEVERE, filePath + "is neither a csv or json file");
-                yield new ArrayList<>();
-            }
-        };
+        try {
+            return readFile(filePath);
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Error processing file: " + filePath, e);
+            return new ArrayList<>();
+        }
     }
 
     /**
-     * Gets data from Json file
+     * Parses a CSV or JSON export, reporting failures to the caller instead of logging them.
+     * Shared by the single-file constructor and {@link BulkFileProcessor}.
      *
      * @param filePath path for file
      * @return A list within a list containing details for the playlists
+     * @throws IOException if the file cannot be read or is neither a csv or json file
      */
-    private List<List<String>> processJsonFile(String filePath) {
-        List<List<String>> jsonData = new ArrayList<>();
-        try {
-            ObjectMapper objectMapper = new ObjectMapper();
-            JsonNode rootNode = objectMapper.readTree(new File(filePath));
-
-            JsonNode playlistsNode = rootNode.get("playlists");
-            if (playlistsNode != null && playlistsNode.isArray()) {
-                for (JsonNode playlistNode : playlistsNode) {
-                    List<String> playlistInfo = new ArrayList<>();
-                    playlistInfo.add(0, playlistNode.get("name").asText());  // add name of playlist
-                    playlistInfo.add(1, playlistNode.get("description").asText());  // add description
+    static List<List<String>> readFile(String filePath) throws IOException {
+        List<List<String>> data = new ArrayList<>();
+        forEachPlaylist(filePath, data::add);
+        return data;
+    }
 
-                    JsonNode itemsNode = playlistNode.get("items");
-                    if (itemsNode != null && itemsNode.isArray()) {
-                        for (JsonNode itemNode : itemsNode) {
-                            JsonNode trackNode = itemNode.get("track");
-                            JsonNode localTrackNode = itemNode.get("localTrack");
-                            JsonNode episodeNode = itemNode.get("episode");
+    /**
+     * Parses a CSV or JSON export straight into a {@link CompactLibrary}, so the
+     * {@code List<List<String>>} of the whole export is never built.
+     *
+     * @param filePath path for file
+     * @return the compact library
+     * @throws IOException if the file cannot be read or is neither a csv or json file
+     */
+    public static CompactLibrary readCompact(String filePath) throws IOException {
+        CompactLibrary library = new CompactLibrary();
+        forEachPlaylist(filePath, library::add);
+        return library;
+    }
 
-                            // the item could either have a spotify track, podcast episode or local file track
-                            if (!Objects.equals(trackNode.asText(), "null")) {
-                                String trackUri = trackNode.get("trackUri").asText();
-                                playlistInfo.add(trackUri);
-                            } else if (!Objects.equals(localTrackNode.asText(), "null")) {
-                                String uri = localTrackNode.get("uri").asText();
-                                playlistInfo.add(uri);
-                            } else if (!Objects.equals(episodeNode.asText(), "null")) {
-                                String episodeUri = episodeNode.get("episodeUri").asText();
-                                playlistInfo.add(episodeUri);
-                            }
-                        }
-                    }
-                    // add playlist list into spotifyURIs list collection
-                    jsonData.add(playlistInfo);
-                }
+    /**
+     * Streams the playlists of a CSV or JSON export to the consumer as they are read. A JSON export holds
+     * one playlist in memory at a time; a CSV export is a single playlist.
+     *
+     * @param filePath path for file
+     * @param consumer receives each playlist in the [name, description, uris...] format
+     * @throws IOException if the file cannot be read or is neither a csv or json file
+     */
+    public static void forEachPlaylist(String filePath, Consumer<List<String>> consumer) throws IOException {
+        String extension = FilenameUtils.getExtension(filePath);
+        ImportMetrics metrics = switch (extension.toLowerCase()) {
+            case "json" -> ImportMetrics.JSON;
+            case "csv" -> ImportMetrics.CSV;
+            default -> throw new IOException(filePath + " is neither a csv or json file");
+        };
+        long start = System.nanoTime();
+        long[] items = {0};
+        Consumer<List<String>> counting = playlist -> {
+            items[0] += Math.max(0, playlist.size() - 2);
+            consumer.accept(playlist);
+        };
+        try {
+            if (metrics == ImportMetrics.JSON) {
+                JsonPlaylistReader.forEachPlaylist(new File(filePath), counting);
+            } else {
+                counting.accept(readCsvPlaylist(filePath));
             }
-        } catch (IOException e) {
-            logger.log(Level.SEVERE, "Error processing JSON file: " + filePath, e);
+            metrics.imported(start, new File(filePath).length(), items[0]);
+        } catch (IOException | RuntimeException e) {
+            metrics.failed();
+            throw e;
         }
-        return jsonData;
     }
 
-
     /**
-     * Gets data from CSV file
+     * Gets data from CSV file. The playlist is named after the file, with underscores as spaces.
      *
      * @param filePath path for file
-     * @return A list within a list containing details for the playlists
+     * @return the playlist's name, a null description and its track URIs
+     * @throws IOException if the file cannot be read or has no "Track URI" column
      */
-    private List<List<String>> processCsvFile(String filePath) {
-        List<List<String>> csvData = new ArrayList<>();
-        String playlistName = FilenameUtils.removeExtension(filePath)
-                .split("/", 2)[1]  // remove everything before /
+    private static List<String> readCsvPlaylist(String filePath) throws IOException {
+        String playlistName = FilenameUtils.getBaseName(filePath)  // remove directories and extension
                 .replace("_", " ");
-        try {
-            DataFrame<Object> df = DataFrame.readCsv(new File(filePath).toString(), ",");
-            List<Object> trackURIs = df.col("Track URI");  // returns a list of only track URIs
+        List<String> trackURIs = new CsvColumnReader(',').readColumn(Path.of(filePath), "Track URI");
 
-            // Convert List<Object> to List<String>
-            List<String> trackURIStrings = new ArrayList<>();
-            trackURIStrings.add(0, playlistName);  // add name of the playlist
-            trackURIStrings.add(1, null); // add null as description
-            for (Object obj : trackURIs) {
-                if (obj != null) {
-                    trackURIStrings.add(obj.toString());
-                }
-            }
-            csvData.add(trackURIStrings);
-        } catch (IOException e) {
-            logger.log(Level.SEVERE, "Error processing CSV file: " + filePath, e);
-        }
-        return csvData;
+        List<String> trackURIStrings = new ArrayList<>(trackURIs.size() + 2);
+        trackURIStrings.add(0, playlistName);  // add name of the playlist
+        trackURIStrings.add(1, null); // add null as description
+        trackURIStrings.addAll(trackURIs);
+        return trackURIStrings;
     }
 
     /**
@@ -134,4 +129,12 @@ public class FileProcessor {
     public List<List<String>> getData() {
         return data;
     }
+
+    /**
+     * Converts the data into a dictionary-encoded {@link CompactLibrary}
+     * @return compact copy of data
+     */
+    public CompactLibrary getCompactData() {
+        return CompactLibrary.fromLegacy(data);
+    }
 }
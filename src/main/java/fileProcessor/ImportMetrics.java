@@ -0,0 +1,52 @@
+package fileProcessor;
+
+import com.music.metrics.Counter;
+import com.music.metrics.LatencyHistogram;
+import com.music.metrics.MetricsRegistry;
+
+/**
+ * Import throughput of {@link FileProcessor#forEachPlaylist} for one export format.
+ * Tracks and bytes are counted so that dashboards can show tracks or megabytes per second
+ * next to the per-file import latency.
+ */
+final class ImportMetrics {
+    static final ImportMetrics JSON = new ImportMetrics("json");
+    static final ImportMetrics CSV = new ImportMetrics("csv");
+
+    private final LatencyHistogram duration;
+    private final Counter files;
+    private final Counter failures;
+    private final Counter tracks;
+    private final Counter bytes;
+
+    private ImportMetrics(String format) {
+        MetricsRegistry registry = MetricsRegistry.getDefault();
+        duration = registry.histogram("fileprocessor_import_duration_seconds",
+                "Time to import one library export, by format", "format", format);
+        files = registry.counter("fileprocessor_imported_files_total", "Library exports imported, by format", "format", format);
+        failures = registry.counter("fileprocessor_import_failures_total", "Library exports that could not be imported, by format", "format", format);
+        tracks = registry.counter("fileprocessor_imported_tracks_total", "Track, episode and local file entries imported, by format", "format", format);
+        bytes = registry.counter("fileprocessor_imported_bytes_total", "Size of the library exports imported, by format", "format", format);
+    }
+
+    /**
+     * Records a successful import
+     *
+     * @param startNanos {@link System#nanoTime()} when the import started
+     * @param fileSize   size of the export in bytes
+     * @param items      track, episode and local file entries imported
+     */
+    void imported(long startNanos, long fileSize, long items) {
+        duration.recordNanos(System.nanoTime() - startNanos);
+        files.increment();
+        bytes.add(fileSize);
+        tracks.add(items);
+    }
+
+    /**
+     * Records an import that failed
+     */
+    void failed() {
+        failures.increment();
+    }
+}
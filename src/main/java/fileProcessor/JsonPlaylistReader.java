@@ -0,0 +1,228 @@
+package fileProcessor;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+/**
+ * Streams playlists out of a Spotify "Your Library" JSON export with Jackson's token stream.
+ * Only the playlist currently being read is held in memory, so peak heap does not grow with the
+ * size of the export. Each playlist uses the same layout as {@link FileProcessor#getData()}:
+ * index 0 is the name, index 1 the description and every later entry a track, local track or
+ * episode URI.
+ */
+public class JsonPlaylistReader implements Iterator<List<String>>, Closeable {
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final JsonParser parser;
+    private List<String> nextPlaylist;
+    private boolean exhausted;
+
+    /**
+     * Opens the export and positions the reader at the start of its "playlists" array
+     *
+     * @param file JSON export
+     * @throws IOException if the file cannot be opened or is not a JSON object
+     */
+    public JsonPlaylistReader(File file) throws IOException {
+        parser = JSON_FACTORY.createParser(file);
+        try {
+            exhausted = !moveToPlaylistsArray();
+        } catch (IOException e) {
+            parser.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads every playlist of a JSON export, handing them to the consumer one at a time
+     *
+     * @param file     JSON export
+     * @param consumer receives each playlist as soon as it has been read
+     * @throws IOException if the file cannot be read or parsed
+     */
+    public static void forEachPlaylist(File file, Consumer<List<String>> consumer) throws IOException {
+        try (JsonPlaylistReader reader = new JsonPlaylistReader(file)) {
+            while (reader.hasNext()) {
+                consumer.accept(reader.next());
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (nextPlaylist == null && !exhausted) {
+            try {
+                nextPlaylist = readPlaylist();
+            } catch (IOException e) {
+                exhausted = true;
+                throw new UncheckedIOException(e);
+            }
+            exhausted = nextPlaylist == null;
+        }
+        return nextPlaylist != null;
+    }
+
+    @Override
+    public List<String> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        List<String> playlist = nextPlaylist;
+        nextPlaylist = null;
+        return playlist;
+    }
+
+    @Override
+    public void close() throws IOException {
+        parser.close();
+    }
+
+    /**
+     * Skips the root object's fields until the "playlists" array is reached
+     *
+     * @return true if the export contains a playlists array
+     */
+    private boolean moveToPlaylistsArray() throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new IOException("Expected a JSON object at the root of the export");
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if ("playlists".equals(field) && value == JsonToken.START_ARRAY) {
+                return true;
+            }
+            parser.skipChildren();
+        }
+        return false;
+    }
+
+    /**
+     * Reads the next element of the playlists array
+     *
+     * @return the playlist, or null once the array has ended
+     */
+    private List<String> readPlaylist() throws IOException {
+        JsonToken token = parser.nextToken();
+        while (token != null && token != JsonToken.END_ARRAY) {
+            if (token == JsonToken.START_OBJECT) {
+                return readPlaylistObject();
+            }
+            parser.skipChildren();  // ignore anything in the array that is not a playlist object
+            token = parser.nextToken();
+        }
+        return null;
+    }
+
+    private List<String> readPlaylistObject() throws IOException {
+        String name = null;
+        String description = null;
+        List<String> uris = new ArrayList<>();
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "name" -> name = valueAsText(value);
+                case "description" -> description = valueAsText(value);
+                case "items" -> {
+                    if (value == JsonToken.START_ARRAY) {
+                        readItems(uris);
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                default -> parser.skipChildren();
+            }
+        }
+
+        List<String> playlistInfo = new ArrayList<>(uris.size() + 2);
+        playlistInfo.add(name);  // add name of playlist
+        playlistInfo.add(description);  // add description
+        playlistInfo.addAll(uris);
+        return playlistInfo;
+    }
+
+    private void readItems(List<String> uris) throws IOException {
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY && token != null) {
+            if (token != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+            String trackUri = null;
+            String localUri = null;
+            String episodeUri = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                switch (field) {
+                    case "track" -> trackUri = readNestedField(value, "trackUri");
+                    case "localTrack" -> localUri = readNestedField(value, "uri");
+                    case "episode" -> episodeUri = readNestedField(value, "episodeUri");
+                    default -> parser.skipChildren();
+                }
+            }
+            // the item could either have a spotify track, podcast episode or local file track
+            if (trackUri != null) {
+                uris.add(trackUri);
+            } else if (localUri != null) {
+                uris.add(localUri);
+            } else if (episodeUri != null) {
+                uris.add(episodeUri);
+            }
+        }
+    }
+
+    /**
+     * Reads one field out of a nested object, skipping the rest of it
+     *
+     * @param value     token the nested value starts with
+     * @param fieldName field to extract
+     * @return the field's text, or null if the value is not an object or lacks the field
+     */
+    private String readNestedField(JsonToken value, String fieldName) throws IOException {
+        if (value != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return null;
+        }
+        String result = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken nested = parser.nextToken();
+            if (fieldName.equals(field)) {
+                result = valueAsText(nested);
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Mirrors {@code JsonNode.asText()}: scalars as text, JSON null as "null" and containers as ""
+     */
+    private String valueAsText(JsonToken value) throws IOException {
+        if (value == JsonToken.VALUE_NULL) {
+            return "null";
+        }
+        if (value == JsonToken.START_OBJECT || value == JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return "";
+        }
+        return parser.getText();
+    }
+}
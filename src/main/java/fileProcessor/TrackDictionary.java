@@ -0,0 +1,201 @@
+package fileProcessor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Deduplicating dictionary of playlist item URIs shared by every {@link CompactPlaylist} of a
+ * {@link CompactLibrary}.
+ * "spotify:track:" and "spotify:episode:" URIs whose id is a canonical 22 character base62 id are
+ * decoded into a 128-bit value held in two primitive longs, so each distinct track costs 17 bytes
+ * of array space instead of a ~60 byte String per occurrence. Any other URI (local files, malformed
+ * ids) is kept verbatim in a deduplicated string table. Every URI maps to an int reference:
+ * non-negative references point at decoded ids, negative ones at the string table, and
+ * {@link #uri(int)} turns a reference back into exactly the URI that was added.
+ * Instances are not thread-safe.
+ */
+public class TrackDictionary {
+    static final String TRACK_PREFIX = "spotify:track:";
+    static final String EPISODE_PREFIX = "spotify:episode:";
+    private static final byte KIND_TRACK = 0;
+    private static final byte KIND_EPISODE = 1;
+
+    private static final int ID_LENGTH = 22;
+    private static final String BASE62 = "0123456789abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ";
+    private static final byte[] BASE62_VALUES = new byte[128];
+    private static final long LIMB_MASK = 0xFFFFFFFFL;
+
+    static {
+        Arrays.fill(BASE62_VALUES, (byte) -1);
+        for (int i = 0; i < BASE62.length(); i++) {
+            BASE62_VALUES[BASE62.charAt(i)] = (byte) i;
+        }
+    }
+
+    private byte[] kinds = new byte[1024];
+    private long[] high = new long[1024];
+    private long[] low = new long[1024];
+    private int size;
+
+    // open addressing table of entry index + 1, 0 marks a free slot
+    private int[] slots = new int[2048];
+
+    private final List<String> rawUris = new ArrayList<>();
+    private final Map<String, Integer> rawIndex = new HashMap<>();
+
+    /**
+     * Adds a URI, or finds it if it was added before
+     *
+     * @param uri playlist item URI
+     * @return reference to pass to {@link #uri(int)}
+     */
+    public int add(String uri) {
+        byte kind;
+        int idStart;
+        if (uri.startsWith(TRACK_PREFIX)) {
+            kind = KIND_TRACK;
+            idStart = TRACK_PREFIX.length();
+        } else if (uri.startsWith(EPISODE_PREFIX)) {
+            kind = KIND_EPISODE;
+            idStart = EPISODE_PREFIX.length();
+        } else {
+            return addRaw(uri);
+        }
+        if (uri.length() != idStart + ID_LENGTH) {
+            return addRaw(uri);
+        }
+
+        // decode base62 into four 32-bit limbs, most significant first
+        long l3 = 0, l2 = 0, l1 = 0, l0 = 0;
+        for (int i = idStart; i < uri.length(); i++) {
+            char c = uri.charAt(i);
+            int digit = c < 128 ? BASE62_VALUES[c] : -1;
+            if (digit < 0) {
+                return addRaw(uri);
+            }
+            long t = l0 * 62 + digit;
+            l0 = t & LIMB_MASK;
+            t = l1 * 62 + (t >>> 32);
+            l1 = t & LIMB_MASK;
+            t = l2 * 62 + (t >>> 32);
+            l2 = t & LIMB_MASK;
+            t = l3 * 62 + (t >>> 32);
+            l3 = t & LIMB_MASK;
+            if ((t >>> 32) != 0) {
+                return addRaw(uri);  // larger than 128 bits, cannot round-trip
+            }
+        }
+        return addId(kind, (l3 << 32) | l2, (l1 << 32) | l0);
+    }
+
+    /**
+     * Restores the URI behind a reference
+     *
+     * @param reference value returned by {@link #add(String)}
+     * @return the original URI
+     */
+    public String uri(int reference) {
+        if (reference < 0) {
+            return rawUris.get(-reference - 1);
+        }
+        String prefix = kinds[reference] == KIND_TRACK ? TRACK_PREFIX : EPISODE_PREFIX;
+        return prefix + encode(high[reference], low[reference]);
+    }
+
+    /**
+     * @return number of distinct decoded track and episode ids
+     */
+    public int idCount() {
+        return size;
+    }
+
+    /**
+     * @return number of distinct URIs kept as strings
+     */
+    public int rawCount() {
+        return rawUris.size();
+    }
+
+    private int addRaw(String uri) {
+        Integer existing = rawIndex.get(uri);
+        if (existing != null) {
+            return existing;
+        }
+        rawUris.add(uri);
+        int reference = -rawUris.size();
+        rawIndex.put(uri, reference);
+        return reference;
+    }
+
+    private int addId(byte kind, long hi, long lo) {
+        int mask = slots.length - 1;
+        int slot = hash(kind, hi, lo) & mask;
+        while (true) {
+            int entry = slots[slot] - 1;
+            if (entry < 0) {
+                break;
+            }
+            if (low[entry] == lo && high[entry] == hi && kinds[entry] == kind) {
+                return entry;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        if (size == kinds.length) {
+            int capacity = size * 2;
+            kinds = Arrays.copyOf(kinds, capacity);
+            high = Arrays.copyOf(high, capacity);
+            low = Arrays.copyOf(low, capacity);
+        }
+        int entry = size++;
+        kinds[entry] = kind;
+        high[entry] = hi;
+        low[entry] = lo;
+        slots[slot] = entry + 1;
+
+        if (size * 2 > slots.length) {
+            rehash();
+        }
+        return entry;
+    }
+
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        int mask = slots.length - 1;
+        for (int entry = 0; entry < size; entry++) {
+            int slot = hash(kinds[entry], high[entry], low[entry]) & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = entry + 1;
+        }
+    }
+
+    private static int hash(byte kind, long hi, long lo) {
+        long h = (hi * 0x9E3779B97F4A7C15L) ^ lo ^ kind;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+
+    private static String encode(long hi, long lo) {
+        long l3 = hi >>> 32, l2 = hi & LIMB_MASK, l1 = lo >>> 32, l0 = lo & LIMB_MASK;
+        char[] id = new char[ID_LENGTH];
+        for (int i = ID_LENGTH - 1; i >= 0; i--) {
+            long remainder = l3 % 62;
+            l3 /= 62;
+            long current = (remainder << 32) | l2;
+            l2 = current / 62;
+            current = ((current % 62) << 32) | l1;
+            l1 = current / 62;
+            current = ((current % 62) << 32) | l0;
+            l0 = current / 62;
+            id[i] = BASE62.charAt((int) (current % 62));
+        }
+        return new String(id);
+    }
+}
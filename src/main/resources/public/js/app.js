@@ -46,6 +46,14 @@ async function fetchPlaylists() {
         const data = await response.json();
         console.log("Parsed data:", data);
 
+        if (!response.ok) {
+            // Spotify failed or is rate limiting; an empty library would be misleading
+            const playlistList = document.getElementById('playlistList');
+            playlistList.innerText = data.error || 'Could not load your playlists. Try again later.';
+            document.getElementById('playlistSection').style.display = 'block';
+            return;
+        }
+
         const playlistSection = document.getElementById('playlistSection');
         const playlistList = document.getElementById('playlistList');
         const submitButton = document.getElementById('transferButton');
@@ -89,9 +97,10 @@ async function fetchPlaylists() {
         // Show the playlist section
         playlistSection.style.display = 'block';
 
-        // Add event listeners for "Select All" and "Submit" buttons
+        // Add event listeners for "Select All", "Submit" and the search box
         setupSelectAllCheckbox();
         setupTransferButton();
+        setupSearch();
     } catch (error) {
         console.error('Error fetching playlists:', error);
     }
@@ -125,6 +134,87 @@ function displaySpotifyEmbed(playlistId) {
     embedContainer.style.display = 'block';
 }
 
+// Search box: queries the server index as the user types, one page at a time
+const SEARCH_PAGE_SIZE = 20;
+let searchQuery = '';
+let searchOffset = 0;
+let searchTimer = null;
+
+function setupSearch() {
+    const searchInput = document.getElementById('searchInput');
+    searchInput.addEventListener('input', () => {
+        clearTimeout(searchTimer);
+        searchTimer = setTimeout(() => runSearch(searchInput.value.trim(), 0), 200);
+    });
+    document.getElementById('searchPrevious').addEventListener('click', () => {
+        runSearch(searchQuery, Math.max(0, searchOffset - SEARCH_PAGE_SIZE));
+    });
+    document.getElementById('searchNext').addEventListener('click', () => {
+        runSearch(searchQuery, searchOffset + SEARCH_PAGE_SIZE);
+    });
+}
+
+async function runSearch(query, offset) {
+    const searchResults = document.getElementById('searchResults');
+    const searchPager = document.getElementById('searchPager');
+    const playlistList = document.getElementById('playlistList');
+    searchQuery = query;
+    searchOffset = offset;
+
+    // An empty query shows the full playlist list again
+    if (query === '') {
+        searchResults.style.display = 'none';
+        searchPager.style.display = 'none';
+        playlistList.style.display = 'block';
+        return;
+    }
+
+    try {
+        const response = await fetch(`/search?q=${encodeURIComponent(query)}&offset=${offset}&limit=${SEARCH_PAGE_SIZE}`);
+        if (response.status === 401) {
+            await refreshAccessTokenAndRetry(() => runSearch(query, offset));
+            return;
+        }
+        const page = await response.json();
+        // A newer query was typed while this one was in flight
+        if (query !== searchQuery || offset !== searchOffset) {
+            return;
+        }
+        if (!response.ok) {
+            console.error('Search failed:', page.error);
+            return;
+        }
+
+        searchResults.innerHTML = '';
+        page.results.forEach(hit => {
+            const li = document.createElement('li');
+            li.classList.add('search-result');
+            li.innerText = hit.subtitle ? `${hit.title} - ${hit.subtitle}` : hit.title;
+            if (hit.kind === 'TRACK') {
+                li.innerText += ' (track)';
+            } else if (hit.id) {
+                li.addEventListener('click', () => displaySpotifyEmbed(hit.id));
+            } else {
+                li.innerText += ' (imported)';
+            }
+            searchResults.appendChild(li);
+        });
+
+        const shown = page.results.length;
+        document.getElementById('searchSummary').innerText = page.total === 0
+            ? 'No matches'
+            : `${page.offset + 1}-${page.offset + shown} of ${page.total}`;
+        document.getElementById('searchPrevious').disabled = page.offset === 0;
+        document.getElementById('searchNext').disabled = page.offset + shown >= page.total;
+
+        playlistList.style.display = 'none';
+        searchResults.style.display = 'block';
+        searchPager.style.display = 'block';
+    } catch (error) {
+        console.error('Error searching:', error);
+    }
+}
+
 // Select All checkbox functionality
 function setupSelectAllCheckbox(){
     const selectAllCheckbox = document.getElementById('selectAllCheckbox');
@@ -154,11 +244,54 @@ function setupTransferButton() {
         }
 
         console.log("Selected Playlists:", selectedPlaylists);
-
-        //TODO: send the selected playlists and it's info to ytMicroService here
+        startTransfer(selectedPlaylists);
     });
 }
 
+// Start a background transfer job for the selected playlists and poll its progress
+async function startTransfer(playlistIds) {
+    const status = document.getElementById('transferStatus');
+    try {
+        const response = await fetch('/transfer-playlists', {
+            method: 'POST',
+            headers: {'Content-Type': 'application/json'},
+            body: JSON.stringify({playlistIds: playlistIds}),
+        });
+        const data = await response.json();
+        if (!response.ok) {
+            status.innerText = data.error || 'Could not start the transfer.';
+            return;
+        }
+        pollTransfer(data.jobId);
+    } catch (error) {
+        console.error('Error starting transfer:', error);
+        status.innerText = 'Could not start the transfer.';
+    }
+}
+
+async function pollTransfer(jobId) {
+    const status = document.getElementById('transferStatus');
+    try {
+        const response = await fetch(`/transfer-playlists/${jobId}`);
+        const progress = await response.json();
+        if (!response.ok) {
+            status.innerText = progress.error || 'Transfer status unavailable.';
+            return;
+        }
+
+        const failed = Object.keys(progress.failedPlaylists).length;
+        status.innerText = `Transferred ${progress.completedPlaylists} of ${progress.totalPlaylists} playlists`
+            + ` (${progress.transferredItems} tracks, ${Math.round(progress.itemsPerSecond)} tracks/s)`
+            + (failed > 0 ? `, ${failed} failed` : '');
+
+        if (progress.status === 'QUEUED' || progress.status === 'RUNNING') {
+            setTimeout(() => pollTransfer(jobId), 1000);
+        }
+    } catch (error) {
+        console.error('Error polling transfer:', error);
+    }
+}
+
 
 // Helper function to refresh the access token and retry an action
 async function refreshAccessTokenAndRetry(action) {
@@ -0,0 +1,42 @@
+package com.music.http;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AssetPrecompressorTest {
+    @TempDir
+    Path root;
+
+    @Test
+    void badArgumentsFailWithoutEndingTheJvm() {
+        assertThrows(IllegalArgumentException.class, () -> AssetPrecompressor.main(new String[0]));
+        assertThrows(IllegalArgumentException.class, () -> AssetPrecompressor.main(new String[]{"a", "b"}));
+        assertThrows(IllegalArgumentException.class, () -> AssetPrecompressor.main(new String[]{root.resolve("missing").toString()}));
+    }
+
+    @Test
+    void pagesReferenceVersionedAssetsAndCompressedSiblingsAreListed() throws IOException {
+        Files.createDirectories(root.resolve("css"));
+        Files.writeString(root.resolve("css/style.css"), "body { color: black; }\n".repeat(50), StandardCharsets.UTF_8);
+        Files.writeString(root.resolve("index.html"), "<link href=\"css/style.css\" rel=\"stylesheet\">", StandardCharsets.UTF_8);
+
+        AssetPrecompressor.main(new String[]{root.toString()});
+
+        String html = Files.readString(root.resolve("index.html"), StandardCharsets.UTF_8);
+        assertTrue(html.matches("<link href=\"css/style\\.css\\?v=[0-9a-f]{12}\" rel=\"stylesheet\">"), html);
+        assertTrue(Files.exists(root.resolve("css/style.css.br")));
+        assertTrue(Files.exists(root.resolve("css/style.css.gz")));
+        String manifest = Files.readString(root.resolve(AssetPrecompressor.MANIFEST), StandardCharsets.UTF_8);
+        assertEquals(2, manifest.lines().count());
+        assertTrue(manifest.lines().anyMatch(line -> line.startsWith("css/style.css\t") && line.endsWith("\tbr,gzip")), manifest);
+    }
+}
@@ -0,0 +1,63 @@
+package com.music.http;
+
+import io.javalin.Javalin;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HttpCachingTest {
+    private final HttpClient client = HttpClient.newHttpClient();
+    private Javalin app;
+
+    @BeforeEach
+    void start() {
+        // Large enough to be compressed
+        String items = IntStream.range(0, 500).mapToObj(i -> "item" + i).collect(Collectors.joining(","));
+        app = Javalin.create(config -> config.http.brotliAndGzipCompression())
+                .get("/json", ctx -> HttpCaching.json(ctx, Map.of("items", items)))
+                .start(0);
+    }
+
+    @AfterEach
+    void stop() {
+        app.stop();
+    }
+
+    @Test
+    void etagIsWeakAndSharedAcrossEncodings() throws Exception {
+        HttpResponse<byte[]> gzip = get("gzip", null);
+        HttpResponse<byte[]> identity = get("identity", null);
+        assertEquals("gzip", gzip.headers().firstValue("Content-Encoding").orElse(null));
+        assertTrue(identity.headers().firstValue("Content-Encoding").isEmpty());
+
+        String etag = gzip.headers().firstValue("ETag").orElseThrow();
+        assertTrue(etag.startsWith("W/\""), etag);
+        assertEquals(etag, identity.headers().firstValue("ETag").orElseThrow());
+        assertEquals("Accept-Encoding", gzip.headers().firstValue("Vary").orElse(null));
+
+        // Either copy revalidates, also when the client strips the weak prefix
+        assertEquals(304, get("identity", etag).statusCode());
+        assertEquals(304, get("gzip", etag.substring(2)).statusCode());
+        assertEquals(200, get("gzip", "W/\"other\"").statusCode());
+    }
+
+    private HttpResponse<byte[]> get(String acceptEncoding, String ifNoneMatch) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://localhost:" + app.port() + "/json"))
+                .header("Accept-Encoding", acceptEncoding);
+        if (ifNoneMatch != null) {
+            request.header("If-None-Match", ifNoneMatch);
+        }
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+    }
+}
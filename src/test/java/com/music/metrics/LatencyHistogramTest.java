@@ -0,0 +1,87 @@
+package com.music.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LatencyHistogramTest {
+
+    @Test
+    void powersOfTwoStartANewBucket() {
+        for (long micros = 0; micros < 8; micros++) {
+            assertEquals(micros, LatencyHistogram.bucketIndex(micros));
+            assertEquals(micros + 1, LatencyHistogram.bucketUpperBound((int) micros));
+        }
+        for (int exponent = 3; exponent <= 31; exponent++) {
+            long power = 1L << exponent;
+            int index = LatencyHistogram.bucketIndex(power);
+            assertEquals(LatencyHistogram.bucketIndex(power - 1) + 1, index, "2^" + exponent);
+            assertEquals(power, LatencyHistogram.bucketUpperBound(index - 1), "2^" + exponent);
+            // The first bucket of a power of two is 1/8 of it wide
+            assertEquals(power + power / 8, LatencyHistogram.bucketUpperBound(index), "2^" + exponent);
+        }
+    }
+
+    @Test
+    void everyValueFallsInsideItsBucket() {
+        Random random = new Random(7);
+        for (int i = 0; i < 100_000; i++) {
+            long micros = random.nextLong(1L << (1 + random.nextInt(31)));
+            int index = LatencyHistogram.bucketIndex(micros);
+            long lower = index == 0 ? 0 : LatencyHistogram.bucketUpperBound(index - 1);
+            long upper = LatencyHistogram.bucketUpperBound(index);
+            assertTrue(lower <= micros && micros < upper, micros + " not in [" + lower + ", " + upper + ")");
+            assertTrue(upper - lower <= Math.max(1, lower / 8), "bucket of " + micros + " is too wide");
+        }
+    }
+
+    @Test
+    void valuesBeyondTheLastExponentShareTheLastBucket() {
+        int last = LatencyHistogram.bucketIndex((1L << 32) - 1);
+        assertEquals(last, LatencyHistogram.bucketIndex(1L << 32));
+        assertEquals(last, LatencyHistogram.bucketIndex(Long.MAX_VALUE));
+        assertEquals(last, LatencyHistogram.bucketIndex((1L << 31) + (1L << 28) * 7));  // the top eighth below 2^32
+
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.recordMicros(Long.MAX_VALUE / 2);
+        histogram.recordMicros(-5);  // clock steps backwards count as zero
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(2, snapshot.getCount());
+        assertEquals(1, snapshot.countBelow(1));
+        assertEquals(LatencyHistogram.bucketUpperBound(last), snapshot.valueAtQuantile(1.0));
+    }
+
+    @Test
+    void quantilesBracketTheRecordedValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.snapshot().valueAtQuantile(0.5));
+
+        Random random = new Random(11);
+        long[] values = new long[10_000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (long) Math.exp(random.nextDouble() * Math.log(10_000_000));  // 1us to 10s, log-uniform
+            histogram.record(values[i] * 1000, TimeUnit.NANOSECONDS);
+        }
+        Arrays.sort(values);
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(values.length, snapshot.getCount());
+        assertEquals(Arrays.stream(values).sum() / 1_000_000.0, snapshot.getSumSeconds(), 1e-9);
+
+        for (double quantile : new double[]{0.0, 0.01, 0.5, 0.9, 0.99, 0.999, 1.0}) {
+            long exact = values[Math.max(0, (int) Math.ceil(quantile * values.length) - 1)];
+            long reported = snapshot.valueAtQuantile(quantile);
+            // The upper bound of the exact value's bucket: above it, by at most an eighth
+            assertTrue(reported > exact, "p" + quantile + ": " + reported + " <= " + exact);
+            assertTrue(reported <= exact + Math.max(1, exact / 8), "p" + quantile + ": " + reported + " vs " + exact);
+        }
+        for (int exponent = 0; exponent <= 25; exponent++) {
+            long limit = 1L << exponent;
+            assertEquals(Arrays.stream(values).filter(value -> value < limit).count(), snapshot.countBelow(exponent), "2^" + exponent);
+        }
+    }
+}
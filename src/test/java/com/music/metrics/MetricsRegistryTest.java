@@ -0,0 +1,90 @@
+package com.music.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MetricsRegistryTest {
+
+    @Test
+    void countersAndGaugesAreRenderedInNameOrder() {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("requests_total", "Requests", "route", "/b").add(2);
+        registry.counter("requests_total", "Requests", "route", "/a").increment();
+        registry.gauge("sessions", "Active sessions", () -> 3);
+        registry.gauge("queue_ratio", "Queue fill", () -> Double.NaN);
+
+        assertEquals("""
+                # HELP queue_ratio Queue fill
+                # TYPE queue_ratio gauge
+                queue_ratio NaN
+                # HELP requests_total Requests
+                # TYPE requests_total counter
+                requests_total{route="/a"} 1
+                requests_total{route="/b"} 2
+                # HELP sessions Active sessions
+                # TYPE sessions gauge
+                sessions 3.0
+                """, registry.scrape());
+    }
+
+    @Test
+    void histogramBucketsAreCumulative() {
+        MetricsRegistry registry = new MetricsRegistry();
+        LatencyHistogram histogram = registry.histogram("request_duration_seconds", "Request duration", "route", "/playlists");
+        histogram.recordMicros(10);         // below the first boundary, 64us
+        histogram.recordMicros(64);         // exactly on a boundary: counted from the next one on
+        histogram.recordMicros(1_000);
+        histogram.recordMicros(60_000_000); // beyond the last boundary, only in +Inf
+
+        List<String> lines = registry.scrape().lines().toList();
+        assertEquals("# TYPE request_duration_seconds histogram", lines.get(1));
+        List<String> buckets = lines.stream().filter(line -> line.startsWith("request_duration_seconds_bucket")).toList();
+        assertEquals(LatencyHistogram.LAST_EXPORTED_EXPONENT - LatencyHistogram.FIRST_EXPORTED_EXPONENT + 2, buckets.size());
+        assertEquals("request_duration_seconds_bucket{route=\"/playlists\",le=\"6.4E-5\"} 1", buckets.get(0));
+        assertEquals("request_duration_seconds_bucket{route=\"/playlists\",le=\"1.28E-4\"} 2", buckets.get(1));
+        assertEquals("request_duration_seconds_bucket{route=\"/playlists\",le=\"0.001024\"} 3", buckets.get(4));
+        assertEquals("request_duration_seconds_bucket{route=\"/playlists\",le=\"33.554432\"} 3", buckets.get(buckets.size() - 2));
+        assertEquals("request_duration_seconds_bucket{route=\"/playlists\",le=\"+Inf\"} 4", buckets.get(buckets.size() - 1));
+        long previous = 0;
+        for (String bucket : buckets) {
+            long count = Long.parseLong(bucket.substring(bucket.lastIndexOf(' ') + 1));
+            assertTrue(count >= previous, bucket);
+            previous = count;
+        }
+        assertTrue(lines.contains("request_duration_seconds_sum{route=\"/playlists\"} 60.001074"), lines.toString());
+        assertTrue(lines.contains("request_duration_seconds_count{route=\"/playlists\"} 4"), lines.toString());
+    }
+
+    @Test
+    void unlabelledHistogramsGetOnlyTheLeLabel() {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.histogram("gc_pause_seconds", "GC pauses").recordMicros(100);
+        String scrape = registry.scrape();
+        assertTrue(scrape.contains("\ngc_pause_seconds_bucket{le=\"+Inf\"} 1\n"), scrape);
+        assertTrue(scrape.contains("\ngc_pause_seconds_count 1\n"), scrape);
+    }
+
+    @Test
+    void labelValuesAreEscaped() {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("errors_total", "Errors", "message", "say \"hi\"\\now\nthen").increment();
+        assertTrue(registry.scrape().contains("errors_total{message=\"say \\\"hi\\\"\\\\now\\nthen\"} 1\n"), registry.scrape());
+    }
+
+    @Test
+    void seriesAreRegisteredOnce() {
+        MetricsRegistry registry = new MetricsRegistry();
+        Counter counter = registry.counter("calls_total", "Calls", "endpoint", "profile");
+        assertSame(counter, registry.counter("calls_total", "Calls", "endpoint", "profile"));
+        assertSame(registry.histogram("latency_seconds", "Latency"), registry.histogram("latency_seconds", "Latency"));
+
+        assertThrows(IllegalArgumentException.class, () -> registry.histogram("calls_total", "Calls"));
+        assertThrows(IllegalArgumentException.class, () -> registry.counter("calls_total", "Calls", "endpoint"));
+    }
+}
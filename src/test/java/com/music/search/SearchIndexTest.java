@@ -0,0 +1,262 @@
+package com.music.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SearchIndexTest {
+    private final SearchIndex index = new SearchIndex();
+
+    @Test
+    void aNewImportReplacesThePreviousOne() {
+        index.replaceImport(
+                List.of(new SearchIndex.ImportedPlaylist("Road trip", "summer 2019"),
+                        new SearchIndex.ImportedPlaylist("Road trip", null),
+                        new SearchIndex.ImportedPlaylist("Focus", null)),
+                List.of(new SearchIndex.ImportedTrack("spotify:track:1", "Highway Song", List.of("Band"), "Roads"),
+                        new SearchIndex.ImportedTrack("spotify:track:2", "Quiet Room", List.of("Pianist"), null)));
+        assertEquals(2, titles("road").size());
+        assertEquals(List.of("Quiet Room"), titles("quiet"));
+
+        // The next export no longer has the second "Road trip", Focus or the quiet track
+        index.replaceImport(
+                List.of(new SearchIndex.ImportedPlaylist("Road trip", "summer 2019"),
+                        new SearchIndex.ImportedPlaylist("Running", null)),
+                List.of(new SearchIndex.ImportedTrack("spotify:track:1", "Highway Song", List.of("Band"), "Roads")));
+        assertEquals(List.of("Road trip"), titles("road"), "only the remaining playlist and no stale copy");
+        assertEquals(List.of(), titles("focus"));
+        assertEquals(List.of(), titles("quiet"));
+        assertEquals(List.of("Running"), titles("running"));
+        assertEquals(List.of("Highway Song"), titles("highway"));
+        assertEquals(3, index.size());
+
+        index.replaceImport(List.of(), List.of());
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    void spotifyPlaylistsAreNotPartOfTheImport() {
+        index.updateSpotifyPlaylists(Map.of("abc", "Road trip live"), null);
+        index.replaceImport(List.of(new SearchIndex.ImportedPlaylist("Road trip", null)), List.of());
+        index.replaceImport(List.of(), List.of());
+        assertEquals(List.of("Road trip live"), titles("road"));
+    }
+
+    @Test
+    void hitsCarryTheirSource() {
+        index.updateSpotifyPlaylists(Map.of("abc", "Live set"), null);
+        index.replaceImport(List.of(new SearchIndex.ImportedPlaylist("Imported set", null)),
+                List.of(new SearchIndex.ImportedTrack("spotify:track:1", "Set list", List.of(), null)));
+
+        List<SearchIndex.Hit> hits = index.search("set", null, 0, 10).results();
+        assertEquals(List.of(
+                new SearchIndex.Hit(SearchIndex.Kind.PLAYLIST, "abc", "Live set", null, "spotify"),
+                new SearchIndex.Hit(SearchIndex.Kind.PLAYLIST, null, "Imported set", null, "import"),
+                new SearchIndex.Hit(SearchIndex.Kind.TRACK, "spotify:track:1", "Set list", null, "import")), hits);
+    }
+
+    @Test
+    void longerWordsMatchInsideTerms() {
+        tracks("Midnight City", "Nightcall", "Knights of Cydonia", "Right Here", "Night fever");
+
+        assertEquals(List.of("Midnight City", "Nightcall", "Knights of Cydonia", "Right Here", "Night fever"), titles("ight"));
+        // Starting a title word ranks first; the infix matches follow in indexing order
+        assertEquals(List.of("Nightcall", "Night fever", "Midnight City", "Knights of Cydonia"), titles("nigh"));
+        assertEquals(List.of("Nightcall"), titles("htca"));
+        assertEquals(List.of(), titles("ghtx"), "every trigram but one exists");
+        assertEquals(List.of(), titles("xyz"), "no trigram exists");
+    }
+
+    @Test
+    void termsWithEveryTrigramButNotTheWordDoNotMatch() {
+        // "abcxbcd" has both trigrams of "abcd", just not next to each other
+        tracks("abcxbcd", "zabcdz");
+        assertEquals(List.of("zabcdz"), titles("abcd"));
+        assertEquals(List.of("abcxbcd", "zabcdz"), titles("bcd"));
+    }
+
+    @Test
+    void shortWordsOnlyMatchTheStartOfWords() {
+        index.replaceImport(List.of(new SearchIndex.ImportedPlaylist("Euro pop", "road songs")),
+                List.of(new SearchIndex.ImportedTrack("spotify:track:1", "Rock", List.of("Roxy"), null),
+                        new SearchIndex.ImportedTrack("spotify:track:2", "Hero", List.of("Band"), null),
+                        new SearchIndex.ImportedTrack("spotify:track:3", "Intro", List.of("Rob"), null)));
+
+        // "Euro", "Hero" and "Intro" contain "ro" but do not start with it; the description and artists count, ranked lower
+        assertEquals(List.of("Rock", "Euro pop", "Intro"), titles("ro"));
+        assertEquals(List.of("Euro pop"), titles("e"));
+        assertEquals(List.of("Euro pop"), titles("ro songs"), "every word must match");
+        assertEquals(List.of(), titles("zz"));
+    }
+
+    @Test
+    void rankBucketsPutTitleMatchesFirstAndPlaylistsBeforeTracks() {
+        index.replaceImport(
+                List.of(new SearchIndex.ImportedPlaylist("Beach", "summer vibes"),
+                        new SearchIndex.ImportedPlaylist("Night drive", "summer"),
+                        new SearchIndex.ImportedPlaylist("Endless summer", null)),
+                List.of(new SearchIndex.ImportedTrack("spotify:track:1", "Summer Nights", List.of("Duo"), null),
+                        new SearchIndex.ImportedTrack("spotify:track:2", "Heat", List.of("Summer Band"), null),
+                        new SearchIndex.ImportedTrack("spotify:track:3", "Summertime", List.of("Singer"), null)));
+        index.updateSpotifyPlaylists(Map.of("abc", "Summer hits"), null);
+
+        // Title word starts: playlists, then tracks; other text only: playlists, then tracks
+        assertEquals(List.of("Endless summer", "Summer hits", "Summer Nights", "Summertime", "Beach", "Night drive", "Heat"),
+                titles("summer"));
+        // Two title word starts before one, whatever the kind
+        assertEquals(List.of("Summer Nights", "Night drive"), titles("summer night"));
+    }
+
+    @Test
+    void offsetAndLimitPageThroughTheRanking() {
+        List<String> all = IntStream.range(0, 25).mapToObj(i -> "Song " + i).toList();
+        tracks(all.toArray(String[]::new));
+
+        List<String> paged = new ArrayList<>();
+        for (int offset = 0; offset < 30; offset += 10) {
+            SearchIndex.Page page = index.search("song", null, offset, 10);
+            assertEquals(25, page.total());
+            assertEquals(offset, page.offset());
+            paged.addAll(page.results().stream().map(SearchIndex.Hit::title).toList());
+        }
+        assertEquals(all, paged);
+
+        assertEquals(List.of("Song 24"), titlesOf(index.search("song", null, 24, 100)));
+        SearchIndex.Page pastTheEnd = index.search("song", null, 40, 10);
+        assertEquals(25, pastTheEnd.total());
+        assertEquals(List.of(), pastTheEnd.results());
+        assertEquals(List.of(), index.search("song", null, 0, 0).results());
+        assertEquals(0, index.search("  !! ", null, 0, 10).total());
+    }
+
+    @Test
+    void theKindFilterAppliesToResultsAndTotal() {
+        index.replaceImport(List.of(new SearchIndex.ImportedPlaylist("Jazz classics", null),
+                        new SearchIndex.ImportedPlaylist("Late jazz", null)),
+                List.of(new SearchIndex.ImportedTrack("spotify:track:1", "Jazz waltz", List.of(), null)));
+
+        SearchIndex.Page tracks = index.search("jazz", SearchIndex.Kind.TRACK, 0, 10);
+        assertEquals(1, tracks.total());
+        assertEquals(List.of("Jazz waltz"), titlesOf(tracks));
+        SearchIndex.Page playlists = index.search("jazz", SearchIndex.Kind.PLAYLIST, 1, 10);
+        assertEquals(2, playlists.total());
+        assertEquals(List.of("Late jazz"), titlesOf(playlists));
+    }
+
+    @Test
+    void compactionRenumbersDocumentsAndKeepsEveryQueryWorking() {
+        Random random = new Random(11);
+        List<String> vocabulary = IntStream.range(0, 300).mapToObj(i -> word(random)).toList();
+        Reference reference = new Reference();
+
+        // Large imports replaced by small ones leave more dead documents than live ones, which triggers a rebuild
+        for (int round = 0; round < 4; round++) {
+            int count = round % 2 == 0 ? 3000 : 200;
+            Map<String, SearchIndex.ImportedTrack> tracks = new LinkedHashMap<>();
+            for (int i = 0; i < count; i++) {
+                String uri = "spotify:track:" + random.nextInt(4000);
+                String title = vocabulary.get(random.nextInt(vocabulary.size())) + " " + vocabulary.get(random.nextInt(vocabulary.size()));
+                tracks.put(uri, new SearchIndex.ImportedTrack(uri, title, List.of(vocabulary.get(random.nextInt(vocabulary.size()))), null));
+            }
+            index.replaceImport(List.of(), List.copyOf(tracks.values()));
+            reference.replace(tracks.values());
+            if (round % 2 == 1) {
+                assertEquals(index.size(), index.documentNumbers(), "dead documents were not compacted");
+            }
+            assertEquals(reference.documents.size(), index.size());
+
+            Set<String> queries = new HashSet<>();
+            for (String word : vocabulary.subList(0, 60)) {
+                queries.add(word.substring(0, 1));
+                queries.add(word.substring(0, 2));
+                for (int start = 0; start + 3 <= word.length(); start++) {
+                    queries.add(word.substring(start, Math.min(word.length(), start + 3 + random.nextInt(3))));
+                }
+            }
+            for (String query : queries) {
+                assertEquals(reference.search(query), titlesOf(index.search(query, null, 0, Integer.MAX_VALUE)), query);
+            }
+        }
+    }
+
+    private void tracks(String... titles) {
+        List<SearchIndex.ImportedTrack> tracks = new ArrayList<>();
+        for (int i = 0; i < titles.length; i++) {
+            tracks.add(new SearchIndex.ImportedTrack("spotify:track:" + i, titles[i], List.of(), null));
+        }
+        index.replaceImport(List.of(), tracks);
+    }
+
+    private List<String> titles(String query) {
+        return titlesOf(index.search(query, null, 0, 100));
+    }
+
+    private static List<String> titlesOf(SearchIndex.Page page) {
+        return page.results().stream().map(SearchIndex.Hit::title).toList();
+    }
+
+    private static String word(Random random) {
+        char[] word = new char[3 + random.nextInt(6)];
+        for (int i = 0; i < word.length; i++) {
+            word[i] = (char) ('a' + random.nextInt(6));  // few letters, so trigrams are shared by many words
+        }
+        return new String(word);
+    }
+
+    // Imported tracks in indexing order, searched by scanning every word
+    private static final class Reference {
+        private final LinkedHashMap<String, SearchIndex.ImportedTrack> documents = new LinkedHashMap<>();
+
+        void replace(Iterable<SearchIndex.ImportedTrack> tracks) {
+            Map<String, SearchIndex.ImportedTrack> next = new LinkedHashMap<>();
+            tracks.forEach(track -> next.put(track.uri(), track));
+            documents.keySet().retainAll(next.keySet());
+            for (SearchIndex.ImportedTrack track : next.values()) {
+                if (!track.equals(documents.get(track.uri()))) {
+                    documents.remove(track.uri());  // a changed document is indexed again, at the end
+                    documents.put(track.uri(), track);
+                }
+            }
+        }
+
+        List<String> search(String query) {
+            List<String> words = SearchIndex.words(query);
+            List<List<String>> buckets = new ArrayList<>();
+            for (int b = 0; b <= words.size(); b++) {
+                buckets.add(new ArrayList<>());
+            }
+            for (SearchIndex.ImportedTrack track : documents.values()) {
+                List<String> title = SearchIndex.words(track.title());
+                List<String> other = SearchIndex.words(String.join(", ", track.artists()));
+                int strong = 0;
+                boolean all = true;
+                for (String word : words) {
+                    if (title.stream().anyMatch(term -> term.startsWith(word))) {
+                        strong++;
+                    } else if (!title.stream().anyMatch(term -> matches(term, word)) && !other.stream().anyMatch(term -> matches(term, word))) {
+                        all = false;
+                    }
+                }
+                if (all) {
+                    buckets.get(words.size() - strong).add(track.title());
+                }
+            }
+            List<String> results = new ArrayList<>();
+            buckets.forEach(results::addAll);
+            return results;
+        }
+
+        private static boolean matches(String term, String word) {
+            return word.length() < 3 ? term.startsWith(word) : term.contains(word);
+        }
+    }
+}
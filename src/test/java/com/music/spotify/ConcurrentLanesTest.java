@@ -0,0 +1,68 @@
+package com.music.spotify;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConcurrentLanesTest {
+
+    @Test
+    void atMostMaxConcurrentTasksAreInFlight() {
+        Queue<Supplier<CompletableFuture<Void>>> tasks = new ConcurrentLinkedQueue<>();
+        List<CompletableFuture<Void>> started = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            tasks.add(() -> {
+                CompletableFuture<Void> task = new CompletableFuture<>();
+                started.add(task);
+                return task;
+            });
+        }
+
+        CompletableFuture<Void> all = ConcurrentLanes.run(tasks, 3);
+        for (int completed = 0; completed < 10; completed++) {
+            assertEquals(Math.min(10, completed + 3), started.size());
+            started.get(completed).complete(null);
+        }
+        assertTrue(all.isDone());
+    }
+
+    @Test
+    void longRunsOfSynchronousTasksDoNotOverflowTheStack() {
+        Queue<Supplier<CompletableFuture<Void>>> tasks = new ConcurrentLinkedQueue<>();
+        AtomicInteger ran = new AtomicInteger();
+        for (int i = 0; i < 200_000; i++) {
+            tasks.add(() -> {
+                ran.incrementAndGet();
+                return CompletableFuture.completedFuture(null);
+            });
+        }
+        ConcurrentLanes.run(tasks, 4).join();
+        assertEquals(200_000, ran.get());
+    }
+
+    @Test
+    void aFailedTaskFailsTheRun() {
+        Queue<Supplier<CompletableFuture<Void>>> tasks = new ConcurrentLinkedQueue<>();
+        tasks.add(() -> CompletableFuture.failedFuture(new IllegalStateException("page failed")));
+        CompletableFuture<Void> pending = new CompletableFuture<>();
+        tasks.add(() -> pending);
+
+        CompletableFuture<Void> all = ConcurrentLanes.run(tasks, 2);
+        assertFalse(all.isDone());
+        pending.complete(null);
+        CompletionException failure = assertThrows(CompletionException.class, all::join);
+        assertEquals("page failed", failure.getCause().getMessage());
+    }
+}
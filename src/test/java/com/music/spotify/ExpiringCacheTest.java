@@ -0,0 +1,60 @@
+package com.music.spotify;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExpiringCacheTest {
+
+    @Test
+    void expiredEntriesMissButStayAvailableForRevalidation() throws InterruptedException {
+        ExpiringCache<String, String> cache = new ExpiringCache<>(10, Duration.ofMillis(50));
+        cache.put("user", "id");
+        assertEquals("id", cache.get("user"));
+        Thread.sleep(80);
+        assertNull(cache.get("user"));
+        assertEquals("id", cache.getStale("user"));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    void fullCacheEvictsTheLeastRecentlyUsedInABatch() throws InterruptedException {
+        ExpiringCache<Integer, Integer> cache = new ExpiringCache<>(160, Duration.ofHours(1));
+        for (int i = 0; i < 160; i++) {
+            cache.put(i, i);
+        }
+        Thread.sleep(5);
+        for (int i = 0; i < 150; i++) {
+            cache.get(i);  // everything but the last 10 is used again
+        }
+
+        cache.put(1000, 1000);
+        assertEquals(160 - 160 / 16 + 1, cache.size());
+        assertEquals(160 / 16, cache.getEvictions());
+        for (int i = 150; i < 160; i++) {
+            assertNull(cache.getStale(i));
+        }
+        for (int i = 0; i < 150; i++) {
+            assertNotNull(cache.getStale(i));
+        }
+    }
+
+    @Test
+    void fillingPastTheLimitStaysLinear() {
+        // One scan per evicted entry made this quadratic: minutes for a million puts into 200k entries
+        ExpiringCache<Integer, Integer> cache = new ExpiringCache<>(200_000, Duration.ofHours(1));
+        long start = System.nanoTime();
+        for (int i = 0; i < 1_000_000; i++) {
+            cache.put(i, i);
+        }
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        assertTrue(cache.size() <= 200_000);
+        assertTrue(millis < 20_000, "took " + millis + " ms");
+    }
+}
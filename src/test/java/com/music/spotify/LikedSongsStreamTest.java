@@ -0,0 +1,125 @@
+package com.music.spotify;
+
+import io.javalin.Javalin;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import se.michaelthelin.spotify.model_objects.specification.SavedTrack;
+import se.michaelthelin.spotify.model_objects.specification.Track;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// /liked-songs over HTTP, with compression enabled as in Main, for a session whose library arrives in two pages
+class LikedSongsStreamTest {
+    private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    private final ExecutorService streamExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final CompletableFuture<Void> secondPage = new CompletableFuture<Void>().completeOnTimeout(null, 10, TimeUnit.SECONDS);
+    private Javalin app;
+    private SpotifyController controller;
+
+    private void start(int maxStreams) throws IOException {
+        SpotifyService service = mock(SpotifyService.class);
+        when(service.streamLikedSongs(any())).thenAnswer(call -> {
+            SpotifyService.PageConsumer<SavedTrack> consumer = call.getArgument(0);
+            consumer.accept(savedTracks(0, 50));
+            secondPage.join();  // the second page is held back until the client has read the first
+            consumer.accept(savedTracks(50, 120));
+            return 120;
+        });
+        SpotifySessionStore sessions = mock(SpotifySessionStore.class);
+        when(sessions.find(any())).thenReturn(service);
+        SpotifyServiceFactory factory = mock(SpotifyServiceFactory.class);
+        when(factory.get()).thenReturn(mock(SpotifyService.class));
+
+        app = Javalin.create(config -> config.http.brotliAndGzipCompression()).start(0);
+        controller = new SpotifyController(sessions, factory, streamExecutor, maxStreams);
+        controller.registerRoutes(app);
+    }
+
+    @AfterEach
+    void stop() {
+        app.stop();
+        streamExecutor.shutdownNow();
+    }
+
+    @Test
+    void likedSongsReachTheClientPageByPage() throws Exception {
+        start(SpotifyController.DEFAULT_MAX_STREAMS);
+        HttpResponse<InputStream> response = client.send(likedSongs(), HttpResponse.BodyHandlers.ofInputStream());
+        assertEquals(200, response.statusCode());
+        assertTrue(response.headers().firstValue("Content-Encoding").isEmpty());
+        try (BufferedReader lines = new BufferedReader(new InputStreamReader(response.body(), StandardCharsets.UTF_8))) {
+            for (int i = 0; i < 50; i++) {
+                assertTrue(lines.readLine().contains("\"Track " + i + "\""));
+            }
+            // The first page arrived while the second was still held back
+            assertFalse(secondPage.isDone());
+            secondPage.complete(null);
+            for (int i = 50; i < 120; i++) {
+                assertTrue(lines.readLine().contains("\"Track " + i + "\""));
+            }
+            assertNull(lines.readLine());
+        }
+    }
+
+    @Test
+    void streamsBeyondTheLimitAreTurnedAwayUntilOneEnds() throws Exception {
+        start(1);
+        HttpResponse<InputStream> first = client.send(likedSongs(), HttpResponse.BodyHandlers.ofInputStream());
+        try (BufferedReader lines = new BufferedReader(new InputStreamReader(first.body(), StandardCharsets.UTF_8))) {
+            assertTrue(lines.readLine().contains("\"Track 0\""));
+            assertEquals(1, controller.getActiveStreamCount());
+
+            HttpResponse<String> second = client.send(likedSongs(), HttpResponse.BodyHandlers.ofString());
+            assertEquals(503, second.statusCode());
+            assertEquals("1", second.headers().firstValue("Retry-After").orElse(null));
+
+            secondPage.complete(null);
+            while (lines.readLine() != null) {
+                // read the rest of the first stream
+            }
+        }
+        long deadline = System.currentTimeMillis() + 5000;
+        while (controller.getActiveStreamCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, controller.getActiveStreamCount());
+        HttpResponse<String> third = client.send(likedSongs(), HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, third.statusCode());
+        assertEquals(120, third.body().lines().count());
+    }
+
+    private HttpRequest likedSongs() {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + app.port() + "/liked-songs"))
+                .header("Accept-Encoding", "br, gzip")
+                .build();
+    }
+
+    private static SavedTrack[] savedTracks(int from, int to) {
+        return IntStream.range(from, to)
+                .mapToObj(i -> new SavedTrack.Builder()
+                        .setTrack(new Track.Builder().setId("track" + i).setName("Track " + i).build())
+                        .build())
+                .toArray(SavedTrack[]::new);
+    }
+}
@@ -0,0 +1,131 @@
+package com.music.spotify;
+
+import io.javalin.Javalin;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import se.michaelthelin.spotify.SpotifyApi;
+import se.michaelthelin.spotify.model_objects.specification.Paging;
+import se.michaelthelin.spotify.model_objects.specification.PlaylistSimplified;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Pages a stub of /v1/me/playlists over real HTTP, through the same SpotifyApi and PooledHttpManager the app uses
+class PaginatedFetcherTest {
+    private static final int PLAYLISTS = 1000;
+    private static final long PAGE_LATENCY_MILLIS = 40;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private Javalin stub;
+    private SpotifyApi spotifyApi;
+
+    @BeforeEach
+    void startStub() {
+        stub = Javalin.create(config -> config.useVirtualThreads = true)
+                .get("/v1/me/playlists", ctx -> {
+                    maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                    try {
+                        Thread.sleep(PAGE_LATENCY_MILLIS);
+                        int offset = Integer.parseInt(ctx.queryParam("offset"));
+                        int limit = Integer.parseInt(ctx.queryParam("limit"));
+                        List<Map<String, Object>> items = new ArrayList<>();
+                        for (int i = offset; i < Math.min(PLAYLISTS, offset + limit); i++) {
+                            Map<String, Object> playlist = new LinkedHashMap<>();
+                            playlist.put("id", "playlist" + i);
+                            playlist.put("name", "Playlist " + i);
+                            playlist.put("type", "playlist");
+                            items.add(playlist);
+                        }
+                        ctx.json(Map.of("items", items, "offset", offset, "limit", limit, "total", PLAYLISTS));
+                    } finally {
+                        inFlight.decrementAndGet();
+                    }
+                })
+                .start(0);
+        spotifyApi = new SpotifyApi.Builder()
+                .setScheme("http")
+                .setHost("localhost")
+                .setPort(stub.port())
+                .setAccessToken("token")
+                .setHttpManager(new PooledHttpManager(PaginatedFetcher.DEFAULT_MAX_CONCURRENCY))
+                .build();
+    }
+
+    @AfterEach
+    void stopStub() {
+        stub.stop();
+    }
+
+    @Test
+    void concurrentPagesKeepOrderAndCutWallClockTime() {
+        List<String> sequentialIds = fetchIds(new PaginatedFetcher(PaginatedFetcher.MAX_PAGE_SIZE, 1));
+        long sequentialStart = System.nanoTime();
+        fetchIds(new PaginatedFetcher(PaginatedFetcher.MAX_PAGE_SIZE, 1));
+        long sequentialMillis = (System.nanoTime() - sequentialStart) / 1_000_000;
+        assertEquals(1, maxInFlight.get());
+
+        long concurrentStart = System.nanoTime();
+        List<String> concurrentIds = fetchIds(new PaginatedFetcher());
+        long concurrentMillis = (System.nanoTime() - concurrentStart) / 1_000_000;
+
+        assertEquals(PLAYLISTS, concurrentIds.size());
+        for (int i = 0; i < PLAYLISTS; i++) {
+            assertEquals("playlist" + i, concurrentIds.get(i));
+        }
+        assertEquals(sequentialIds, concurrentIds);
+        // 20 pages: one lane waits for all of them in turn, eight lanes for the first page and three rounds
+        assertTrue(maxInFlight.get() > 1, "pages were never requested concurrently");
+        assertTrue(concurrentMillis * 2 < sequentialMillis,
+                "concurrent paging took " + concurrentMillis + " ms, sequential " + sequentialMillis + " ms");
+    }
+
+    @Test
+    void emptyPageEndsPagingDespiteABogusTotal() {
+        PaginatedFetcher fetcher = new PaginatedFetcher();
+        AtomicInteger pagesAsked = new AtomicInteger();
+        List<String> ids = fetcher.<PlaylistSimplified, String>fetchAll((offset, limit) -> {
+            pagesAsked.incrementAndGet();
+            PlaylistSimplified[] items = offset == 0
+                    ? new PlaylistSimplified[]{new PlaylistSimplified.Builder().setId("only").build()}
+                    : new PlaylistSimplified[0];
+            return CompletableFuture.completedFuture(new Paging.Builder<PlaylistSimplified>()
+                    .setItems(items)
+                    .setTotal(Integer.MAX_VALUE)
+                    .build());
+        }, PlaylistSimplified::getId).join();
+
+        assertEquals(List.of("only"), ids);
+        // The first empty page ends the paging instead of walking the claimed total
+        assertTrue(pagesAsked.get() <= 1 + PaginatedFetcher.DEFAULT_MAX_CONCURRENCY, pagesAsked.get() + " pages asked");
+    }
+
+    @Test
+    void bufferIsPresizedOnlyUpToTheInitialCapacityAndGrowsWithThePages() {
+        PaginatedFetcher.PageBuffer buffer = new PaginatedFetcher.PageBuffer(PaginatedFetcher.MAX_ITEMS);
+        assertEquals(PaginatedFetcher.INITIAL_CAPACITY, buffer.capacity());
+
+        // A page past the initial capacity grows the buffer to cover it, and no further than the limit
+        int offset = PaginatedFetcher.INITIAL_CAPACITY * 3;
+        buffer.put(offset, new Object[]{"late"});
+        buffer.put(0, new Object[]{"first"});
+        assertTrue(buffer.capacity() > offset && buffer.capacity() <= PaginatedFetcher.MAX_ITEMS, buffer.capacity() + " slots");
+        assertEquals(List.of("first", "late"), buffer.toList());
+
+        assertEquals(10, new PaginatedFetcher.PageBuffer(10).capacity());
+    }
+
+    private List<String> fetchIds(PaginatedFetcher fetcher) {
+        return fetcher.<PlaylistSimplified, String>fetchAll(
+                (offset, limit) -> spotifyApi.getListOfCurrentUsersPlaylists().offset(offset).limit(limit).build().executeAsync(),
+                PlaylistSimplified::getId).join();
+    }
+}
@@ -0,0 +1,114 @@
+package com.music.spotify;
+
+import com.music.spotify.SpotifyRequestScheduler.Priority;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import se.michaelthelin.spotify.SpotifyApi;
+import se.michaelthelin.spotify.model_objects.specification.User;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// The scheduler in front of real Web API calls to SpotifyStub
+class SpotifyRequestSchedulerTest {
+    private SpotifyStub stub;
+    private SpotifyApi spotifyApi;
+    private SpotifyRequestScheduler scheduler;
+
+    @BeforeEach
+    void start() {
+        stub = new SpotifyStub(SpotifyStub.Config.minimal());
+        stub.start(0);
+        spotifyApi = new SpotifyApi.Builder()
+                .setAccessToken("user1.token")
+                .setHttpManager(new HostRewritingHttpManager(new PooledHttpManager(16), stub.hosts()))
+                .build();
+    }
+
+    @AfterEach
+    void stop() {
+        scheduler.close();
+        stub.close();
+    }
+
+    @Test
+    void rateLimitedCallsWaitForRetryAfterAndThenSucceed() {
+        scheduler = new SpotifyRequestScheduler(1000, 1000, 16, ForkJoinPool.commonPool());
+        stub.setRetryAfterSeconds(1);
+        stub.rateLimitNext(5);
+
+        long start = System.nanoTime();
+        List<CompletableFuture<User>> calls = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            calls.add(profile(Priority.INTERACTIVE));
+        }
+        for (CompletableFuture<User> call : calls) {
+            assertEquals("user1", call.join().getId());  // none of them surfaces the 429
+        }
+        long millis = (System.nanoTime() - start) / 1_000_000;
+
+        assertEquals(5, stub.getRateLimited());
+        assertEquals(40, stub.getApiCalls());
+        // The pause applies to the whole scheduler, so the retries went out only after Retry-After
+        assertTrue(millis >= 1000, "finished after " + millis + " ms");
+    }
+
+    @Test
+    void callsAreSentAtTheConfiguredRate() {
+        scheduler = new SpotifyRequestScheduler(50, 10, 16, ForkJoinPool.commonPool());
+
+        long start = System.nanoTime();
+        List<CompletableFuture<User>> calls = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            calls.add(profile(i % 2 == 0 ? Priority.INTERACTIVE : Priority.BACKGROUND));
+        }
+        calls.forEach(CompletableFuture::join);
+        long millis = (System.nanoTime() - start) / 1_000_000;
+
+        // A burst of 10, then 50 more at 50 per second
+        assertEquals(60, stub.getApiCalls());
+        assertEquals(0, stub.getRateLimited());
+        assertTrue(millis >= 900 && millis < 3000, "60 calls took " + millis + " ms");
+    }
+
+    @Test
+    void interactiveCallsGoAheadOfQueuedBackgroundWork() {
+        scheduler = new SpotifyRequestScheduler(1000, 1000, 1, ForkJoinPool.commonPool());
+        CompletableFuture<Void> blocker = new CompletableFuture<>();
+        scheduler.submit(Priority.BACKGROUND, () -> blocker);
+
+        List<String> order = new ArrayList<>();
+        List<CompletableFuture<Object>> calls = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            String name = "background" + i;
+            calls.add(scheduler.submit(Priority.BACKGROUND, () -> record(order, name)));
+        }
+        for (int i = 0; i < 4; i++) {
+            String name = "interactive" + i;
+            calls.add(scheduler.submit(Priority.INTERACTIVE, () -> record(order, name)));
+        }
+        blocker.complete(null);
+        calls.forEach(CompletableFuture::join);
+
+        // Every fifth dispatch goes to the background lane, so it cannot starve
+        assertEquals(List.of("interactive0", "interactive1", "interactive2", "background0",
+                "interactive3", "background1", "background2", "background3"), order);
+    }
+
+    private CompletableFuture<User> profile(Priority priority) {
+        return scheduler.submit(priority, () -> spotifyApi.getCurrentUsersProfile().build().executeAsync());
+    }
+
+    private static CompletableFuture<Object> record(List<String> order, String name) {
+        synchronized (order) {
+            order.add(name);
+        }
+        return CompletableFuture.completedFuture(name);
+    }
+}
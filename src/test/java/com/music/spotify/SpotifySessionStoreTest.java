@@ -0,0 +1,164 @@
+package com.music.spotify;
+
+import io.javalin.Javalin;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Drives the login and /playlists routes over HTTP, for many browsers at once, against SpotifyStub
+class SpotifySessionStoreTest {
+    private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    private SpotifyStub stub;
+    private SpotifyServiceFactory factory;
+    private SpotifySessionStore sessions;
+    private Javalin app;
+
+    private void start(int maxSessions) {
+        stub = new SpotifyStub(SpotifyStub.Config.minimal());
+        stub.start(0);
+        factory = new SpotifyServiceFactory("client", "secret", URI.create("http://localhost/login/spotify/callback"),
+                PaginatedFetcher.DEFAULT_MAX_CONCURRENCY, new SpotifyRequestScheduler(10_000, 10_000, 64, ForkJoinPool.commonPool(), 10),
+                SpotifyStateStore.disabled(), stub.hosts());
+        sessions = new SpotifySessionStore(factory, maxSessions, Duration.ofMinutes(10));
+        app = Javalin.create(config -> config.useVirtualThreads = true).start(0);
+        new SpotifyController(sessions, factory, ForkJoinPool.commonPool()).registerRoutes(app);
+    }
+
+    @AfterEach
+    void stop() {
+        app.stop();
+        sessions.close();
+        factory.close();
+        stub.close();
+    }
+
+    @Test
+    void parallelSessionsOnlySeeTheirOwnUser() throws Exception {
+        int users = 200;
+        start(users);
+        List<String> cookies = inParallel(users, this::logIn);
+        assertEquals(users, new HashSet<>(cookies).size());
+        assertEquals(users, sessions.size());
+
+        List<String> bodies = inParallel(users * 3, i -> playlists(cookies.get(i % users)).body());
+        for (int i = 0; i < bodies.size(); i++) {
+            String body = bodies.get(i);
+            assertTrue(body.contains("\"Playlist 0 of user" + (i % users) + "\""), body);
+            assertEquals(1, body.split(" of user").length - 1, body);
+        }
+    }
+
+    @Test
+    void anonymousTrafficNeitherCreatesSessionsNorEvictsLoggedInOnes() throws Exception {
+        int users = 20;
+        start(users);
+        List<String> cookies = inParallel(users, this::logIn);
+
+        inParallel(500, i -> {
+            HttpResponse<String> login = get("/login/spotify", null);
+            assertEquals(302, login.statusCode());
+            assertFalse(login.headers().allValues("Set-Cookie").stream().anyMatch(c -> c.startsWith(SpotifySessionStore.SESSION_COOKIE)));
+            get("/login/spotify/callback?code=intruder&state=forged", null);
+            return null;
+        });
+        assertEquals(users, sessions.size());
+        assertEquals(users, stub.getCodeExchanges());
+
+        List<Integer> statuses = inParallel(users, i -> playlists(cookies.get(i)).statusCode());
+        assertTrue(statuses.stream().allMatch(status -> status == 200), statuses.toString());
+    }
+
+    @Test
+    void playlistsFailInsteadOfLookingEmptyWhenSpotifyKeepsFailing() throws Exception {
+        start(2);
+        String first = logIn(0);
+        String second = logIn(1);
+        assertEquals(200, playlists(first).statusCode());  // caches the first user's ID and playlists
+        stub.setRetryAfterSeconds(0);  // no usable Retry-After, so the scheduler's short test backoff applies
+        stub.rateLimitNext(Integer.MAX_VALUE);
+
+        // Every attempt at the playlist page was rate limited
+        HttpResponse<String> rateLimited = get("/playlists?refresh=true", first);
+        assertEquals(503, rateLimited.statusCode(), rateLimited.body());
+        assertEquals("1", rateLimited.headers().firstValue("Retry-After").orElse(null));
+        assertTrue(rateLimited.body().contains("\"error\""), rateLimited.body());
+        assertFalse(rateLimited.body().contains("\"playlists\""), rateLimited.body());
+        assertEquals(5, stub.getRateLimited());
+
+        // The profile call failed, so the user is unknown
+        HttpResponse<String> unknownUser = playlists(second);
+        assertEquals(502, unknownUser.statusCode(), unknownUser.body());
+        assertTrue(unknownUser.headers().firstValue("Retry-After").isEmpty());
+
+        stub.rateLimitNext(0);
+        assertEquals(200, get("/playlists?refresh=true", first).statusCode());
+        assertTrue(playlists(second).body().contains("\"Playlist 0 of user1\""));
+    }
+
+    // The browser flow: /login/spotify, then the callback Spotify would redirect to; returns the session cookie
+    private String logIn(int user) throws IOException, InterruptedException {
+        HttpResponse<String> login = get("/login/spotify", null);
+        String location = login.headers().firstValue("Location").orElseThrow();
+        String state = location.substring(location.indexOf("state=") + "state=".length()).split("&")[0];
+        HttpResponse<String> callback = get("/login/spotify/callback?code=user" + user + "&state=" + state,
+                "spotify_auth_state=" + URLEncoder.encode(state, StandardCharsets.UTF_8));
+        String cookie = callback.headers().allValues("Set-Cookie").stream()
+                .filter(c -> c.startsWith(SpotifySessionStore.SESSION_COOKIE + "="))
+                .map(c -> c.split(";", 2)[0])
+                .findFirst().orElse(null);
+        assertNotNull(cookie, "no session cookie for user" + user);
+        return cookie;
+    }
+
+    private HttpResponse<String> playlists(String cookie) throws IOException, InterruptedException {
+        return get("/playlists", cookie);
+    }
+
+    private HttpResponse<String> get(String path, String cookie) throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://localhost:" + app.port() + path));
+        if (cookie != null) {
+            request.header("Cookie", cookie);
+        }
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    @FunctionalInterface
+    private interface Call<T> {
+        T run(int index) throws Exception;
+    }
+
+    private static <T> List<T> inParallel(int count, Call<T> call) throws Exception {
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<T>> futures = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                int index = i;
+                futures.add(executor.submit(() -> call.run(index)));
+            }
+            List<T> results = new ArrayList<>();
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.music.spotify;
+
+import com.music.store.TokenCipher;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class SpotifyStateStoreTest {
+    private static final TokenCipher CIPHER = TokenCipher.fromBase64(Base64.getEncoder().encodeToString(new byte[32]));
+    private static final long HOUR = Duration.ofHours(1).toMillis();
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void sweepDeletesSessionsSavedBeforeTheCutoff() {
+        long now = System.currentTimeMillis();
+        SpotifyStateStore store = SpotifyStateStore.open(dir, CIPHER, Runnable::run);
+        store.saveSession("old", session("old", now - 10 * HOUR));
+        store.saveSession("recent", session("recent", now));
+        store.close();
+
+        // After a restart the first sweep finds the sessions saved by the previous process
+        store = SpotifyStateStore.open(dir, CIPHER, Runnable::run);
+        store.saveSession("newer", session("newer", now - 2 * HOUR));
+        assertEquals(1, store.deleteSessionsSavedBefore(now - 5 * HOUR));
+        assertNull(store.loadSession("old"));
+        assertNotNull(store.loadSession("recent"));
+
+        // Saving again moves a session past the cutoff of later sweeps
+        store.saveSession("newer", session("newer", now));
+        store.deleteSession("recent");
+        assertEquals(0, store.deleteSessionsSavedBefore(now - HOUR));
+        assertEquals("newer", store.loadSession("newer").userId());
+        assertEquals(0, store.deleteSessionsSavedBefore(now - HOUR));
+        store.saveSession("stale", session("stale", now - 3 * HOUR));
+        assertEquals(1, store.deleteSessionsSavedBefore(now - HOUR));
+        assertNull(store.loadSession("stale"));
+        store.close();
+    }
+
+    private static SpotifyStateStore.SessionState session(String user, long savedAt) {
+        return new SpotifyStateStore.SessionState(user + ".token", user + ".refresh", savedAt + HOUR, user, savedAt);
+    }
+}
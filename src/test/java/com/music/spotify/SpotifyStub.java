@@ -0,0 +1,372 @@
+package com.music.spotify;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.javalin.Javalin;
+import io.javalin.http.ContentType;
+import io.javalin.http.Context;
+import io.javalin.http.HttpStatus;
+
+import java.io.Serial;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Local stand-in for the Spotify accounts service and the Web API endpoints the service calls: authorize, token
+// exchange and refresh, profile, the user's playlists, playlist items, saved tracks and multi-ID track and episode
+// lookups. In lookups, IDs starting with "dead" are unknown and IDs starting with "gone" are available in no market.
+// An authorization code names the user it logs in, and access tokens are "<user>.<n>", so every Web API call shows
+// whose token it carries. Every user gets a library of the configured size; only playlist names differ between users,
+// so pages can be rendered once and reused. Each call is answered after latencyMillis (plus up to
+// latencyJitterMillis), and a rateLimitedShare of the Web API calls is answered with 429 and Retry-After, like
+// Spotify's rate limiter. Used by the tests and, through the test jar, by the load test in benchmarks.
+public class SpotifyStub implements AutoCloseable {
+    private static final ObjectMapper JSON = new ObjectMapper();
+    private static final String ADDED_AT = "2024-01-01T00:00:00Z";
+
+    private final Config config;
+    private final Javalin app;
+    private final ScheduledExecutorService delays;
+    private final AtomicInteger nextUser = new AtomicInteger();
+    private final AtomicLong nextToken = new AtomicLong();
+    private final Map<String, byte[]> pages = new ConcurrentHashMap<>();
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong apiCalls = new AtomicLong();
+    private final AtomicLong rateLimited = new AtomicLong();
+    private final AtomicInteger codeExchanges = new AtomicInteger();
+    private final AtomicInteger refreshes = new AtomicInteger();
+    private final AtomicInteger rateLimitsLeft = new AtomicInteger();
+    private final Set<String> accessTokensSeen = ConcurrentHashMap.newKeySet();
+    private volatile int retryAfterSeconds;
+    private volatile int tokenLifetimeSeconds;
+    private volatile long refreshLatencyMillis;
+
+    // tokenLifetimeSeconds is the expires_in of issued access tokens; short lifetimes exercise the refresh path
+    public record Config(int playlistsPerUser, int tracksPerPlaylist, int savedTracksPerUser, int latencyMillis,
+                         int latencyJitterMillis, double rateLimitedShare, int retryAfterSeconds, int tokenLifetimeSeconds) {
+        public static Config defaults() {
+            return new Config(60, 100, 500, 20, 10, 0.0, 1, 3600);
+        }
+
+        // One empty playlist per user and no added latency, for tests that only look at who sees what
+        public static Config minimal() {
+            return new Config(1, 0, 0, 0, 0, 0.0, 1, 3600);
+        }
+    }
+
+    public SpotifyStub(Config config) {
+        this.config = config;
+        this.retryAfterSeconds = config.retryAfterSeconds();
+        this.tokenLifetimeSeconds = config.tokenLifetimeSeconds();
+        this.delays = Executors.newScheduledThreadPool(Runtime.getRuntime().availableProcessors(), runnable -> {
+            Thread thread = new Thread(runnable, "spotify-stub-latency");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.app = Javalin.create(javalin -> javalin.showJavalinBanner = false);
+        app.get("/authorize", this::authorize);
+        app.post("/api/token", ctx -> respond(ctx, false, () -> token(ctx)));
+        app.get("/v1/me", ctx -> respond(ctx, true, () -> profile(ctx)));
+        app.get("/v1/users/{userId}/playlists", ctx -> respond(ctx, true, () -> playlists(ctx)));
+        app.get("/v1/playlists/{playlistId}/tracks", ctx -> respond(ctx, true, () -> playlistItems(ctx)));
+        app.get("/v1/me/tracks", ctx -> respond(ctx, true, () -> savedTracks(ctx)));
+        app.get("/v1/tracks", ctx -> respond(ctx, true, () -> severalTracks(ctx)));
+        app.get("/v1/episodes", ctx -> respond(ctx, true, () -> severalEpisodes(ctx)));
+    }
+
+    // Starts on port, or on a free port if it is 0; returns the base URI for both the accounts service and the API
+    public String start(int port) {
+        app.start("127.0.0.1", port);
+        return "http://127.0.0.1:" + app.port();
+    }
+
+    public SpotifyHosts hosts() {
+        URI uri = URI.create("http://127.0.0.1:" + app.port());
+        return new SpotifyHosts(uri, uri);
+    }
+
+    // All calls, token calls and those answered with 429 included
+    public long getCalls() {
+        return calls.get();
+    }
+
+    // Web API calls that were not answered with 429
+    public long getApiCalls() {
+        return apiCalls.get();
+    }
+
+    public long getRateLimited() {
+        return rateLimited.get();
+    }
+
+    public int getCodeExchanges() {
+        return codeExchanges.get();
+    }
+
+    public int getRefreshes() {
+        return refreshes.get();
+    }
+
+    // Every access token a Web API call has carried
+    public Set<String> getAccessTokensSeen() {
+        return accessTokensSeen;
+    }
+
+    // The next count Web API calls are answered with 429, before the configured share applies again
+    public void rateLimitNext(int count) {
+        rateLimitsLeft.set(count);
+    }
+
+    public void setRetryAfterSeconds(int retryAfterSeconds) {
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public void setTokenLifetimeSeconds(int tokenLifetimeSeconds) {
+        this.tokenLifetimeSeconds = tokenLifetimeSeconds;
+    }
+
+    // Added to the latency of refresh grants only
+    public void setRefreshLatencyMillis(long refreshLatencyMillis) {
+        this.refreshLatencyMillis = refreshLatencyMillis;
+    }
+
+    // The user approves at once and is sent back to the app with a code that names a new stub user
+    private void authorize(Context ctx) {
+        String code = "user" + nextUser.incrementAndGet();
+        ctx.redirect(ctx.queryParam("redirect_uri") + "?code=" + code + "&state=" + ctx.queryParam("state"));
+    }
+
+    private interface Handler {
+        Object handle() throws StubException;
+    }
+
+    private static final class StubException extends Exception {
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private final HttpStatus status;
+
+        private StubException(HttpStatus status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    // Answers after the configured latency without holding a thread while waiting
+    private void respond(Context ctx, boolean webApi, Handler handler) {
+        calls.incrementAndGet();
+        long latency = config.latencyMillis();
+        if (config.latencyJitterMillis() > 0) {
+            latency += ThreadLocalRandom.current().nextInt(config.latencyJitterMillis() + 1);
+        }
+        if ("refresh_token".equals(ctx.formParam("grant_type"))) {
+            latency += refreshLatencyMillis;
+        }
+        long delay = latency;
+        ctx.future(() -> {
+            CompletableFuture<Void> done = new CompletableFuture<>();
+            delays.schedule(() -> answer(ctx, webApi, handler, done), delay, TimeUnit.MILLISECONDS);
+            return done;
+        });
+    }
+
+    private void answer(Context ctx, boolean webApi, Handler handler, CompletableFuture<Void> done) {
+        try {
+            if (webApi && isRateLimited()) {
+                rateLimited.incrementAndGet();
+                ctx.header("Retry-After", String.valueOf(retryAfterSeconds));
+                throw new StubException(HttpStatus.TOO_MANY_REQUESTS, "API rate limit exceeded");
+            }
+            if (webApi) {
+                apiCalls.incrementAndGet();
+            }
+            Object body = handler.handle();
+            ctx.contentType(ContentType.APPLICATION_JSON);
+            ctx.result(body instanceof byte[] bytes ? bytes : JSON.writeValueAsBytes(body));
+        } catch (StubException e) {
+            error(ctx, e.status, e.getMessage());
+        } catch (Exception e) {
+            error(ctx, HttpStatus.INTERNAL_SERVER_ERROR, e.toString());
+        }
+        done.complete(null);
+    }
+
+    private boolean isRateLimited() {
+        return rateLimitsLeft.getAndUpdate(left -> Math.max(0, left - 1)) > 0
+                || ThreadLocalRandom.current().nextDouble() < config.rateLimitedShare();
+    }
+
+    private static void error(Context ctx, HttpStatus status, String message) {
+        ctx.status(status).contentType(ContentType.APPLICATION_JSON)
+                .result("{\"error\":{\"status\":" + status.getCode() + ",\"message\":\"" + message.replace("\"", "'") + "\"}}");
+    }
+
+    // Refresh tokens are "<user>.refresh", so no per-user state is kept
+    private Object token(Context ctx) throws StubException {
+        String grantType = ctx.formParam("grant_type");
+        String refreshToken = ctx.formParam("refresh_token");
+        String user;
+        if ("authorization_code".equals(grantType) && ctx.formParam("code") != null) {
+            codeExchanges.incrementAndGet();
+            user = ctx.formParam("code");
+        } else if ("refresh_token".equals(grantType) && refreshToken != null && refreshToken.endsWith(".refresh")) {
+            refreshes.incrementAndGet();
+            user = refreshToken.substring(0, refreshToken.length() - ".refresh".length());
+        } else {
+            throw new StubException(HttpStatus.BAD_REQUEST, "invalid_grant");
+        }
+        Map<String, Object> token = new LinkedHashMap<>();
+        token.put("access_token", user + "." + nextToken.incrementAndGet());
+        token.put("token_type", "Bearer");
+        token.put("scope", "playlist-read-private user-library-read");
+        token.put("expires_in", tokenLifetimeSeconds);
+        token.put("refresh_token", user + ".refresh");
+        return token;
+    }
+
+    // The user whose token a Web API call carries
+    private String user(Context ctx) throws StubException {
+        String authorization = ctx.header("Authorization");
+        if (authorization == null || !authorization.startsWith("Bearer ") || authorization.indexOf('.') < 0) {
+            throw new StubException(HttpStatus.UNAUTHORIZED, "Invalid access token");
+        }
+        accessTokensSeen.add(authorization.substring("Bearer ".length()));
+        return authorization.substring("Bearer ".length(), authorization.indexOf('.'));
+    }
+
+    private Object profile(Context ctx) throws StubException {
+        String user = user(ctx);
+        return Map.of("id", user, "display_name", "Stub " + user, "type", "user", "uri", "spotify:user:" + user);
+    }
+
+    // Playlist IDs are shared, so their items are too; the names tell users apart
+    private Object playlists(Context ctx) throws StubException {
+        String user = user(ctx);
+        if (!user.equals(ctx.pathParam("userId"))) {
+            throw new StubException(HttpStatus.FORBIDDEN, "Not your playlists");
+        }
+        return page(ctx, "playlists:" + user, config.playlistsPerUser(), i -> {
+            Map<String, Object> playlist = new LinkedHashMap<>();
+            playlist.put("id", "playlist" + i);
+            playlist.put("name", "Playlist " + i + " of " + user);
+            playlist.put("snapshot_id", "snapshot" + i);
+            playlist.put("type", "playlist");
+            playlist.put("uri", "spotify:playlist:playlist" + i);
+            playlist.put("tracks", Map.of("total", config.tracksPerPlaylist()));
+            return playlist;
+        });
+    }
+
+    private Object playlistItems(Context ctx) throws StubException {
+        user(ctx);
+        String playlistId = ctx.pathParam("playlistId");
+        return page(ctx, "items:" + playlistId, config.tracksPerPlaylist(),
+                i -> Map.of("added_at", ADDED_AT, "is_local", false, "track", track(playlistId + "t" + i)));
+    }
+
+    private Object savedTracks(Context ctx) throws StubException {
+        user(ctx);
+        return page(ctx, "saved", config.savedTracksPerUser(), i -> Map.of("added_at", ADDED_AT, "track", track("saved" + i)));
+    }
+
+    private Object severalTracks(Context ctx) throws StubException {
+        user(ctx);
+        List<Object> tracks = new ArrayList<>();
+        for (String id : ids(ctx)) {
+            Map<String, Object> track = id.startsWith("dead") ? null : track(id);
+            if (track != null && id.startsWith("gone")) {
+                track.put("available_markets", List.of());
+            }
+            tracks.add(track);
+        }
+        return Collections.singletonMap("tracks", tracks);
+    }
+
+    private Object severalEpisodes(Context ctx) throws StubException {
+        user(ctx);
+        List<Object> episodes = new ArrayList<>();
+        for (String id : ids(ctx)) {
+            Map<String, Object> episode = null;
+            if (!id.startsWith("dead")) {
+                episode = new LinkedHashMap<>();
+                episode.put("id", id);
+                episode.put("name", "Episode " + id);
+                episode.put("type", "episode");
+                episode.put("uri", "spotify:episode:" + id);
+                episode.put("duration_ms", 1_800_000);
+                episode.put("is_playable", !id.startsWith("gone"));
+                episode.put("show", Map.of("id", "show", "name", "Show", "type", "show", "uri", "spotify:show:show"));
+            }
+            episodes.add(episode);
+        }
+        return Collections.singletonMap("episodes", episodes);
+    }
+
+    private static String[] ids(Context ctx) throws StubException {
+        String ids = ctx.queryParam("ids");
+        String[] split = ids == null || ids.isBlank() ? new String[0] : ids.split(",");
+        if (split.length == 0 || split.length > 50) {
+            throw new StubException(HttpStatus.BAD_REQUEST, "Invalid ids");
+        }
+        return split;
+    }
+
+    private static Map<String, Object> track(String id) {
+        Map<String, Object> artist = Map.of("id", "artist" + id.hashCode() % 100, "name", "Artist", "type", "artist", "uri", "spotify:artist:a");
+        Map<String, Object> track = new LinkedHashMap<>();
+        track.put("id", id);
+        track.put("name", "Track " + id);
+        track.put("type", "track");
+        track.put("uri", "spotify:track:" + id);
+        track.put("duration_ms", 180_000);
+        track.put("artists", List.of(artist));
+        track.put("album", Map.of("id", "album", "name", "Album", "type", "album", "album_type", "album", "uri", "spotify:album:album"));
+        return track;
+    }
+
+    private interface Item {
+        Object at(int index);
+    }
+
+    // A paging object like Spotify's; the rendered bytes are reused, so the stub stays cheap under load
+    private byte[] page(Context ctx, String collection, int total, Item item) {
+        int offset = Math.max(0, ctx.queryParamAsClass("offset", Integer.class).getOrDefault(0));
+        int limit = Math.min(50, Math.max(1, ctx.queryParamAsClass("limit", Integer.class).getOrDefault(20)));
+        return pages.computeIfAbsent(collection + ":" + offset + ":" + limit, key -> {
+            List<Object> items = new ArrayList<>();
+            for (int i = offset; i < Math.min(total, offset + limit); i++) {
+                items.add(item.at(i));
+            }
+            Map<String, Object> page = new LinkedHashMap<>();
+            page.put("href", ctx.url());
+            page.put("items", items);
+            page.put("limit", limit);
+            page.put("offset", offset);
+            page.put("total", total);
+            page.put("next", offset + limit < total ? ctx.url() + "?offset=" + (offset + limit) + "&limit=" + limit : null);
+            page.put("previous", null);
+            try {
+                return JSON.writeValueAsBytes(page);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    @Override
+    public void close() {
+        app.stop();
+        delays.shutdownNow();
+    }
+}
@@ -0,0 +1,115 @@
+package com.music.spotify;
+
+import com.music.store.TokenCipher;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Refreshes of a real session against the token endpoint of SpotifyStub
+class TokenRefreshCoordinatorTest {
+    private static final int CALLERS = 1000;
+
+    @TempDir
+    Path dir;
+    private SpotifyStub stub;
+    private SpotifyStateStore stateStore;
+    private SpotifyServiceFactory factory;
+
+    @BeforeEach
+    void start() {
+        stub = new SpotifyStub(SpotifyStub.Config.minimal());
+        stub.start(0);
+        // Saved sessions show which tokens a service holds
+        stateStore = SpotifyStateStore.open(dir, TokenCipher.fromBase64(Base64.getEncoder().encodeToString(new byte[32])), Runnable::run);
+        factory = new SpotifyServiceFactory("client", "secret", URI.create("http://localhost/login/spotify/callback"),
+                PaginatedFetcher.DEFAULT_MAX_CONCURRENCY, new SpotifyRequestScheduler(100_000, 100_000, 64, ForkJoinPool.commonPool()),
+                stateStore, stub.hosts());
+    }
+
+    @AfterEach
+    void stop() {
+        factory.close();
+        stateStore.close();
+        stub.close();
+    }
+
+    @Test
+    void burstOfCallersWithAnExpiredTokenSendsOneRefresh() throws Exception {
+        SpotifyService service = factory.create("session");
+        long now = System.currentTimeMillis();
+        service.restore(new SpotifyStateStore.SessionState("user1.expired", "user1.refresh", now - 1000, null, now));
+        stub.setRefreshLatencyMillis(200);  // long enough for the whole burst to arrive while it is in flight
+
+        CountDownLatch go = new CountDownLatch(1);
+        List<CompletableFuture<String>> userIds = new ArrayList<>();
+        try (ExecutorService callers = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<CompletableFuture<CompletableFuture<String>>> started = new ArrayList<>();
+            for (int i = 0; i < CALLERS; i++) {
+                CompletableFuture<CompletableFuture<String>> call = new CompletableFuture<>();
+                started.add(call);
+                callers.execute(() -> {
+                    try {
+                        go.await();
+                        call.complete(service.getUserIdAsync());
+                    } catch (Throwable e) {
+                        call.completeExceptionally(e);
+                    }
+                });
+            }
+            go.countDown();
+            for (CompletableFuture<CompletableFuture<String>> call : started) {
+                userIds.add(call.join());
+            }
+        }
+
+        for (CompletableFuture<String> userId : userIds) {
+            assertEquals("user1", userId.join());
+        }
+        assertEquals(1, stub.getRefreshes());
+        // No call went out with the expired token
+        assertFalse(stub.getAccessTokensSeen().contains("user1.expired"), stub.getAccessTokensSeen().toString());
+        assertEquals(1, stub.getAccessTokensSeen().size());
+        service.close();
+    }
+
+    @Test
+    void tokenIsRefreshedAheadOfExpiry() throws Exception {
+        stub.setTokenLifetimeSeconds(2);  // refreshed after 80% of the lifetime, 1.6 s
+        SpotifyService service = factory.create("session");
+        service.exchangeAuthorizationCodeAsync("user2").join();
+        long loggedInAt = System.currentTimeMillis();
+
+        // The session is saved once the new token has been applied
+        while (!"user2.2".equals(stateStore.loadSession("session").accessToken())
+                && System.currentTimeMillis() - loggedInAt < 5000) {
+            assertTrue(service.isLoggedIn());
+            Thread.sleep(20);
+        }
+        long refreshedAfter = System.currentTimeMillis() - loggedInAt;
+        assertEquals(1, stub.getRefreshes());
+        assertTrue(refreshedAfter < 2000, "refreshed after " + refreshedAfter + " ms");
+
+        // Requests after the refresh find a valid token and do not wait for another one
+        assertEquals("user2", service.getUserIdAsync().join());
+        assertEquals(1, stub.getRefreshes());
+        assertEquals(Set.of("user2.2"), stub.getAccessTokensSeen());
+        service.close();
+    }
+}
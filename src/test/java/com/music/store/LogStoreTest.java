@@ -0,0 +1,176 @@
+package com.music.store;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LogStoreTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void tornRecordAtTheEndIsCutOffOnOpen() throws IOException {
+        LogStore store = LogStore.open(dir);
+        store.put("a", bytes("first"));
+        long endOfFirst = Files.size(log(0));
+        store.put("b", bytes("second"));
+        store.close();
+
+        // A crash while writing b: no hint, and only part of the record on disk
+        Files.delete(hint(0));
+        try (FileChannel channel = FileChannel.open(log(0), StandardOpenOption.WRITE)) {
+            channel.truncate(Files.size(log(0)) - 3);
+        }
+
+        store = LogStore.open(dir);
+        assertArrayEquals(bytes("first"), store.get("a"));
+        assertNull(store.get("b"));
+        assertEquals(endOfFirst, Files.size(log(0)));
+        // New records follow the last valid one
+        store.put("c", bytes("third"));
+        store.close();
+        store = LogStore.open(dir);
+        assertArrayEquals(bytes("third"), store.get("c"));
+        assertEquals(2, store.size());
+        store.close();
+    }
+
+    @Test
+    void garbageAfterTheHintedEndIsCutOffOnOpen() throws IOException {
+        LogStore store = LogStore.open(dir);
+        store.put("a", bytes("first"));
+        store.close();
+        long cleanSize = Files.size(log(0));
+        try (FileChannel channel = FileChannel.open(log(0), StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17}));
+        }
+
+        store = LogStore.open(dir);
+        assertArrayEquals(bytes("first"), store.get("a"));
+        assertEquals(1, store.size());
+        assertEquals(cleanSize, Files.size(log(0)));
+        store.close();
+    }
+
+    @Test
+    void corruptHintIsIgnoredAndTheLogReplayed() throws IOException {
+        LogStore store = LogStore.open(dir);
+        store.put("a", bytes("first"));
+        store.put("b", bytes("second"));
+        store.delete("a");
+        store.close();
+
+        byte[] hint = Files.readAllBytes(hint(0));
+        hint[6] ^= 0x7f;
+        Files.write(hint(0), hint);
+
+        store = LogStore.open(dir);
+        assertNull(store.get("a"));
+        assertArrayEquals(bytes("second"), store.get("b"));
+        assertEquals(1, store.size());
+        store.close();
+    }
+
+    @Test
+    void recordsWrittenAfterTheHintAreReplayed() throws IOException {
+        LogStore store = LogStore.open(dir);
+        store.put("a", bytes("first"));
+        store.close();
+        byte[] staleHint = Files.readAllBytes(hint(0));
+
+        store = LogStore.open(dir);
+        store.put("b", bytes("second"));
+        store.delete("a");
+        store.close();
+        // As after a crash: the hint on disk only covers the first record
+        Files.write(hint(0), staleHint);
+
+        store = LogStore.open(dir);
+        assertNull(store.get("a"));
+        assertArrayEquals(bytes("second"), store.get("b"));
+        store.close();
+    }
+
+    @Test
+    void putsAndDeletesDuringCompactionAreKept() throws Exception {
+        LogStore store = LogStore.open(dir);
+        Map<String, byte[]> expected = new ConcurrentHashMap<>();
+        byte[] large = new byte[4096];
+        for (int i = 0; i < 2000; i++) {
+            store.put("key" + i, large);  // enough to copy that the writer below overlaps the compaction
+            expected.put("key" + i, large);
+        }
+
+        for (int round = 0; round < 5; round++) {
+            AtomicBoolean compacting = new AtomicBoolean(true);
+            int base = round * 10_000;
+            CompletableFuture<Void> writer = CompletableFuture.runAsync(() -> {
+                int i = 0;
+                while (compacting.get() || i < 100) {
+                    String key = "key" + (i % 2000);
+                    if (i % 3 == 0) {
+                        store.delete(key);
+                        expected.remove(key);
+                    } else {
+                        byte[] value = bytes("value" + (base + i));
+                        store.put(key, value);
+                        expected.put(key, value);
+                    }
+                    i++;
+                }
+            });
+            store.compact();
+            compacting.set(false);
+            writer.join();
+            assertContents(expected, store);
+        }
+        store.close();
+
+        LogStore reopened = LogStore.open(dir);
+        assertContents(expected, reopened);
+        assertTrue(Files.exists(log(5)));
+        assertTrue(Files.notExists(log(4)));
+        reopened.close();
+    }
+
+    private static void assertContents(Map<String, byte[]> expected, LogStore store) {
+        assertEquals(expected.size(), store.size());
+        for (int i = 0; i < 2000; i++) {
+            String key = "key" + i;
+            byte[] value = expected.get(key);
+            if (value == null) {
+                assertNull(store.get(key), key);
+            } else {
+                assertArrayEquals(value, store.get(key), key);
+            }
+        }
+    }
+
+    private Path log(long generation) {
+        return dir.resolve("data-" + generation + ".log");
+    }
+
+    private Path hint(long generation) {
+        return dir.resolve("data-" + generation + ".hint");
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
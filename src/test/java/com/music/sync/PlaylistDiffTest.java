@@ -0,0 +1,197 @@
+package com.music.sync;
+
+import fileProcessor.CompactLibrary;
+import fileProcessor.CompactPlaylist;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Every change set is applied to the live list the way Spotify would apply it and must give back the export
+class PlaylistDiffTest {
+
+    @Test
+    void equalPlaylistsAreInSync() {
+        List<String> uris = uris("a", "b", "a", "c");
+        PlaylistChangeSet changes = diff(uris, uris);
+
+        assertEquals(PlaylistChangeSet.Status.IN_SYNC, changes.status());
+        assertEquals(0, changes.changeCount());
+        assertEquals(PlaylistDiff.fingerprint(PlaylistDiff.hashes(uris)),
+                PlaylistDiff.fingerprint(PlaylistDiff.hashes(export(uris), new PlaylistDiff.ReferenceHashes())));
+    }
+
+    @Test
+    void anEmptySideIsAllInsertionsOrAllRemovals() {
+        List<String> uris = uris("a", "b", "a", "c");
+
+        PlaylistChangeSet fill = assertApplies(List.of(), uris);
+        assertEquals(List.of(new PlaylistChangeSet.Insertion(0, uris)), fill.insertions());
+        assertTrue(fill.removals().isEmpty() && fill.moves().isEmpty());
+
+        PlaylistChangeSet empty = assertApplies(uris, List.of());
+        assertEquals(uris.size(), empty.removals().size());
+        assertTrue(empty.moves().isEmpty() && empty.insertions().isEmpty());
+
+        assertEquals(PlaylistChangeSet.Status.IN_SYNC, diff(List.of(), List.of()).status());
+    }
+
+    @Test
+    void duplicatesArePairedByOccurrence() {
+        // The k-th copy on one side stays the k-th copy on the other, so surplus copies go and missing ones come
+        PlaylistChangeSet fewer = assertApplies(uris("a", "b", "a", "c", "a"), uris("a", "c", "a"));
+        assertEquals(2, fewer.removals().size());
+        assertTrue(fewer.insertions().isEmpty());
+
+        PlaylistChangeSet more = assertApplies(uris("a", "b"), uris("a", "a", "b", "a"));
+        assertTrue(more.removals().isEmpty() && more.moves().isEmpty());
+        assertEquals(2, more.changeCount());
+
+        assertApplies(uris("a", "a", "b", "b"), uris("b", "a", "b", "a"));
+        assertApplies(uris("x", "a", "a", "a", "y"), uris("y", "a", "a", "a", "x"));
+        assertApplies(uris("a", "b", "a", "b", "a"), uris("b", "a", "b", "a", "b"));
+    }
+
+    @Test
+    void aFullReversalMovesAllButOneItem() {
+        for (int n : new int[]{2, 3, 10, 1000}) {
+            List<String> live = IntStream.range(0, n).mapToObj(i -> "spotify:track:" + i).toList();
+            List<String> reversed = new ArrayList<>(live);
+            Collections.reverse(reversed);
+
+            PlaylistChangeSet changes = assertApplies(live, reversed);
+            assertEquals(n - 1, changes.moves().size());
+            assertEquals(n - 1, changes.changeCount());
+        }
+    }
+
+    @Test
+    void onlyItemsOffALongestIncreasingRunAreMoved() {
+        // Rotating by one is a single move, whichever end the item comes from
+        assertEquals(1, assertApplies(uris("a", "b", "c", "d", "e"), uris("b", "c", "d", "e", "a")).moves().size());
+        assertEquals(1, assertApplies(uris("a", "b", "c", "d", "e"), uris("e", "a", "b", "c", "d")).moves().size());
+        // Two interleaved runs of three: the three of one run move
+        assertEquals(3, assertApplies(uris("a", "b", "c", "d", "e", "f"), uris("d", "a", "e", "b", "f", "c")).moves().size());
+
+        Random random = new Random(7);
+        for (int round = 0; round < 300; round++) {
+            List<String> live = distinct(random, "live", 1 + random.nextInt(60));
+            List<String> export = new ArrayList<>(live);
+            Collections.shuffle(export, random);
+            // Some items exist on one side only, so removals and insertions shift the moved positions
+            export.subList(0, random.nextInt(export.size() / 3 + 1)).clear();
+            export.addAll(distinct(random, "new" + round, random.nextInt(5)));
+            Collections.shuffle(export.subList(export.size() / 2, export.size()), random);
+
+            PlaylistChangeSet changes = assertApplies(live, export);
+            List<Integer> exportOrder = new ArrayList<>();
+            for (String uri : live) {
+                int index = export.indexOf(uri);
+                if (index >= 0) {
+                    exportOrder.add(index);
+                }
+            }
+            assertEquals(exportOrder.size() - longestIncreasing(exportOrder), changes.moves().size(), live + " -> " + export);
+        }
+    }
+
+    @Test
+    void randomEditsWithDuplicatesRoundTrip() {
+        Random random = new Random(42);
+        for (int round = 0; round < 2000; round++) {
+            int alphabet = 1 + random.nextInt(8);  // small, so most items repeat
+            List<String> live = random(random, alphabet, random.nextInt(30));
+            List<String> export = random.nextBoolean() ? random(random, alphabet, random.nextInt(30)) : edit(random, live, alphabet);
+            assertApplies(live, export);
+        }
+    }
+
+    private static PlaylistChangeSet assertApplies(List<String> live, List<String> export) {
+        PlaylistChangeSet changes = diff(live, export);
+        assertEquals(export, apply(live, changes), live + " -> " + export + ": " + changes);
+        assertEquals(live.equals(export) ? PlaylistChangeSet.Status.IN_SYNC : PlaylistChangeSet.Status.UPDATE, changes.status());
+        return changes;
+    }
+
+    private static PlaylistChangeSet diff(List<String> live, List<String> export) {
+        CompactPlaylist playlist = export(export);
+        return PlaylistDiff.diff("Playlist", "id", "snapshot", live, PlaylistDiff.hashes(live),
+                playlist, PlaylistDiff.hashes(playlist, new PlaylistDiff.ReferenceHashes()));
+    }
+
+    // Removals against the live positions, then each move on the list as it is at that point, then insertions
+    private static List<String> apply(List<String> live, PlaylistChangeSet changes) {
+        List<String> list = new ArrayList<>(live);
+        List<PlaylistChangeSet.Removal> removals = new ArrayList<>(changes.removals());
+        removals.sort((a, b) -> Integer.compare(b.position(), a.position()));
+        for (PlaylistChangeSet.Removal removal : removals) {
+            assertEquals(removal.uri(), list.remove(removal.position()));
+        }
+        for (PlaylistChangeSet.Move move : changes.moves()) {
+            // insert_before counts the moved item too, so a move down lands one slot earlier
+            String uri = list.remove(move.rangeStart());
+            assertEquals(move.uri(), uri);
+            list.add(move.insertBefore() > move.rangeStart() ? move.insertBefore() - 1 : move.insertBefore(), uri);
+        }
+        for (PlaylistChangeSet.Insertion insertion : changes.insertions()) {
+            list.addAll(insertion.position(), insertion.uris());
+        }
+        return list;
+    }
+
+    private static CompactPlaylist export(List<String> uris) {
+        List<String> playlist = new ArrayList<>(List.of("Playlist", ""));
+        playlist.addAll(uris);
+        return CompactLibrary.fromLegacy(List.of(playlist)).getPlaylists().get(0);
+    }
+
+    private static int longestIncreasing(List<Integer> values) {
+        int[] lengths = new int[values.size()];
+        int longest = 0;
+        for (int i = 0; i < values.size(); i++) {
+            lengths[i] = 1;
+            for (int j = 0; j < i; j++) {
+                if (values.get(j) < values.get(i)) {
+                    lengths[i] = Math.max(lengths[i], lengths[j] + 1);
+                }
+            }
+            longest = Math.max(longest, lengths[i]);
+        }
+        return longest;
+    }
+
+    // Removes, inserts and swaps a few items, like an edited playlist
+    private static List<String> edit(Random random, List<String> live, int alphabet) {
+        List<String> export = new ArrayList<>(live);
+        for (int edits = random.nextInt(6); edits > 0; edits--) {
+            int kind = random.nextInt(3);
+            if (kind == 0 && !export.isEmpty()) {
+                export.remove(random.nextInt(export.size()));
+            } else if (kind == 1) {
+                export.add(random.nextInt(export.size() + 1), "spotify:track:" + random.nextInt(alphabet + 2));
+            } else if (export.size() > 1) {
+                Collections.swap(export, random.nextInt(export.size()), random.nextInt(export.size()));
+            }
+        }
+        return export;
+    }
+
+    private static List<String> random(Random random, int alphabet, int size) {
+        return IntStream.range(0, size).mapToObj(i -> "spotify:track:" + random.nextInt(alphabet)).toList();
+    }
+
+    private static List<String> distinct(Random random, String prefix, int size) {
+        return IntStream.range(0, size).mapToObj(i -> "spotify:track:" + prefix + i + "x" + random.nextInt(1000)).toList();
+    }
+
+    private static List<String> uris(String... ids) {
+        return Arrays.stream(ids).map(id -> "spotify:track:" + id).toList();
+    }
+}
@@ -0,0 +1,73 @@
+package com.music.sync;
+
+import com.music.spotify.SpotifyService;
+import fileProcessor.CompactLibrary;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SyncEngineTest {
+    private final SpotifyService service = mock(SpotifyService.class);
+    private final SyncEngine engine = new SyncEngine();
+    private final CompactLibrary export = CompactLibrary.fromLegacy(List.of(
+            List.of("Matching", "", "spotify:track:1", "spotify:track:2"),
+            List.of("Outdated", "", "spotify:track:3", "spotify:track:4"),
+            List.of("New", "", "spotify:track:5")));
+
+    SyncEngineTest() {
+        when(service.getUserIdAsync()).thenReturn(CompletableFuture.completedFuture("user"));
+        when(service.fetchPlaylistItemUris("matching")).thenReturn(CompletableFuture.completedFuture(
+                List.of("spotify:track:1", "spotify:track:2")));
+        when(service.fetchPlaylistItemUris("outdated")).thenReturn(CompletableFuture.completedFuture(
+                List.of("spotify:track:3")));
+    }
+
+    @Test
+    void pendingChangesAreReportedAgainOnARepeatSync() {
+        livePlaylists();
+        List<PlaylistChangeSet.Status> expectedFirst = List.of(
+                PlaylistChangeSet.Status.IN_SYNC, PlaylistChangeSet.Status.UPDATE, PlaylistChangeSet.Status.CREATE);
+        assertEquals(expectedFirst, statuses(engine.plan(service, export).join()));
+
+        SyncEngine.SyncReport repeat = engine.plan(service, export).join();
+        // Only the playlist that was in sync is skipped; the others still need their changes
+        assertEquals(List.of(PlaylistChangeSet.Status.UNCHANGED, PlaylistChangeSet.Status.UPDATE,
+                PlaylistChangeSet.Status.CREATE), statuses(repeat));
+        assertEquals(1, repeat.skipped());
+        assertEquals(1, repeat.playlists().get(1).insertions().size());
+        assertEquals(List.of("spotify:track:5"), repeat.playlists().get(2).insertions().get(0).uris());
+        verify(service, times(1)).fetchPlaylistItemUris("matching");
+        verify(service, times(2)).fetchPlaylistItemUris("outdated");
+    }
+
+    @Test
+    void unreadablePlaylistsFailThePlanAndRecordNothing() {
+        when(service.fetchPlaylistSnapshots(true)).thenReturn(
+                CompletableFuture.failedFuture(new IllegalStateException("Playlists could not be fetched")));
+        assertThrows(CompletionException.class, () -> engine.plan(service, export).join());
+
+        livePlaylists();
+        // The failed sync did not record the export playlists as created, so they are all compared now
+        assertEquals(List.of(PlaylistChangeSet.Status.IN_SYNC, PlaylistChangeSet.Status.UPDATE,
+                PlaylistChangeSet.Status.CREATE), statuses(engine.plan(service, export).join()));
+    }
+
+    private void livePlaylists() {
+        when(service.fetchPlaylistSnapshots(true)).thenReturn(CompletableFuture.completedFuture(List.of(
+                new SpotifyService.PlaylistSnapshot("matching", "Matching", "snapshot1"),
+                new SpotifyService.PlaylistSnapshot("outdated", "Outdated", "snapshot2"))));
+    }
+
+    private static List<PlaylistChangeSet.Status> statuses(SyncEngine.SyncReport report) {
+        return report.playlists().stream().map(PlaylistChangeSet::status).toList();
+    }
+}
@@ -0,0 +1,191 @@
+package com.music.transfer;
+
+import com.music.spotify.SpotifyService;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class TransferJobEngineTest {
+    private static final String NEVER_FINISHES = "never-finishes";
+
+    private final TrackSink sink = playlist -> CompletableFuture.completedFuture(null);
+
+    @Test
+    void jobBelongsToTheSessionAndNotToTheServiceInstance() {
+        TransferJobEngine engine = new TransferJobEngine(sink);
+        TransferJob job = engine.submit(service("session1"), List.of("a", "b"));
+        assertEquals(TransferJob.Status.COMPLETED, job.getStatus());
+
+        // Another SpotifyService instance of the same session, as a restored session would be
+        SpotifyService restored = service("session1");
+        assertTrue(engine.find(job.getId()).isOwnedBy(restored));
+        assertFalse(job.isOwnedBy(service("session2")));
+        assertTrue(engine.resume(job, restored));
+    }
+
+    @Test
+    void runningJobsAreNeverDroppedToMakeRoom() {
+        TransferJobEngine engine = retaining(4);
+        SpotifyService service = service("session1");
+        List<TransferJob> running = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            running.add(engine.submit(service, List.of(NEVER_FINISHES + i)));
+        }
+        TransferJob lastFinished = null;
+        for (int i = 0; i < 10; i++) {
+            lastFinished = engine.submit(service, List.of("playlist" + i));
+            assertEquals(TransferJob.Status.COMPLETED, lastFinished.getStatus());
+        }
+
+        for (TransferJob job : running) {
+            assertSame(job, engine.find(job.getId()));
+            assertEquals(TransferJob.Status.RUNNING, job.getStatus());
+        }
+        assertNotNull(engine.find(lastFinished.getId()));
+        assertEquals(4, engine.size());
+    }
+
+    @Test
+    void runningJobsMayExceedTheLimit() {
+        TransferJobEngine engine = retaining(2);
+        SpotifyService service = service("session1");
+        TransferJob first = engine.submit(service, List.of(NEVER_FINISHES + 1));
+        engine.submit(service, List.of(NEVER_FINISHES + 2));
+        engine.submit(service, List.of(NEVER_FINISHES + 3));
+        assertEquals(3, engine.size());
+        assertSame(first, engine.find(first.getId()));
+        assertNull(engine.find("unknown"));
+    }
+
+    @Test
+    void thousandsOfSynchronousPlaylistsBehindAPendingOneDoNotOverflowTheStack() {
+        HeldPlaylists held = new HeldPlaylists();
+        TransferJobEngine engine = new TransferJobEngine(sink, 1, 1);
+        List<String> playlistIds = new ArrayList<>();
+        playlistIds.add(HeldPlaylists.HELD + "first");
+        for (int i = 0; i < 50_000; i++) {
+            playlistIds.add("playlist" + i);
+        }
+        TransferJob job = engine.submit(held.service("session1"), playlistIds);
+        assertEquals(List.of(HeldPlaylists.HELD + "first"), held.started());
+
+        // Every other playlist completes synchronously once the single permit is free
+        held.complete(HeldPlaylists.HELD + "first");
+        assertEquals(TransferJob.Status.COMPLETED, job.getStatus());
+        assertEquals(50_001, job.progress().get("completedPlaylists"));
+
+        // The permit was released: the next job runs straight away
+        assertEquals(TransferJob.Status.COMPLETED, engine.submit(held.service("session2"), List.of("next")).getStatus());
+    }
+
+    @Test
+    void jobsTakeTurnsForThePermitsWithinTheirOwnLanes() {
+        HeldPlaylists held = new HeldPlaylists();
+        TransferJobEngine engine = new TransferJobEngine(sink, 3, 2);
+        List<String> large = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            large.add(HeldPlaylists.HELD + "large" + i);
+        }
+        engine.submit(held.service("session1"), large);
+        // The large job only gets its own two lanes, leaving a permit for the next job
+        assertEquals(List.of(HeldPlaylists.HELD + "large0", HeldPlaylists.HELD + "large1"), held.started());
+
+        engine.submit(held.service("session2"), List.of(HeldPlaylists.HELD + "small0", HeldPlaylists.HELD + "small1"));
+        assertEquals(HeldPlaylists.HELD + "small0", held.started().get(2));
+        assertEquals(3, held.started().size());
+
+        // All permits are taken; the one freed by the large job goes to the small job, whose turn it is
+        held.complete(HeldPlaylists.HELD + "large0");
+        assertEquals(HeldPlaylists.HELD + "small1", held.started().get(3));
+        held.complete(HeldPlaylists.HELD + "small0");
+        assertEquals(HeldPlaylists.HELD + "large2", held.started().get(4));
+        assertEquals(5, held.started().size());
+    }
+
+    @Test
+    void anAttemptThatDoesNotFinishTimesOutAndIsRetried() throws InterruptedException {
+        HeldPlaylists held = new HeldPlaylists();
+        TransferJobEngine engine = new TransferJobEngine(sink, 1, 1, 10, Duration.ofMillis(50), Duration.ofMillis(10));
+        TransferJob job = engine.submit(held.service("session1"), List.of(HeldPlaylists.HELD + "hangs", "quick"));
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!job.isFinished() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(TransferJob.Status.COMPLETED_WITH_ERRORS, job.getStatus());
+        assertEquals(1, job.progress().get("completedPlaylists"));
+        assertTrue(((Map<?, ?>) job.progress().get("failedPlaylists")).containsKey(HeldPlaylists.HELD + "hangs"));
+        // The quick playlist ran during the backoff, then the held one was tried until its attempts ran out
+        assertEquals(List.of(HeldPlaylists.HELD + "hangs", "quick", HeldPlaylists.HELD + "hangs", HeldPlaylists.HELD + "hangs"),
+                held.fetched());
+    }
+
+    private TransferJobEngine retaining(int maxRetainedJobs) {
+        return new TransferJobEngine(sink, 8, TransferJobEngine.DEFAULT_MAX_PLAYLISTS_PER_JOB, maxRetainedJobs,
+                Duration.ofMinutes(5), Duration.ofSeconds(2));
+    }
+
+    // Playlists whose ID starts with HELD stay in progress until the test completes them; others complete synchronously
+    private static final class HeldPlaylists {
+        static final String HELD = "held-";
+        private final Map<String, CompletableFuture<List<String>>> inProgress = new ConcurrentHashMap<>();
+        private final List<String> started = new CopyOnWriteArrayList<>();
+        private final List<String> fetched = new CopyOnWriteArrayList<>();
+
+        SpotifyService service(String sessionId) {
+            SpotifyService service = mock(SpotifyService.class);
+            when(service.getSessionId()).thenReturn(sessionId);
+            when(service.fetchPlaylistItemUris(anyString())).thenAnswer(invocation -> {
+                String playlistId = invocation.getArgument(0);
+                fetched.add(playlistId);
+                if (!playlistId.startsWith(HELD)) {
+                    return CompletableFuture.completedFuture(List.of("spotify:track:" + playlistId));
+                }
+                started.add(playlistId);
+                CompletableFuture<List<String>> future = new CompletableFuture<>();
+                inProgress.put(playlistId, future);
+                return future;
+            });
+            return service;
+        }
+
+        void complete(String playlistId) {
+            inProgress.remove(playlistId).complete(List.of("spotify:track:" + playlistId));
+        }
+
+        List<String> started() {
+            return List.copyOf(started);
+        }
+
+        List<String> fetched() {
+            return List.copyOf(fetched);
+        }
+    }
+
+    private static SpotifyService service(String sessionId) {
+        SpotifyService service = mock(SpotifyService.class);
+        when(service.getSessionId()).thenReturn(sessionId);
+        when(service.fetchPlaylistItemUris(anyString())).thenAnswer(invocation -> {
+            String playlistId = invocation.getArgument(0);
+            return playlistId.startsWith(NEVER_FINISHES) ? new CompletableFuture<List<String>>()
+                    : CompletableFuture.completedFuture(List.of("spotify:track:" + playlistId));
+        });
+        return service;
+    }
+}
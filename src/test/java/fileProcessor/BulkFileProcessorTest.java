@@ -0,0 +1,102 @@
+package fileProcessor;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BulkFileProcessorTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void playlistsAreMergedInInputOrderAndFailuresAreCollected() throws IOException {
+        List<String> files = new ArrayList<>();
+        List<List<String>> expected = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            if (i % 2 == 0) {
+                files.add(writeCsv(directory.resolve("playlist_" + i + ".csv"), "spotify:track:" + i).toString());
+                expected.add(Arrays.asList("playlist " + i, null, "spotify:track:" + i));
+            } else {
+                files.add(writeJson(directory.resolve("export" + i + ".json"), "Export " + i, "spotify:track:" + i).toString());
+                expected.add(List.of("Export " + i, "description", "spotify:track:" + i));
+            }
+        }
+        Path corrupt = Files.writeString(directory.resolve("corrupt.json"), "{\"playlists\": [{\"name\": ", StandardCharsets.UTF_8);
+        Path unreadable = Files.createDirectory(directory.resolve("folder.csv"));
+        Path missing = directory.resolve("missing.json");
+        files.add(10, corrupt.toString());
+        files.add(20, unreadable.toString());
+        files.add(missing.toString());
+
+        BulkFileProcessor.Result result = new BulkFileProcessor(4).processFiles(files);
+
+        assertEquals(expected, result.getData());
+        assertEquals(List.of(corrupt.toString(), unreadable.toString(), missing.toString()), List.copyOf(result.getErrors().keySet()));
+        result.getErrors().values().forEach(error -> assertInstanceOf(IOException.class, error));
+    }
+
+    @Test
+    void directoryWalkKeepsOnlyExportsInPathOrder() throws IOException {
+        Path nested = Files.createDirectories(directory.resolve("b/nested"));
+        writeJson(nested.resolve("deep.JSON"), "Deep", "spotify:track:d");
+        writeCsv(directory.resolve("a_first.csv"), "spotify:track:a");
+        writeCsv(directory.resolve("b/second.csv"), "spotify:track:b");
+        Files.writeString(directory.resolve("notes.txt"), "not an export", StandardCharsets.UTF_8);
+        Files.writeString(directory.resolve("b/cover.jpg"), "not an export", StandardCharsets.UTF_8);
+        Files.writeString(directory.resolve("csv"), "no extension", StandardCharsets.UTF_8);
+
+        BulkFileProcessor.Result result = new BulkFileProcessor(2).processDirectory(directory.toString());
+
+        assertEquals(List.of(
+                Arrays.asList("a first", null, "spotify:track:a"),
+                List.of("Deep", "description", "spotify:track:d"),
+                Arrays.asList("second", null, "spotify:track:b")), result.getData());
+        assertTrue(result.getErrors().isEmpty(), result.getErrors().toString());
+    }
+
+    @Test
+    void noMoreFilesThanTheParallelismAreReadAtOnce() {
+        int parallelism = 3;
+        AtomicInteger reading = new AtomicInteger();
+        AtomicInteger maxReading = new AtomicInteger();
+        BulkFileProcessor processor = new BulkFileProcessor(parallelism, filePath -> {
+            maxReading.accumulateAndGet(reading.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            reading.decrementAndGet();
+            return List.of(List.of(filePath, ""));
+        });
+        List<String> files = IntStream.range(0, 64).mapToObj(i -> "file" + i + ".csv").toList();
+
+        BulkFileProcessor.Result result = processor.processFiles(files);
+
+        assertEquals(files, result.getData().stream().map(playlist -> playlist.get(0)).toList());
+        assertTrue(maxReading.get() <= parallelism, "read " + maxReading.get() + " files at once");
+        assertTrue(maxReading.get() > 1, "files were read one at a time");
+    }
+
+    private static Path writeCsv(Path file, String uri) throws IOException {
+        return Files.writeString(file, "Track URI,Track Name\n" + uri + ",Name\n", StandardCharsets.UTF_8);
+    }
+
+    private static Path writeJson(Path file, String name, String uri) throws IOException {
+        return Files.writeString(file, "{\"playlists\": [{\"name\": \"" + name + "\", \"description\": \"description\", \"items\": ["
+                + "{\"track\": {\"trackUri\": \"" + uri + "\"}, \"localTrack\": null, \"episode\": null}]}]}", StandardCharsets.UTF_8);
+    }
+}
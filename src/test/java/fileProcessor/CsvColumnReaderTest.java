@@ -0,0 +1,50 @@
+package fileProcessor;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CsvColumnReaderTest {
+    private static final String CSV = String.join("\r\n",
+            "Track Name,Track URI,Album",
+            "12\" Single,spotify:track:a,\"Greatest, Hits\"",
+            "\"Quoted, with \"\"quotes\"\"\",spotify:track:b,Plain",
+            "Bare \"quote\" in the middle,spotify:track:c,\"Two\nlines\"",
+            "",
+            "Empty URI,,Album",
+            "");
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void bareQuotesInsideUnquotedFieldsAreLiteral() throws IOException {
+        Path file = write(CSV);
+        CsvColumnReader reader = new CsvColumnReader(',');
+
+        assertEquals(List.of("spotify:track:a", "spotify:track:b", "spotify:track:c"), reader.readColumn(file, "Track URI"));
+        assertEquals(List.of("12\" Single", "Quoted, with \"quotes\"", "Bare \"quote\" in the middle", "Empty URI"),
+                reader.readColumn(file, "Track Name"));
+        assertEquals(List.of("Greatest, Hits", "Plain", "Two\nlines", "Album"), reader.readColumn(file, "Album"));
+    }
+
+    @Test
+    void missingColumnFails() throws IOException {
+        Path file = write(CSV);
+        assertThrows(IOException.class, () -> new CsvColumnReader(',').readColumn(file, "Artist"));
+    }
+
+    private Path write(String content) throws IOException {
+        Path file = directory.resolve("export.csv");
+        Files.writeString(file, content, StandardCharsets.UTF_8);
+        return file;
+    }
+}
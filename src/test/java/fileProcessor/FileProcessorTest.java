@@ -0,0 +1,59 @@
+package fileProcessor;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class FileProcessorTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void streamedAndCompactImportsMatchTheCollectedOne() throws IOException {
+        Path json = directory.resolve("library.json");
+        Files.writeString(json, """
+                {"playlists": [
+                  {"name": "One", "description": "first", "items": [
+                    {"track": {"trackUri": "spotify:track:4uLU6hMCjMI75M1A2tKUQC"}, "localTrack": null, "episode": null},
+                    {"track": null, "localTrack": {"uri": "spotify:local:a:b:c:1"}, "episode": null}
+                  ]},
+                  {"name": "Two", "description": null, "items": [
+                    {"track": {"trackUri": "spotify:track:4uLU6hMCjMI75M1A2tKUQC"}, "localTrack": null, "episode": null}
+                  ]}
+                ]}
+                """, StandardCharsets.UTF_8);
+        Path csv = directory.resolve("Road_Trip.csv");
+        Files.writeString(csv, "Track URI,Track Name\nspotify:track:a,A\nspotify:track:b,B\n", StandardCharsets.UTF_8);
+
+        for (Path file : List.of(json, csv)) {
+            List<List<String>> collected = FileProcessor.readFile(file.toString());
+            List<List<String>> streamed = new ArrayList<>();
+            FileProcessor.forEachPlaylist(file.toString(), streamed::add);
+            assertEquals(collected, streamed);
+            assertEquals(collected, FileProcessor.readCompact(file.toString()).toLegacy());
+            assertEquals(collected, new FileProcessor(file.toString()).getData());
+        }
+        assertEquals(List.of(Arrays.asList("Road Trip", null, "spotify:track:a", "spotify:track:b")),
+                FileProcessor.readFile(csv.toString()));
+        // The track shared by both playlists is stored once
+        TrackDictionary dictionary = FileProcessor.readCompact(json.toString()).getDictionary();
+        assertEquals(1, dictionary.idCount());
+        assertEquals(1, dictionary.rawCount());
+    }
+
+    @Test
+    void otherExtensionsAreRejected() {
+        assertThrows(IOException.class, () -> FileProcessor.forEachPlaylist(directory.resolve("notes.txt").toString(), playlist -> {
+        }));
+    }
+}
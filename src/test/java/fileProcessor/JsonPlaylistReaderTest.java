@@ -0,0 +1,161 @@
+package fileProcessor;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JsonPlaylistReaderTest {
+    private static final String EXPORT = """
+            {
+              "other": {"nested": [1, 2, {"playlists": []}]},
+              "playlists": [
+                {
+                  "name": "Mixed",
+                  "lastModifiedDate": "2024-01-01",
+                  "description": "Tracks, local files and episodes",
+                  "items": [
+                    {"track": {"trackName": "A", "trackUri": "spotify:track:a"}, "localTrack": null, "episode": null},
+                    {"track": null, "localTrack": {"uri": "spotify:local:Artist:Album:Song:180"}, "episode": null},
+                    {"track": null, "localTrack": null, "episode": {"episodeUri": "spotify:episode:e"}},
+                    {"track": null, "localTrack": null, "episode": null, "audiobook": {"uri": "ignored"}},
+                    {"addedDate": "2024-01-01", "track": {"trackUri": "spotify:track:b", "extra": [1, {"x": 2}]},
+                     "localTrack": null, "episode": null}
+                  ]
+                },
+                {"name": null, "description": null, "items": []},
+                {"name": "null", "description": "null"},
+                {"name": 42, "description": true, "items": [
+                  {"track": {"trackUri": "spotify:track:c"}, "localTrack": null, "episode": null}
+                ]}
+              ],
+              "trailing": "ignored"
+            }
+            """;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void matchesTheTreeBasedReader() throws IOException {
+        Path file = write(EXPORT);
+        List<List<String>> streamed = new ArrayList<>();
+        JsonPlaylistReader.forEachPlaylist(file.toFile(), streamed::add);
+
+        assertEquals(readTree(file), streamed);
+        assertEquals(Arrays.asList("Mixed", "Tracks, local files and episodes", "spotify:track:a",
+                "spotify:local:Artist:Album:Song:180", "spotify:episode:e", "spotify:track:b"), streamed.get(0));
+        // JSON null and the string "null" both read as "null", as JsonNode.asText() gave them
+        assertEquals(List.of("null", "null"), streamed.get(1));
+        assertEquals(List.of("null", "null"), streamed.get(2));
+        assertEquals(List.of("42", "true", "spotify:track:c"), streamed.get(3));
+    }
+
+    @Test
+    void nonObjectEntriesAreSkipped() throws IOException {
+        // The tree-based reader failed on these with a NullPointerException
+        Path file = write("""
+                {"playlists": [
+                  "not a playlist", 7, null, [{"name": "nested"}],
+                  {"name": "Kept", "description": "", "items": [
+                    "not an item", null, [1],
+                    {"track": "not an object", "localTrack": null, "episode": {"episodeUri": "spotify:episode:e"}},
+                    {"track": {"trackUri": "spotify:track:a"}, "localTrack": null, "episode": null}
+                  ]}
+                ]}
+                """);
+        assertEquals(List.of(List.of("Kept", "", "spotify:episode:e", "spotify:track:a")), readAll(file));
+    }
+
+    @Test
+    void exportsWithoutPlaylistsYieldNothing() throws IOException {
+        assertEquals(List.of(), readAll(write("{}")));
+        assertEquals(List.of(), readAll(write("{\"playlists\": {\"name\": \"not an array\"}}")));
+        assertEquals(List.of(), readAll(write("{\"playlists\": []}")));
+    }
+
+    @Test
+    void iteratorReportsTheEndAndErrors() throws IOException {
+        try (JsonPlaylistReader reader = new JsonPlaylistReader(write("{\"playlists\": [{\"name\": \"Only\"}]}").toFile())) {
+            assertTrue(reader.hasNext());
+            assertTrue(reader.hasNext());  // asking again does not skip a playlist
+            assertEquals(Arrays.asList("Only", null), reader.next());
+            assertFalse(reader.hasNext());
+            assertThrows(NoSuchElementException.class, reader::next);
+        }
+
+        assertThrows(IOException.class, () -> new JsonPlaylistReader(write("[{\"name\": \"root is an array\"}]").toFile()));
+        assertThrows(IOException.class, () -> new JsonPlaylistReader(directory.resolve("missing.json").toFile()));
+
+        // A file cut off after the first playlist yields that playlist, then fails once and reports the end
+        Path truncated = write("{\"playlists\": [{\"name\": \"First\", \"description\": \"d\"}, {\"name\": \"Sec");
+        try (JsonPlaylistReader reader = new JsonPlaylistReader(truncated.toFile())) {
+            assertEquals(List.of("First", "d"), reader.next());
+            UncheckedIOException failure = assertThrows(UncheckedIOException.class, reader::hasNext);
+            assertTrue(failure.getCause() != null);
+            assertFalse(reader.hasNext());
+        }
+        // The callback API hands out what was read before the failure and rethrows it as an IOException
+        List<List<String>> read = new ArrayList<>();
+        assertThrows(IOException.class, () -> JsonPlaylistReader.forEachPlaylist(truncated.toFile(), read::add));
+        assertEquals(List.of(List.of("First", "d")), read);
+    }
+
+    private static List<List<String>> readAll(Path file) throws IOException {
+        List<List<String>> playlists = new ArrayList<>();
+        JsonPlaylistReader.forEachPlaylist(file.toFile(), playlists::add);
+        return playlists;
+    }
+
+    // The readTree-based implementation FileProcessor used before the streaming reader
+    private static List<List<String>> readTree(Path file) throws IOException {
+        List<List<String>> jsonData = new ArrayList<>();
+        JsonNode playlistsNode = new ObjectMapper().readTree(file.toFile()).get("playlists");
+        if (playlistsNode != null && playlistsNode.isArray()) {
+            for (JsonNode playlistNode : playlistsNode) {
+                List<String> playlistInfo = new ArrayList<>();
+                playlistInfo.add(playlistNode.get("name").asText());
+                playlistInfo.add(playlistNode.get("description").asText());
+                JsonNode itemsNode = playlistNode.get("items");
+                if (itemsNode != null && itemsNode.isArray()) {
+                    for (JsonNode itemNode : itemsNode) {
+                        JsonNode trackNode = itemNode.get("track");
+                        JsonNode localTrackNode = itemNode.get("localTrack");
+                        JsonNode episodeNode = itemNode.get("episode");
+                        if (!Objects.equals(trackNode.asText(), "null")) {
+                            playlistInfo.add(trackNode.get("trackUri").asText());
+                        } else if (!Objects.equals(localTrackNode.asText(), "null")) {
+                            playlistInfo.add(localTrackNode.get("uri").asText());
+                        } else if (!Objects.equals(episodeNode.asText(), "null")) {
+                            playlistInfo.add(episodeNode.get("episodeUri").asText());
+                        }
+                    }
+                }
+                jsonData.add(playlistInfo);
+            }
+        }
+        return jsonData;
+    }
+
+    private Path write(String content) throws IOException {
+        Path file = Files.createTempFile(directory, "export", ".json");
+        Files.writeString(file, content, StandardCharsets.UTF_8);
+        return file;
+    }
+}
@@ -0,0 +1,156 @@
+package fileProcessor;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TrackDictionaryTest {
+    private static final String BASE62 = "0123456789abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ";
+    private static final BigInteger MAX_128_BIT = BigInteger.ONE.shiftLeft(128).subtract(BigInteger.ONE);
+
+    @Test
+    void idsAtTheEdgesOfTheRangeAreDecoded() {
+        TrackDictionary dictionary = new TrackDictionary();
+        List<String> uris = List.of(
+                "spotify:track:0000000000000000000000",
+                "spotify:track:0000000000000000000001",
+                "spotify:track:" + base62(MAX_128_BIT),
+                "spotify:track:" + base62(BigInteger.ONE.shiftLeft(64)),
+                "spotify:track:" + base62(BigInteger.ONE.shiftLeft(64).subtract(BigInteger.ONE)),
+                "spotify:episode:0000000000000000000000",
+                "spotify:episode:" + base62(MAX_128_BIT));
+
+        assertDecoded(dictionary, uris);
+        // The same id as track and as episode are two entries
+        assertEquals(uris.size(), dictionary.idCount());
+        assertEquals(0, dictionary.rawCount());
+    }
+
+    @Test
+    void idsThatCannotBeDecodedAreKeptVerbatim() {
+        TrackDictionary dictionary = new TrackDictionary();
+        List<String> uris = List.of(
+                "spotify:track:" + base62(MAX_128_BIT.add(BigInteger.ONE)),  // 22 characters, 129 bits
+                "spotify:track:ZZZZZZZZZZZZZZZZZZZZZZ",
+                "spotify:track:4uLU6hMCjMI75M1A2tKUQ",     // 21 characters
+                "spotify:track:4uLU6hMCjMI75M1A2tKUQCx",   // 23 characters
+                "spotify:track:",
+                "spotify:track:4uLU6hMCjMI75M1A2tKU-C",
+                "spotify:track:4uLU6hMCjMI75M1A2tKUé1",
+                "spotify:episode:4uLU6hMCjMI75M1A2tKU_C",
+                "spotify:local:Artist:Album:Song:215",
+                "spotify:local:::Untitled:0",
+                "spotify:artist:4uLU6hMCjMI75M1A2tKUQC",
+                "SPOTIFY:TRACK:4uLU6hMCjMI75M1A2tKUQC",
+                "");
+
+        List<Integer> references = new ArrayList<>();
+        for (String uri : uris) {
+            int reference = dictionary.add(uri);
+            assertTrue(reference < 0, uri);
+            references.add(reference);
+        }
+        for (int i = 0; i < uris.size(); i++) {
+            assertEquals(uris.get(i), dictionary.uri(references.get(i)));
+        }
+        assertEquals(0, dictionary.idCount());
+        assertEquals(uris.size(), dictionary.rawCount());
+    }
+
+    @Test
+    void addingAgainReturnsTheSameReference() {
+        TrackDictionary dictionary = new TrackDictionary();
+        // Fresh String instances, as every parsed occurrence is
+        String track = "spotify:track:4uLU6hMCjMI75M1A2tKUQC";
+        String local = "spotify:local:Artist:Album:Song:215";
+        int trackReference = dictionary.add(new String(track.toCharArray()));
+        int localReference = dictionary.add(new String(local.toCharArray()));
+
+        assertEquals(trackReference, dictionary.add(new String(track.toCharArray())));
+        assertEquals(localReference, dictionary.add(new String(local.toCharArray())));
+        assertNotEquals(trackReference, dictionary.add("spotify:episode:4uLU6hMCjMI75M1A2tKUQC"));
+        assertEquals(2, dictionary.idCount());
+        assertEquals(1, dictionary.rawCount());
+    }
+
+    @Test
+    void manyRandomIdsRoundTripAcrossTableGrowth() {
+        TrackDictionary dictionary = new TrackDictionary();
+        Random random = new Random(42);
+        List<String> uris = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            BigInteger id = new BigInteger(128, random);
+            uris.add((i % 10 == 0 ? "spotify:episode:" : "spotify:track:") + base62(id));
+        }
+
+        int[] references = new int[uris.size()];
+        for (int i = 0; i < uris.size(); i++) {
+            references[i] = dictionary.add(uris.get(i));
+        }
+        for (int i = 0; i < uris.size(); i++) {
+            assertEquals(uris.get(i), dictionary.uri(references[i]));
+            assertEquals(references[i], dictionary.add(uris.get(i)));
+        }
+        assertEquals(uris.size(), dictionary.idCount());
+    }
+
+    @Test
+    void compactLibraryRoundTripsTheLegacyFormat() {
+        List<List<String>> data = List.of(
+                Arrays.asList("Mixed", "Tracks, local files and episodes",
+                        "spotify:track:4uLU6hMCjMI75M1A2tKUQC",
+                        "spotify:local:Artist:Album:Song:215",
+                        "spotify:episode:0000000000000000000000",
+                        "spotify:track:ZZZZZZZZZZZZZZZZZZZZZZ",
+                        "spotify:track:4uLU6hMCjMI75M1A2tKUQC"),
+                Arrays.asList("From CSV", null, "spotify:track:4uLU6hMCjMI75M1A2tKUQC"),
+                Arrays.asList(null, null),
+                Arrays.asList("Empty", ""));
+
+        CompactLibrary library = CompactLibrary.fromLegacy(data);
+
+        assertEquals(data, library.toLegacy());
+        assertNotSame(data, library.toLegacy());
+        assertEquals(data.size(), library.getPlaylists().size());
+        CompactPlaylist mixed = library.getPlaylists().get(0);
+        assertEquals(5, mixed.size());
+        // A repeated track is one dictionary entry, in the same and in other playlists
+        assertEquals(mixed.itemReference(0), mixed.itemReference(4));
+        assertEquals(mixed.itemReference(0), library.getPlaylists().get(1).itemReference(0));
+        assertEquals("spotify:track:4uLU6hMCjMI75M1A2tKUQC", mixed.uriAt(4));
+        assertEquals(2, library.getDictionary().idCount());
+        assertEquals(2, library.getDictionary().rawCount());
+
+        assertEquals(List.of(), CompactLibrary.fromLegacy(List.of()).toLegacy());
+        assertEquals(List.of(), CompactLibrary.fromLegacy(null).toLegacy());
+    }
+
+    private static void assertDecoded(TrackDictionary dictionary, List<String> uris) {
+        for (String uri : uris) {
+            int reference = dictionary.add(uri);
+            assertTrue(reference >= 0, uri);
+            assertEquals(uri, dictionary.uri(reference));
+        }
+    }
+
+    // Canonical 22 character base62 form, zero-padded on the left
+    private static String base62(BigInteger value) {
+        char[] id = new char[22];
+        BigInteger base = BigInteger.valueOf(62);
+        for (int i = id.length - 1; i >= 0; i--) {
+            BigInteger[] division = value.divideAndRemainder(base);
+            id[i] = BASE62.charAt(division[1].intValue());
+            value = division[0];
+        }
+        return new String(id);
+    }
+}